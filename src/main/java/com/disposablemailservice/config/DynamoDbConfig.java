@@ -5,9 +5,15 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.dynamodb.DynamoDbAsyncClient;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 
+import java.time.Duration;
+
 @Configuration
 public class DynamoDbConfig {
     
@@ -20,13 +26,48 @@ public class DynamoDbConfig {
     @Value("${aws.region}")
     private String region;
 
+    // Shared by the sync (Apache) and async (Netty) transports; each client gets its own pool of this size
+    @Value("${aws.http.dynamodb.max-connections:200}")
+    private int maxConnections;
+
+    @Value("${aws.http.dynamodb.max-pending-acquires:10000}")
+    private int maxPendingAcquires;
+
+    @Value("${aws.http.dynamodb.connection-timeout-ms:1000}")
+    private long connectionTimeoutMs;
+
+    @Value("${aws.http.dynamodb.socket-timeout-ms:5000}")
+    private long socketTimeoutMs;
+
+    @Value("${aws.http.dynamodb.acquisition-timeout-ms:2000}")
+    private long acquisitionTimeoutMs;
+
+    @Value("${aws.http.dynamodb.connection-ttl-ms:300000}")
+    private long connectionTtlMs;
+
+    @Value("${aws.http.dynamodb.max-idle-ms:60000}")
+    private long maxIdleMs;
+
+    @Value("${aws.http.dynamodb.tcp-keep-alive:true}")
+    private boolean tcpKeepAlive;
+
     @Bean
-    public DynamoDbClient dynamoDbClient() {
+    public DynamoDbClient dynamoDbClient(MicrometerMetricPublisher metricPublisher) {
         AwsBasicCredentials awsCredentials = AwsBasicCredentials.create(accessKeyId, secretAccessKey);
         
         return DynamoDbClient.builder()
                 .region(Region.of(region))
                 .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
+                .httpClientBuilder(ApacheHttpClient.builder()
+                        .maxConnections(maxConnections)
+                        .connectionTimeout(Duration.ofMillis(connectionTimeoutMs))
+                        .socketTimeout(Duration.ofMillis(socketTimeoutMs))
+                        .connectionAcquisitionTimeout(Duration.ofMillis(acquisitionTimeoutMs))
+                        .connectionTimeToLive(Duration.ofMillis(connectionTtlMs))
+                        .connectionMaxIdleTime(Duration.ofMillis(maxIdleMs))
+                        .useIdleConnectionReaper(true)
+                        .tcpKeepAlive(tcpKeepAlive))
+                .overrideConfiguration(o -> o.addMetricPublisher(metricPublisher))
                 .build();
     }
 
@@ -36,4 +77,33 @@ public class DynamoDbConfig {
                 .dynamoDbClient(dynamoDbClient)
                 .build();
     }
+
+    @Bean
+    public DynamoDbAsyncClient dynamoDbAsyncClient(MicrometerMetricPublisher metricPublisher) {
+        AwsBasicCredentials awsCredentials = AwsBasicCredentials.create(accessKeyId, secretAccessKey);
+        
+        return DynamoDbAsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(maxConnections)
+                        .maxPendingConnectionAcquires(maxPendingAcquires)
+                        .connectionTimeout(Duration.ofMillis(connectionTimeoutMs))
+                        .readTimeout(Duration.ofMillis(socketTimeoutMs))
+                        .writeTimeout(Duration.ofMillis(socketTimeoutMs))
+                        .connectionAcquisitionTimeout(Duration.ofMillis(acquisitionTimeoutMs))
+                        .connectionTimeToLive(Duration.ofMillis(connectionTtlMs))
+                        .connectionMaxIdleTime(Duration.ofMillis(maxIdleMs))
+                        .useIdleConnectionReaper(true)
+                        .tcpKeepAlive(tcpKeepAlive))
+                .overrideConfiguration(o -> o.addMetricPublisher(metricPublisher))
+                .build();
+    }
+
+    @Bean
+    public DynamoDbEnhancedAsyncClient dynamoDbEnhancedAsyncClient(DynamoDbAsyncClient dynamoDbAsyncClient) {
+        return DynamoDbEnhancedAsyncClient.builder()
+                .dynamoDbClient(dynamoDbAsyncClient)
+                .build();
+    }
 }
@@ -1,96 +1,306 @@
+// Declarative DynamoDB schema bootstrap run at startup.
+// Tables are reconciled in parallel and waited for; missing GSIs are then built in the background, off the startup path.
 package com.disposablemailservice.config;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import com.disposablemailservice.model.Mailbox;
+import com.disposablemailservice.repository.DeliveryLedger;
+import com.disposablemailservice.repository.InMemoryMailboxStore;
+import com.disposablemailservice.repository.TableSchemas;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.waiters.WaiterOverrideConfiguration;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
 import software.amazon.awssdk.services.dynamodb.model.*;
+import software.amazon.awssdk.services.dynamodb.waiters.DynamoDbWaiter;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Creating a table with its indexes is quick, but backfilling an index added to a populated table can
+ * take hours, so startup only waits for tables. Missing indexes are created one by one on a background
+ * thread, and queries check {@link com.disposablemailservice.repository.IndexReadiness} so a feature
+ * that needs an index still being built fails fast instead of holding up the whole application.
+ */
 @Component
+@Profile("!" + InMemoryMailboxStore.PROFILE)
 public class DynamoDbTableInitializer implements CommandLineRunner {
 
-    @Autowired
-    private DynamoDbClient dynamoDbClient;
+    private static final Logger log = LoggerFactory.getLogger(DynamoDbTableInitializer.class);
+
+    private static final List<TableSpec> TABLES = List.of(
+            new TableSpec(TableSchemas.MAILBOX_TABLE, "id", null,
+                    List.of(globalSecondaryIndex(Mailbox.USER_ID_INDEX, "userId", "createdAt"),
+                            globalSecondaryIndex(Mailbox.EXPIRY_BUCKET_INDEX, "expiryBucket", "expiryTime"),
+                            globalSecondaryIndex(Mailbox.ADDRESS_INDEX, "address", null)),
+                    Mailbox.TTL_ATTRIBUTE),
+            new TableSpec(TableSchemas.MESSAGE_TABLE, "mailboxId", "id", List.of(), null),
+            new TableSpec(TableSchemas.DELIVERY_TABLE, "id", null, List.of(), DeliveryLedger.TTL_ATTRIBUTE),
+            new TableSpec(TableSchemas.BLOB_REF_TABLE, "id", null, List.of(), null));
+
+    private final DynamoDbClient dynamoDbClient;
+    private final Timer bootstrapTimer;
+    private final Duration waitTimeout;
+    private final Duration indexWaitTimeout;
+    private final long indexPollMillis;
+    private final ExecutorService indexBuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dynamodb-index-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public DynamoDbTableInitializer(DynamoDbClient dynamoDbClient,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.dynamodb.bootstrap.wait-timeout-seconds:600}") long waitTimeoutSeconds,
+                                    @Value("${app.dynamodb.bootstrap.index-wait-timeout-seconds:86400}") long indexWaitTimeoutSeconds,
+                                    @Value("${app.dynamodb.bootstrap.index-poll-ms:2000}") long indexPollMillis) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.waitTimeout = Duration.ofSeconds(waitTimeoutSeconds);
+        this.indexWaitTimeout = Duration.ofSeconds(indexWaitTimeoutSeconds);
+        this.indexPollMillis = indexPollMillis;
+        this.bootstrapTimer = Timer.builder("burnbox.dynamodb.bootstrap")
+                .description("Time spent reconciling the DynamoDB schema at startup")
+                .register(meterRegistry);
+    }
 
     @Override
-    public void run(String... args) throws Exception {
-        createTableIfNotExists("mailboxes", "id");
-        createTableIfNotExists("messages", "mailboxId", "id");
+    public void run(String... args) {
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(TABLES.size());
+        try {
+            List<CompletableFuture<Integer>> results = TABLES.stream()
+                    .map(spec -> CompletableFuture.supplyAsync(() -> reconcile(spec), executor))
+                    .collect(Collectors.toList());
+            int changes = results.stream().mapToInt(CompletableFuture::join).sum();
+
+            Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+            bootstrapTimer.record(elapsed);
+            if (changes == 0) {
+                log.info("DynamoDB schema already up to date ({} tables checked in {} ms)", TABLES.size(), elapsed.toMillis());
+            } else {
+                log.info("DynamoDB schema bootstrap applied {} change(s) in {} ms", changes, elapsed.toMillis());
+            }
+        } finally {
+            executor.shutdown();
+        }
     }
 
-    private void createTableIfNotExists(String tableName, String partitionKey) {
-        createTableIfNotExists(tableName, partitionKey, null);
+    /**
+     * Brings one table in line with its spec and returns the number of changes applied.
+     * Failures are logged rather than thrown so a missing permission does not stop the application starting.
+     */
+    private int reconcile(TableSpec spec) {
+        try (DynamoDbWaiter waiter = dynamoDbClient.waiter()) {
+            int changes = 0;
+            TableDescription table = describe(spec.name());
+            if (table == null) {
+                createTable(spec);
+                changes++;
+                table = waitUntilActive(waiter, spec.name());
+                log.info("Table {} created", spec.name());
+            } else if (table.tableStatus() != TableStatus.ACTIVE) {
+                table = waitUntilActive(waiter, spec.name());
+            }
+
+            changes += scheduleMissingIndexes(table, spec.indexes());
+            if (spec.ttlAttribute() != null && enableTimeToLive(spec.name(), spec.ttlAttribute())) {
+                changes++;
+            }
+            return changes;
+        } catch (Exception e) {
+            log.error("Schema bootstrap failed for table {}", spec.name(), e);
+            return 0;
+        }
     }
 
-    private void createTableIfNotExists(String tableName, String partitionKey, String sortKey) {
+    private TableDescription describe(String tableName) {
         try {
-            // Check if table exists
-            DescribeTableRequest describeRequest = DescribeTableRequest.builder()
-                    .tableName(tableName)
-                    .build();
-            
+            return dynamoDbClient.describeTable(DescribeTableRequest.builder().tableName(tableName).build()).table();
+        } catch (ResourceNotFoundException e) {
+            return null;
+        }
+    }
+
+    private void createTable(TableSpec spec) {
+        List<AttributeDefinition> attributes = new ArrayList<>();
+        List<KeySchemaElement> keySchema = new ArrayList<>();
+        addStringAttribute(attributes, spec.partitionKey());
+        keySchema.add(keyElement(spec.partitionKey(), KeyType.HASH));
+        if (spec.sortKey() != null) {
+            addStringAttribute(attributes, spec.sortKey());
+            keySchema.add(keyElement(spec.sortKey(), KeyType.RANGE));
+        }
+        for (GlobalSecondaryIndex index : spec.indexes()) {
+            index.keySchema().forEach(key -> addStringAttribute(attributes, key.attributeName()));
+        }
+
+        CreateTableRequest.Builder request = CreateTableRequest.builder()
+                .tableName(spec.name())
+                .billingMode(BillingMode.PAY_PER_REQUEST)
+                .attributeDefinitions(attributes)
+                .keySchema(keySchema);
+        if (!spec.indexes().isEmpty()) {
+            request.globalSecondaryIndexes(spec.indexes());
+        }
+        dynamoDbClient.createTable(request.build());
+    }
+
+    private TableDescription waitUntilActive(DynamoDbWaiter waiter, String tableName) {
+        return waiter.waitUntilTableExists(DescribeTableRequest.builder().tableName(tableName).build(),
+                        WaiterOverrideConfiguration.builder().waitTimeout(waitTimeout).build())
+                .matched()
+                .response()
+                .orElseThrow(() -> new IllegalStateException("Table " + tableName + " did not become active"))
+                .table();
+    }
+
+    // Logs indexes still backfilling and hands the missing ones to the background builder; returns how many
+    private int scheduleMissingIndexes(TableDescription table, List<GlobalSecondaryIndex> indexes) {
+        Set<String> existing = new HashSet<>();
+        if (table.hasGlobalSecondaryIndexes()) {
+            for (GlobalSecondaryIndexDescription index : table.globalSecondaryIndexes()) {
+                existing.add(index.indexName());
+                if (index.indexStatus() != IndexStatus.ACTIVE) {
+                    log.warn("Index {} on table {} is {}; queries on it fail until it is ACTIVE",
+                            index.indexName(), table.tableName(), index.indexStatus());
+                }
+            }
+        }
+        List<GlobalSecondaryIndex> missing = indexes.stream()
+                .filter(index -> !existing.contains(index.indexName()))
+                .toList();
+        if (missing.isEmpty()) {
+            return 0;
+        }
+        log.warn("Building index(es) {} on table {} in the background; queries on them fail until they are ACTIVE",
+                missing.stream().map(GlobalSecondaryIndex::indexName).toList(), table.tableName());
+        indexBuilder.execute(() -> {
             try {
-                dynamoDbClient.describeTable(describeRequest);
-                System.out.println("Table " + tableName + " already exists");
-                return;
-            } catch (ResourceNotFoundException e) {
-                System.out.println("Table " + tableName + " does not exist, creating...");
+                createIndexes(table.tableName(), missing);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Building indexes on table {} failed", table.tableName(), e);
             }
+        });
+        return missing.size();
+    }
 
-            // Create table
-            CreateTableRequest.Builder requestBuilder = CreateTableRequest.builder()
+    private void createIndexes(String tableName, List<GlobalSecondaryIndex> indexes) throws InterruptedException {
+        for (GlobalSecondaryIndex index : indexes) {
+            List<AttributeDefinition> attributes = new ArrayList<>();
+            index.keySchema().forEach(key -> addStringAttribute(attributes, key.attributeName()));
+
+            // DynamoDB accepts a single index creation per UpdateTable call, so each index is
+            // created and backfilled before the next one is requested.
+            dynamoDbClient.updateTable(UpdateTableRequest.builder()
                     .tableName(tableName)
-                    .billingMode(BillingMode.PAY_PER_REQUEST)
-                    .attributeDefinitions(
-                            AttributeDefinition.builder()
-                                    .attributeName(partitionKey)
-                                    .attributeType(ScalarAttributeType.S)
-                                    .build()
-                    )
-                    .keySchema(
-                            KeySchemaElement.builder()
-                                    .attributeName(partitionKey)
-                                    .keyType(KeyType.HASH)
-                                    .build()
-                    );
-
-            // Add sort key if provided
-            if (sortKey != null) {
-                requestBuilder.attributeDefinitions(
-                        AttributeDefinition.builder()
-                                .attributeName(partitionKey)
-                                .attributeType(ScalarAttributeType.S)
-                                .build(),
-                        AttributeDefinition.builder()
-                                .attributeName(sortKey)
-                                .attributeType(ScalarAttributeType.S)
-                                .build()
-                );
-                requestBuilder.keySchema(
-                        KeySchemaElement.builder()
-                                .attributeName(partitionKey)
-                                .keyType(KeyType.HASH)
-                                .build(),
-                        KeySchemaElement.builder()
-                                .attributeName(sortKey)
-                                .keyType(KeyType.RANGE)
-                                .build()
-                );
+                    .attributeDefinitions(attributes)
+                    .globalSecondaryIndexUpdates(GlobalSecondaryIndexUpdate.builder()
+                            .create(CreateGlobalSecondaryIndexAction.builder()
+                                    .indexName(index.indexName())
+                                    .keySchema(index.keySchema())
+                                    .projection(index.projection())
+                                    .build())
+                            .build())
+                    .build());
+            log.info("Index {} creation initiated on table {}", index.indexName(), tableName);
+            waitForIndexesActive(tableName);
+            log.info("Index {} on table {} is ACTIVE", index.indexName(), tableName);
+        }
+    }
+
+    // The SDK has no waiter for GSI backfill, so poll DescribeTable until every index reports ACTIVE.
+    private void waitForIndexesActive(String tableName) throws InterruptedException {
+        long deadline = System.nanoTime() + indexWaitTimeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            TableDescription table = describe(tableName);
+            boolean active = table != null && table.tableStatus() == TableStatus.ACTIVE
+                    && (!table.hasGlobalSecondaryIndexes() || table.globalSecondaryIndexes().stream()
+                            .allMatch(index -> index.indexStatus() == IndexStatus.ACTIVE));
+            if (active) {
+                return;
             }
+            Thread.sleep(indexPollMillis);
+        }
+        throw new IllegalStateException("Indexes on table " + tableName + " did not become active within " + indexWaitTimeout);
+    }
 
-            CreateTableRequest request = requestBuilder.build();
-            dynamoDbClient.createTable(request);
-            
-            System.out.println("Table " + tableName + " creation initiated successfully");
-            
-            // Simple wait for table to become active
-            Thread.sleep(5000); // Wait 5 seconds for table to be ready
-            
-            System.out.println("Table " + tableName + " should be ready");
-            
-        } catch (Exception e) {
-            System.err.println("Error creating table " + tableName + ": " + e.getMessage());
-            e.printStackTrace();
+    private boolean enableTimeToLive(String tableName, String attributeName) {
+        TimeToLiveDescription ttl = dynamoDbClient.describeTimeToLive(DescribeTimeToLiveRequest.builder()
+                .tableName(tableName)
+                .build()).timeToLiveDescription();
+        TimeToLiveStatus status = ttl == null ? null : ttl.timeToLiveStatus();
+        if (status == TimeToLiveStatus.ENABLED || status == TimeToLiveStatus.ENABLING) {
+            if (!attributeName.equals(ttl.attributeName())) {
+                log.warn("Table {} already has TTL on {}, expected {}; leaving it unchanged",
+                        tableName, ttl.attributeName(), attributeName);
+            }
+            return false;
         }
+        if (status == TimeToLiveStatus.DISABLING) {
+            log.warn("TTL on table {} is still being disabled; it will be enabled on the next startup", tableName);
+            return false;
+        }
+
+        dynamoDbClient.updateTimeToLive(UpdateTimeToLiveRequest.builder()
+                .tableName(tableName)
+                .timeToLiveSpecification(TimeToLiveSpecification.builder()
+                        .attributeName(attributeName)
+                        .enabled(true)
+                        .build())
+                .build());
+        log.info("TTL enabled on table {} using attribute {}", tableName, attributeName);
+        return true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexBuilder.shutdownNow();
+    }
+
+    private static GlobalSecondaryIndex globalSecondaryIndex(String indexName, String partitionKey, String sortKey) {
+        return GlobalSecondaryIndex.builder()
+                .indexName(indexName)
+                .keySchema(sortKey == null
+                        ? List.of(keyElement(partitionKey, KeyType.HASH))
+                        : List.of(keyElement(partitionKey, KeyType.HASH), keyElement(sortKey, KeyType.RANGE)))
+                .projection(Projection.builder().projectionType(ProjectionType.ALL).build())
+                .build();
+    }
+
+    private static KeySchemaElement keyElement(String attributeName, KeyType keyType) {
+        return KeySchemaElement.builder()
+                .attributeName(attributeName)
+                .keyType(keyType)
+                .build();
+    }
+
+    private static void addStringAttribute(List<AttributeDefinition> attributes, String attributeName) {
+        boolean defined = attributes.stream().anyMatch(a -> a.attributeName().equals(attributeName));
+        if (!defined) {
+            attributes.add(AttributeDefinition.builder()
+                    .attributeName(attributeName)
+                    .attributeType(ScalarAttributeType.S)
+                    .build());
+        }
+    }
+
+    private record TableSpec(String name, String partitionKey, String sortKey,
+                             List<GlobalSecondaryIndex> indexes, String ttlAttribute) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,119 @@
+// Bridges AWS SDK client metrics into Micrometer so they show up on /actuator/prometheus.
+// Attached to the DynamoDB and S3 clients through their override configuration.
+package com.disposablemailservice.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.metrics.SdkMetric;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The SDK publishes one collection per API call: the call itself at the root, one child per attempt,
+ * and under each attempt the HTTP client's pool statistics for that attempt. Latency and retries are
+ * taken from the root; lease wait time and pool occupancy from the HttpClient children.
+ */
+@Component
+public class MicrometerMetricPublisher implements MetricPublisher {
+
+    private final MeterRegistry meterRegistry;
+    // Pool occupancy is sampled per attempt; the gauges report the most recent sample per service and
+    // HTTP client, since the sync and async DynamoDB clients have separate pools under the same service
+    private final Map<PoolKey, AtomicInteger> leased = new ConcurrentHashMap<>();
+    private final Map<PoolKey, AtomicInteger> pending = new ConcurrentHashMap<>();
+
+    public MicrometerMetricPublisher(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void publish(MetricCollection metrics) {
+        String service = first(metrics, CoreMetric.SERVICE_ID, "unknown");
+        String operation = first(metrics, CoreMetric.OPERATION_NAME, "unknown");
+
+        Duration duration = first(metrics, CoreMetric.API_CALL_DURATION, null);
+        if (duration != null) {
+            Timer.builder("aws.sdk.api.call")
+                    .description("AWS SDK API call latency including retries")
+                    .tag("service", service)
+                    .tag("operation", operation)
+                    .tag("success", String.valueOf(first(metrics, CoreMetric.API_CALL_SUCCESSFUL, false)))
+                    .register(meterRegistry)
+                    .record(duration);
+        }
+
+        Integer retries = first(metrics, CoreMetric.RETRY_COUNT, null);
+        if (retries != null) {
+            DistributionSummary.builder("aws.sdk.api.call.retries")
+                    .description("Retries per AWS SDK API call")
+                    .tag("service", service)
+                    .tag("operation", operation)
+                    .register(meterRegistry)
+                    .record(retries);
+        }
+
+        for (MetricCollection attempt : metrics.children()) {
+            for (MetricCollection http : attempt.children()) {
+                publishHttpClient(service, http);
+            }
+        }
+    }
+
+    private void publishHttpClient(String service, MetricCollection http) {
+        String client = first(http, HttpMetric.HTTP_CLIENT_NAME, "unknown");
+        Duration acquire = first(http, HttpMetric.CONCURRENCY_ACQUIRE_DURATION, null);
+        if (acquire != null) {
+            Timer.builder("aws.sdk.http.pool.acquire")
+                    .description("Time spent waiting to lease a connection from the HTTP pool")
+                    .tag("service", service)
+                    .tag("client", client)
+                    .register(meterRegistry)
+                    .record(acquire);
+        }
+
+        PoolKey pool = new PoolKey(service, client);
+        Integer leasedNow = first(http, HttpMetric.LEASED_CONCURRENCY, null);
+        if (leasedNow != null) {
+            gauge(leased, "aws.sdk.http.pool.leased", pool).set(leasedNow);
+        }
+        Integer pendingNow = first(http, HttpMetric.PENDING_CONCURRENCY_ACQUIRES, null);
+        if (pendingNow != null) {
+            gauge(pending, "aws.sdk.http.pool.pending", pool).set(pendingNow);
+        }
+    }
+
+    private AtomicInteger gauge(Map<PoolKey, AtomicInteger> values, String name, PoolKey pool) {
+        return values.computeIfAbsent(pool, key -> {
+            AtomicInteger value = new AtomicInteger();
+            Gauge.builder(name, value, AtomicInteger::get)
+                    .tag("service", key.service())
+                    .tag("client", key.client())
+                    .register(meterRegistry);
+            return value;
+        });
+    }
+
+    private static <T> T first(MetricCollection metrics, SdkMetric<T> metric, T fallback) {
+        List<T> values = metrics.metricValues(metric);
+        return values.isEmpty() ? fallback : values.get(0);
+    }
+
+    private record PoolKey(String service, String client) {
+    }
+
+    @Override
+    public void close() {
+        // Meters belong to the registry, which Spring closes
+    }
+}
@@ -5,10 +5,13 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
+import java.time.Duration;
+
 @Configuration
 public class S3Config {
     
@@ -21,13 +24,45 @@ public class S3Config {
     @Value("${aws.region}")
     private String region;
 
+    @Value("${aws.http.s3.max-connections:100}")
+    private int maxConnections;
+
+    @Value("${aws.http.s3.connection-timeout-ms:2000}")
+    private long connectionTimeoutMs;
+
+    // Body and attachment transfers are larger than DynamoDB calls, so the read timeout is longer
+    @Value("${aws.http.s3.socket-timeout-ms:30000}")
+    private long socketTimeoutMs;
+
+    @Value("${aws.http.s3.acquisition-timeout-ms:5000}")
+    private long acquisitionTimeoutMs;
+
+    @Value("${aws.http.s3.connection-ttl-ms:300000}")
+    private long connectionTtlMs;
+
+    @Value("${aws.http.s3.max-idle-ms:60000}")
+    private long maxIdleMs;
+
+    @Value("${aws.http.s3.tcp-keep-alive:true}")
+    private boolean tcpKeepAlive;
+
     @Bean
-    public S3Client s3Client() {
+    public S3Client s3Client(MicrometerMetricPublisher metricPublisher) {
         AwsBasicCredentials awsCredentials = AwsBasicCredentials.create(accessKeyId, secretAccessKey);
         
         return S3Client.builder()
                 .region(Region.of(region))
                 .credentialsProvider(StaticCredentialsProvider.create(awsCredentials))
+                .httpClientBuilder(ApacheHttpClient.builder()
+                        .maxConnections(maxConnections)
+                        .connectionTimeout(Duration.ofMillis(connectionTimeoutMs))
+                        .socketTimeout(Duration.ofMillis(socketTimeoutMs))
+                        .connectionAcquisitionTimeout(Duration.ofMillis(acquisitionTimeoutMs))
+                        .connectionTimeToLive(Duration.ofMillis(connectionTtlMs))
+                        .connectionMaxIdleTime(Duration.ofMillis(maxIdleMs))
+                        .useIdleConnectionReaper(true)
+                        .tcpKeepAlive(tcpKeepAlive))
+                .overrideConfiguration(o -> o.addMetricPublisher(metricPublisher))
                 .build();
     }
     
@@ -2,6 +2,7 @@ package com.disposablemailservice.controller;
 
 import com.disposablemailservice.model.Mailbox;
 import com.disposablemailservice.model.Message;
+import com.disposablemailservice.model.PagedResult;
 import com.disposablemailservice.model.User;
 import com.disposablemailservice.service.MailboxService;
 import com.disposablemailservice.model.MailboxRequest;
@@ -12,10 +13,13 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Optional;
 import java.util.Map;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import jakarta.servlet.http.HttpServletRequest;
 
 @RestController
@@ -24,6 +28,7 @@ import jakarta.servlet.http.HttpServletRequest;
 public class MailboxController {
 
     private static final Logger log = LoggerFactory.getLogger(MailboxController.class);
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
     private final MailboxService mailboxService;
     
     public MailboxController(MailboxService mailboxService) {
@@ -71,58 +76,45 @@ public class MailboxController {
     }
 
     @GetMapping("/{id}/messages")
-    public ResponseEntity<List<Message>> getMessages(@PathVariable String id, @AuthenticationPrincipal User user) {
-        log.info("📥 [STEP 1] Received GET /api/mailboxes/{}/messages", id);
+    public CompletableFuture<ResponseEntity<List<Message>>> getMessages(@PathVariable String id, @AuthenticationPrincipal User user,
+                                                                        @RequestParam(defaultValue = "50") int limit,
+                                                                        @RequestParam(required = false) String cursor,
+                                                                        @RequestParam(defaultValue = "desc") String order) {
+        log.info("📥 [STEP 1] Received GET /api/mailboxes/{}/messages (limit={}, cursor={}, order={})", id, limit, cursor != null, order);
         log.info("👤 [STEP 2] Authenticated user: {}", (user != null ? user.getUserId() : "null"));
         
-        try {
-            if (user == null) {
-                log.warn("❌ [STEP 3] Authentication failed - user is null, returning 401");
-                return ResponseEntity.status(401).build();
+        if (user == null) {
+            log.warn("❌ [STEP 3] Authentication failed - user is null, returning 401");
+            return CompletableFuture.completedFuture(ResponseEntity.status(401).build());
+        }
+        
+        log.info("✅ [STEP 4] User authenticated successfully: {}", user.getUserId());
+        log.info("🔍 [STEP 5] Looking up mailbox with ID: {}", id);
+        
+        boolean newestFirst = !"asc".equalsIgnoreCase(order);
+        return mailboxService.getMailboxAsync(id).thenCompose(mailbox -> {
+            if (mailbox.isEmpty()) {
+                log.warn("📭 [STEP 6] Mailbox not found with ID: {}", id);
+                return CompletableFuture.completedFuture(ResponseEntity.notFound().<List<Message>>build());
             }
             
-            log.info("✅ [STEP 4] User authenticated successfully: {}", user.getUserId());
-            log.info("🔍 [STEP 5] Looking up mailbox with ID: {}", id);
-            
-            Optional<Mailbox> mailbox = mailboxService.getMailbox(id);
+            Mailbox mb = mailbox.get();
+            log.info("📬 [STEP 6] Mailbox found: address={}, owner={}, expiry={}", mb.getAddress(), mb.getUserId(), mb.getExpiryTime());
             
-            if (mailbox.isPresent()) {
-                Mailbox mb = mailbox.get();
-                log.info("📬 [STEP 6] Mailbox found:");
-                log.info("   📧 Address: {}", mb.getAddress());
-                log.info("   👤 Owner: {}", mb.getUserId());
-                log.info("   ⏰ Expiry: {}", mb.getExpiryTime());
-                
-                // Verify the mailbox belongs to the authenticated user
-                if (!mb.getUserId().equals(user.getUserId())) {
-                    log.warn("⛔ [STEP 7] Access denied - mailbox {} belongs to user {}, but request from user {}", 
-                            id, mb.getUserId(), user.getUserId());
-                    return ResponseEntity.status(403).build();
-                }
-                
-                log.info("✅ [STEP 8] Access granted - user owns this mailbox");
-                log.info("📨 [STEP 9] Retrieving messages for mailbox {}", id);
-                
-                List<Message> messages = mailboxService.getMessagesByMailboxId(id, mb.getUserId());
-                
-                log.info("📊 [STEP 10] Found {} messages in mailbox {}", messages.size(), id);
-                for (int i = 0; i < messages.size(); i++) {
-                    Message msg = messages.get(i);
-                    log.info("   📧 Message {}: ID={}, From={}, Subject={}", 
-                            i + 1, msg.getId(), msg.getFrom(), msg.getSubject());
-                }
-                
-                log.info("✅ [STEP 11] Returning {} messages", messages.size());
-                return ResponseEntity.ok(messages);
-            } else {
-                log.warn("📭 [STEP 6] Mailbox not found with ID: {}", id);
-                return ResponseEntity.notFound().build();
+            // Verify the mailbox belongs to the authenticated user
+            if (!mb.getUserId().equals(user.getUserId())) {
+                log.warn("⛔ [STEP 7] Access denied - mailbox {} belongs to user {}, but request from user {}", 
+                        id, mb.getUserId(), user.getUserId());
+                return CompletableFuture.completedFuture(ResponseEntity.status(403).<List<Message>>build());
             }
-        } catch (Exception e) {
-            log.error("💥 [STEP ERROR] Exception in getMessages: {}", e.getMessage());
-            log.error("📍 [STEP ERROR] Stack trace:", e);
-            return ResponseEntity.status(500).build();
-        }
+            
+            log.info("✅ [STEP 8] Access granted - retrieving message summaries for mailbox {}", id);
+            return mailboxService.getMessagesAsync(mb, limit, cursor, newestFirst)
+                    .thenApply(page -> {
+                        log.info("✅ [STEP 9] Returning {} message summaries, more available: {}", page.getItems().size(), page.hasMore());
+                        return pageResponse(page);
+                    });
+        }).exceptionally(e -> asyncFailure("getMessages", e));
     }
 
     @DeleteMapping("/{id}")
@@ -187,7 +179,7 @@ public class MailboxController {
             log.info("✅ [STEP 4] User authenticated successfully: {}", user.getUserId());
             log.info("🔍 [STEP 5] Looking up mailbox with ID: {}", mailboxId);
             
-            Optional<Mailbox> mailbox = mailboxService.getMailbox(mailboxId);
+            Optional<Mailbox> mailbox = mailboxService.refreshMailbox(mailboxId);
             
             if (mailbox.isPresent()) {
                 Mailbox mb = mailbox.get();
@@ -204,21 +196,17 @@ public class MailboxController {
                 }
                 
                 log.info("✅ [STEP 8] Access granted - user owns this mailbox");
-                log.info("📊 [STEP 9] Counting messages for mailbox {}", mailboxId);
-                
-                List<Message> messages = mailboxService.getMessagesByMailboxId(mailboxId, mb.getUserId());
-                int messageCount = messages.size();
-                
-                log.info("📈 [STEP 10] Found {} messages in mailbox", messageCount);
+                // Counters live on the mailbox item, so this is the same single GetItem that loaded it
+                Map<String, Object> status = new LinkedHashMap<>();
+                status.put("id", mb.getId());
+                status.put("address", mb.getAddress());
+                status.put("expiryTime", mb.getExpiryTime());
+                status.put("messageCount", mb.getMessageCount());
+                status.put("totalBytes", mb.getTotalBytes());
+                status.put("lastReceivedAt", mb.getLastReceivedAt());
                 
-                Map<String, Object> status = Map.of(
-                    "id", mb.getId(),
-                    "address", mb.getAddress(),
-                    "expiryTime", mb.getExpiryTime(),
-                    "messageCount", messageCount
-                );
-                
-                log.info("📊 [STEP 11] Returning status: {}", status);
+                log.info("📈 [STEP 9] Mailbox holds {} messages ({} bytes)", mb.getMessageCount(), mb.getTotalBytes());
+                log.info("📊 [STEP 10] Returning status: {}", status);
                 return ResponseEntity.ok(status);
             } else {
                 log.warn("📭 [STEP 6] Mailbox not found with ID: {}", mailboxId);
@@ -239,42 +227,103 @@ public class MailboxController {
     }
 
     @GetMapping
-    public ResponseEntity<List<Mailbox>> getAllMailboxes(@AuthenticationPrincipal User user) {
-        log.info("📋 [STEP 1] Received GET /api/mailboxes");
+    public CompletableFuture<ResponseEntity<List<Mailbox>>> getAllMailboxes(@AuthenticationPrincipal User user,
+                                                                            @RequestParam(defaultValue = "50") int limit,
+                                                                            @RequestParam(required = false) String cursor) {
+        log.info("📋 [STEP 1] Received GET /api/mailboxes (limit={}, cursor={})", limit, cursor != null);
         log.info("👤 [STEP 2] Authenticated user: {}", (user != null ? user.getUserId() : "null"));
         
+        if (user == null) {
+            log.warn("❌ [STEP 3] Authentication failed - user is null, returning 401");
+            return CompletableFuture.completedFuture(ResponseEntity.status(401).build());
+        }
+        
+        log.info("✅ [STEP 4] User authenticated successfully: {}", user.getUserId());
+        log.info("📋 [STEP 5] Retrieving a page of mailboxes for user: {}", user.getUserId());
+        
+        try {
+            return mailboxService.getAllMailboxesForUserAsync(user.getUserId(), limit, cursor)
+                    .thenApply(page -> {
+                        List<Mailbox> mailboxes = page.getItems();
+                        log.info("📊 [STEP 6] Found {} mailboxes for user {}", mailboxes.size(), user.getUserId());
+                        for (int i = 0; i < mailboxes.size(); i++) {
+                            Mailbox mb = mailboxes.get(i);
+                            log.info("   📧 Mailbox {}: ID={}, Address={}, Expires={}", 
+                                    i + 1, mb.getId(), mb.getAddress(), mb.getExpiryTime());
+                        }
+                        log.info("✅ [STEP 7] Returning {} mailboxes for user, more available: {}", mailboxes.size(), page.hasMore());
+                        return pageResponse(page);
+                    })
+                    .exceptionally(e -> asyncFailure("getAllMailboxes", e));
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(asyncFailure("getAllMailboxes", e));
+        }
+    }
+
+    // 5. Read Single Message
+    @GetMapping("/{mailboxId}/messages/{messageId}")
+    public ResponseEntity<?> readSingleMessage(@PathVariable String mailboxId, @PathVariable String messageId, @AuthenticationPrincipal User user) {
+        log.info("📖 [STEP 1] Received GET /api/mailboxes/{}/messages/{}", mailboxId, messageId);
+        
         try {
             if (user == null) {
-                log.warn("❌ [STEP 3] Authentication failed - user is null, returning 401");
+                log.warn("❌ [STEP 2] Authentication failed - user is null, returning 401");
                 return ResponseEntity.status(401).build();
             }
             
-            log.info("✅ [STEP 4] User authenticated successfully: {}", user.getUserId());
-            log.info("📋 [STEP 5] Retrieving all mailboxes for user: {}", user.getUserId());
+            Optional<Mailbox> mailbox = mailboxService.getMailboxForUser(mailboxId, user.getUserId());
+            if (mailbox.isEmpty()) {
+                log.warn("📭 [STEP 3] Mailbox {} not found for user {}", mailboxId, user.getUserId());
+                return ResponseEntity.notFound().build();
+            }
             
-            List<Mailbox> mailboxes = mailboxService.getAllMailboxesForUser(user.getUserId());
+            log.info("📨 [STEP 4] Fetching full message {}", messageId);
+            Optional<Message> message = mailboxService.getMessage(mailboxId, messageId, user.getUserId());
+            if (message.isEmpty()) {
+                log.warn("📭 [STEP 5] Message {} not found in mailbox {}", messageId, mailboxId);
+                return ResponseEntity.notFound().build();
+            }
             
-            log.info("📊 [STEP 6] Found {} mailboxes for user {}", mailboxes.size(), user.getUserId());
-            for (int i = 0; i < mailboxes.size(); i++) {
-                Mailbox mb = mailboxes.get(i);
-                log.info("   📧 Mailbox {}: ID={}, Address={}, Expires={}", 
-                        i + 1, mb.getId(), mb.getAddress(), mb.getExpiryTime());
+            if (mailbox.get().isBurnAfterRead()) {
+                log.info("🔥 [STEP 6] Burn after read enabled - destroying mailbox {}", mailboxId);
+                mailboxService.deleteMailbox(mailboxId, user.getUserId());
             }
             
-            log.info("✅ [STEP 7] Returning {} mailboxes for user", mailboxes.size());
-            return ResponseEntity.ok(mailboxes);
+            log.info("✅ [STEP 7] Returning message {}", messageId);
+            return ResponseEntity.ok(message.get());
         } catch (Exception e) {
-            log.error("💥 [STEP ERROR] Exception in getAllMailboxes: {}", e.getMessage());
+            log.error("💥 [STEP ERROR] Exception in readSingleMessage: {}", e.getMessage());
             log.error("📍 [STEP ERROR] Stack trace:", e);
             return ResponseEntity.status(500).build();
         }
     }
 
-    // 5. Read Single Message
-    @GetMapping("/{mailboxId}/messages/{messageId}")
-    public ResponseEntity<?> readSingleMessage(@PathVariable String mailboxId, @PathVariable String messageId) {
-        // TODO: fetch message, check burnAfterRead, delete mailbox if needed
-        return ResponseEntity.status(501).body(java.util.Map.of("error", "Not implemented"));
+    // Delete Single Message
+    @DeleteMapping("/{mailboxId}/messages/{messageId}")
+    public ResponseEntity<Void> deleteSingleMessage(@PathVariable String mailboxId, @PathVariable String messageId, @AuthenticationPrincipal User user) {
+        log.info("🗑️ [STEP 1] Received DELETE /api/mailboxes/{}/messages/{}", mailboxId, messageId);
+
+        try {
+            if (user == null) {
+                log.warn("❌ [STEP 2] Authentication failed - user is null, returning 401");
+                return ResponseEntity.status(401).build();
+            }
+
+            if (!mailboxService.deleteMessage(mailboxId, messageId, user.getUserId())) {
+                log.warn("📭 [STEP 3] Message {} not found in mailbox {}", messageId, mailboxId);
+                return ResponseEntity.notFound().build();
+            }
+
+            log.info("✅ [STEP 3] Message {} deleted, returning 204 No Content", messageId);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            log.warn("📭 [STEP 3] {}", e.getMessage());
+            return ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            log.error("💥 [STEP ERROR] Exception in deleteSingleMessage: {}", e.getMessage());
+            log.error("📍 [STEP ERROR] Stack trace:", e);
+            return ResponseEntity.status(500).build();
+        }
     }
 
     // 6. Download Attachment
@@ -283,4 +332,23 @@ public class MailboxController {
         // TODO: generate pre-signed S3 URL for attachment
         return ResponseEntity.status(501).body(java.util.Map.of("error", "Not implemented"));
     }
-}
\ No newline at end of file
+
+    private static <T> ResponseEntity<List<T>> pageResponse(PagedResult<T> page) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.hasMore()) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getItems());
+    }
+
+    private static <T> ResponseEntity<T> asyncFailure(String endpoint, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof IllegalArgumentException) {
+            log.warn("⚠️ [STEP ERROR] Bad request in {}: {}", endpoint, cause.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+        log.error("💥 [STEP ERROR] Exception in {}: {}", endpoint, cause.getMessage());
+        log.error("📍 [STEP ERROR] Stack trace:", cause);
+        return ResponseEntity.status(500).build();
+    }
+}
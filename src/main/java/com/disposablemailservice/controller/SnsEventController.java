@@ -1,6 +1,8 @@
 package com.disposablemailservice.controller;
 
-import com.disposablemailservice.service.EmailEventService;
+import com.disposablemailservice.service.SnsIngestionQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -12,15 +14,30 @@ import java.util.Map;
 @RestController
 @RequestMapping("/api/sns")
 public class SnsEventController {
-    private final EmailEventService emailEventService;
 
-    public SnsEventController(EmailEventService emailEventService) {
-        this.emailEventService = emailEventService;
+    private static final Logger log = LoggerFactory.getLogger(SnsEventController.class);
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    private final SnsIngestionQueue ingestionQueue;
+
+    public SnsEventController(SnsIngestionQueue ingestionQueue) {
+        this.ingestionQueue = ingestionQueue;
     }
 
+    // Accepted events are processed in the background; a full queue answers 503 so SNS backs off and redelivers
     @PostMapping("/event")
     public ResponseEntity<?> handleSnsEvent(@RequestBody String snsPayload) {
-        emailEventService.processSnsEvent(snsPayload);
-        return ResponseEntity.ok(Map.of("status", "processed"));
+        try {
+            if (!ingestionQueue.submit(snsPayload)) {
+                log.warn("⏳ Ingestion queue full, shedding SNS event");
+                return ResponseEntity.status(503)
+                        .header("Retry-After", RETRY_AFTER_SECONDS)
+                        .body(Map.of("status", "busy"));
+            }
+            return ResponseEntity.ok(Map.of("status", "accepted"));
+        } catch (IllegalArgumentException e) {
+            log.warn("⚠️ Rejected SNS event: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("status", "rejected", "error", e.getMessage()));
+        }
     }
 }
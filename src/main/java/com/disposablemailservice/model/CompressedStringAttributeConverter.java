@@ -0,0 +1,121 @@
+// DynamoDB attribute converter that stores large text attributes as compressed binary.
+// Values are written as: S (plain string, short values) or B = [MAGIC, codec id, payload...].
+// Items written before compression existed are plain S values and still read unchanged.
+package com.disposablemailservice.model;
+
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.enhanced.dynamodb.AttributeConverter;
+import software.amazon.awssdk.enhanced.dynamodb.AttributeValueType;
+import software.amazon.awssdk.enhanced.dynamodb.EnhancedType;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class CompressedStringAttributeConverter implements AttributeConverter<String> {
+
+    static final byte MAGIC = (byte) 0xB5;
+    static final byte CODEC_DEFLATE = 1;
+    static final byte CODEC_DEFLATE_FAST = 2;
+    private static final int HEADER_BYTES = 2;
+
+    // Below this the header and deflate framing cost more than they save
+    private static final int MIN_COMPRESS_BYTES = 1024;
+    // Above this compression CPU dominates, so trade a little ratio for speed
+    private static final int FAST_CODEC_BYTES = 32 * 1024;
+
+    private static final ThreadLocal<Deflater> DEFAULT_DEFLATER =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+    private static final ThreadLocal<Deflater> FAST_DEFLATER =
+            ThreadLocal.withInitial(() -> new Deflater(Deflater.BEST_SPEED, true));
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    @Override
+    public AttributeValue transformFrom(String input) {
+        if (input == null) {
+            return AttributeValue.builder().nul(true).build();
+        }
+        // Cheap length check first: a char is at least one UTF-8 byte
+        if (input.length() < MIN_COMPRESS_BYTES) {
+            return AttributeValue.builder().s(input).build();
+        }
+        byte[] raw = input.getBytes(StandardCharsets.UTF_8);
+        byte codec = raw.length >= FAST_CODEC_BYTES ? CODEC_DEFLATE_FAST : CODEC_DEFLATE;
+        byte[] encoded = deflate(raw, codec == CODEC_DEFLATE_FAST ? FAST_DEFLATER.get() : DEFAULT_DEFLATER.get(), codec);
+        if (encoded.length >= raw.length) {
+            // Incompressible (already encoded content); keep it readable
+            return AttributeValue.builder().s(input).build();
+        }
+        return AttributeValue.builder().b(SdkBytes.fromByteArrayUnsafe(encoded)).build();
+    }
+
+    @Override
+    public String transformTo(AttributeValue input) {
+        if (input.s() != null) {
+            return input.s();
+        }
+        if (input.b() == null) {
+            return null;
+        }
+        byte[] stored = input.b().asByteArrayUnsafe();
+        if (stored.length < HEADER_BYTES || stored[0] != MAGIC) {
+            throw new IllegalStateException("Unrecognised compressed attribute header");
+        }
+        return switch (stored[1]) {
+            case CODEC_DEFLATE, CODEC_DEFLATE_FAST -> inflate(stored);
+            default -> throw new IllegalStateException("Unknown compression codec " + stored[1]);
+        };
+    }
+
+    @Override
+    public EnhancedType<String> type() {
+        return EnhancedType.of(String.class);
+    }
+
+    @Override
+    public AttributeValueType attributeValueType() {
+        return AttributeValueType.B;
+    }
+
+    private static byte[] deflate(byte[] raw, Deflater deflater, byte codec) {
+        byte[] buffer = BUFFER.get();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + HEADER_BYTES);
+        out.write(MAGIC);
+        out.write(codec);
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return out.toByteArray();
+    }
+
+    private static String inflate(byte[] stored) {
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(stored, HEADER_BYTES, stored.length - HEADER_BYTES);
+        byte[] out = new byte[Math.max(64, (stored.length - HEADER_BYTES) * 4)];
+        int length = 0;
+        try {
+            while (!inflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                int read = inflater.inflate(out, length, out.length - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed attribute");
+                }
+                length += read;
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt compressed attribute", e);
+        }
+        return new String(out, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -2,27 +2,57 @@
 // Fields: id, address, expiryTime (TTL), createdAt.
 package com.disposablemailservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
-import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
-import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
 
 @Data
-@DynamoDbBean
 public class Mailbox {
+
+    // GSI used to list a user's mailboxes newest-first without scanning the table
+    public static final String USER_ID_INDEX = "userId-createdAt-index";
+    // GSI the expiry reaper reads: one partition per UTC hour of expiryTime, sorted by expiryTime
+    public static final String EXPIRY_BUCKET_INDEX = "expiryBucket-expiryTime-index";
+    // GSI inbound routing resolves a recipient address through
+    public static final String ADDRESS_INDEX = "address-index";
+    private static final DateTimeFormatter EXPIRY_BUCKET_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH").withZone(ZoneOffset.UTC);
+    // DynamoDB TTL attribute (epoch seconds). It is a backstop only: expired mailboxes are purged by the
+    // reaper/expiry wheel, and TTL removes any row they missed once the grace period has passed.
+    public static final String TTL_ATTRIBUTE = "ttl";
+    public static final Duration TTL_GRACE = Duration.ofDays(7);
+    public static final String MESSAGE_COUNT_ATTRIBUTE = "messageCount";
+    public static final String TOTAL_BYTES_ATTRIBUTE = "totalBytes";
+    public static final String LAST_RECEIVED_AT_ATTRIBUTE = "lastReceivedAt";
+    // Epoch millis until which one scheduler holds the right to purge the mailbox; written by claimForPurge only
+    public static final String PURGE_CLAIMED_UNTIL_ATTRIBUTE = "purgeClaimedUntil";
     
     private String id;
     private String address;
     private String userId; // Link to user who created the mailbox
     
     private Instant expiryTime;
+
+    private String expiryBucket;
+
+    private Long ttl;
     
     private Instant createdAt;
 
     private boolean burnAfterRead;
 
-    @DynamoDbPartitionKey
+    // Maintained by atomic UpdateItem ADD/SET on message ingest and delete, so status never reads messages
+    private int messageCount;
+
+    private long totalBytes;
+
+    private Instant lastReceivedAt;
+
+    // Alias of id kept for API responses; the table key attribute is "id"
     public String getMailboxId() {
         return id;
     }
@@ -53,6 +83,51 @@ public class Mailbox {
 
     public void setExpiryTime(Instant expiryTime) {
         this.expiryTime = expiryTime;
+        this.expiryBucket = expiryBucketOf(expiryTime);
+        this.ttl = expiryTime == null ? null : expiryTime.plus(TTL_GRACE).getEpochSecond();
+    }
+
+    public String getExpiryBucket() {
+        return expiryBucket;
+    }
+
+    public void setExpiryBucket(String expiryBucket) {
+        this.expiryBucket = expiryBucket;
+    }
+
+    @JsonIgnore
+    public Long getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Returns a detached copy, for holders that hand mailboxes out and must not see callers' edits.
+     */
+    public static Mailbox copyOf(Mailbox source) {
+        if (source == null) {
+            return null;
+        }
+        Mailbox copy = new Mailbox();
+        copy.setId(source.getId());
+        copy.setAddress(source.getAddress());
+        copy.setUserId(source.getUserId());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setExpiryTime(source.getExpiryTime());
+        copy.setExpiryBucket(source.getExpiryBucket());
+        copy.setTtl(source.getTtl());
+        copy.setBurnAfterRead(source.isBurnAfterRead());
+        copy.setMessageCount(source.getMessageCount());
+        copy.setTotalBytes(source.getTotalBytes());
+        copy.setLastReceivedAt(source.getLastReceivedAt());
+        return copy;
+    }
+
+    public static String expiryBucketOf(Instant instant) {
+        return instant == null ? null : EXPIRY_BUCKET_FORMAT.format(instant);
     }
 
     public Instant getCreatedAt() {
@@ -78,4 +153,28 @@ public class Mailbox {
     public void setUserId(String userId) {
         this.userId = userId;
     }
-}
\ No newline at end of file
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public void setMessageCount(int messageCount) {
+        this.messageCount = messageCount;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public Instant getLastReceivedAt() {
+        return lastReceivedAt;
+    }
+
+    public void setLastReceivedAt(Instant lastReceivedAt) {
+        this.lastReceivedAt = lastReceivedAt;
+    }
+}
@@ -1,27 +1,28 @@
 // DynamoDB model for an email message.
-// Fields: id, mailboxId, subject, from, body, attachments, receivedAt.
+// Fields: id, mailboxId, subject, from, body (or bodyKey + preview when offloaded to S3), attachments,
+// attachmentCount, sizeBytes, receivedAt.
 package com.disposablemailservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
-import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
-import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
-import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
 
 import java.time.Instant;
 import java.util.List;
 
 @Data
-@DynamoDbBean
 public class Message {
     private String id;
     private String mailboxId;
     private String subject;
     private String from;
     private String body;
+    private String bodyKey;
+    private String preview;
     private List<String> attachments;
+    private int attachmentCount;
+    private long sizeBytes;
     private Instant receivedAt;
 
-    @DynamoDbPartitionKey
     public String getMailboxId() {
         return mailboxId;
     }
@@ -30,7 +31,7 @@ public class Message {
         this.mailboxId = mailboxId;
     }
 
-    @DynamoDbSortKey
+    // Alias of id kept for API responses; the table sort key attribute is "id"
     public String getMessageId() {
         return id;
     }
@@ -71,6 +72,24 @@ public class Message {
         this.body = body;
     }
 
+    // S3 object key of the body when it was too large to store inline; body is null until resolved
+    @JsonIgnore
+    public String getBodyKey() {
+        return bodyKey;
+    }
+
+    public void setBodyKey(String bodyKey) {
+        this.bodyKey = bodyKey;
+    }
+
+    public String getPreview() {
+        return preview;
+    }
+
+    public void setPreview(String preview) {
+        this.preview = preview;
+    }
+
     public List<String> getAttachments() {
         return attachments;
     }
@@ -79,6 +98,23 @@ public class Message {
         this.attachments = attachments;
     }
 
+    public int getAttachmentCount() {
+        return attachmentCount;
+    }
+
+    public void setAttachmentCount(int attachmentCount) {
+        this.attachmentCount = attachmentCount;
+    }
+
+    // Bytes counted against the mailbox's totalBytes; kept so a delete can subtract exactly what ingest added
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
     public Instant getReceivedAt() {
         return receivedAt;
     }
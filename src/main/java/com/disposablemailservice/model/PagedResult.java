@@ -0,0 +1,28 @@
+// One page of a cursor-paginated listing.
+// nextCursor is null when there are no more results.
+package com.disposablemailservice.model;
+
+import java.util.List;
+
+public class PagedResult<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public PagedResult(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasMore() {
+        return nextCursor != null;
+    }
+}
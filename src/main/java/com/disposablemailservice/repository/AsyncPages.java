@@ -0,0 +1,30 @@
+// Helpers for reading single pages from the enhanced async client's page publishers.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.PagedResult;
+import software.amazon.awssdk.core.async.SdkPublisher;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+final class AsyncPages {
+
+    private AsyncPages() {
+    }
+
+    // Requests exactly one page from DynamoDB; the subscription is cancelled after it arrives
+    static <T> CompletableFuture<PagedResult<T>> firstPage(SdkPublisher<Page<T>> pages) {
+        AtomicReference<Page<T>> first = new AtomicReference<>();
+        return pages.limit(1)
+                .subscribe(first::set)
+                .thenApply(done -> {
+                    Page<T> page = first.get();
+                    if (page == null) {
+                        return new PagedResult<T>(List.of(), null);
+                    }
+                    return new PagedResult<>(page.items(), PageCursor.encode(page.lastEvaluatedKey()));
+                });
+    }
+}
@@ -0,0 +1,32 @@
+// Storage contract for reference counts on shared, content-addressed S3 objects.
+// Implemented by DynamoDB and the in-memory backend; records are keyed by content, objects by content and generation.
+package com.disposablemailservice.repository;
+
+public interface BlobReferenceStore {
+
+    /**
+     * Adds one reference to the content key and returns the object key to store the content under.
+     * The object key carries the record's generation: once the last reference is gone the record is
+     * removed, and content stored again afterwards starts a new generation, so a delete still in
+     * flight for the old object can never remove the new one.
+     */
+    Reference acquire(String contentKey);
+
+    /**
+     * Drops the reference held through the object key. Returns true only for the caller that released
+     * the last reference and removed the record, which then owns deleting the object. Releasing a
+     * generation that no longer exists, or has no references left, changes nothing.
+     */
+    boolean release(String objectKey);
+
+    /**
+     * The object key for this reference and the count after the increment; 1 means this caller is the
+     * first, so the object may not have been uploaded yet.
+     */
+    record Reference(String objectKey, long count) {
+    }
+
+    static String objectKey(String contentKey, String generation) {
+        return contentKey + "/" + generation;
+    }
+}
@@ -0,0 +1,26 @@
+// Storage contract for message bodies and attachment objects.
+// Implemented by S3 and by the in-memory backend; reference counting sits above it in ContentAddressedStore.
+package com.disposablemailservice.repository;
+
+import java.nio.file.Path;
+import java.util.List;
+
+public interface BlobStore {
+
+    // Streams the file rather than loading it, so the heap cost does not depend on its size
+    void put(String key, Path file, String contentType);
+
+    void put(String key, byte[] content, String contentType);
+
+    /**
+     * Returns the object's content. Throws if no object is stored under the key.
+     */
+    byte[] read(String key);
+
+    boolean exists(String key);
+
+    /**
+     * Deletes the objects, returning how many were confirmed deleted. Missing keys count as deleted.
+     */
+    int deleteAll(List<String> keys);
+}
@@ -0,0 +1,94 @@
+// Stores blobs once per distinct content and reference counts them in the blob-refs table.
+// Shared by attachments and offloaded message bodies; each owner gets its own key prefix and metrics.
+package com.disposablemailservice.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Objects live at &lt;prefix&gt;&lt;sha256&gt;/&lt;generation&gt;. The first reference uploads and
+ * later ones only bump the count; the object is deleted by whoever releases the last reference.
+ * Keys outside the prefix predate content addressing, belong to a single message and are deleted
+ * outright.
+ */
+public class ContentAddressedStore {
+
+    private final BlobStore blobStore;
+    private final BlobReferenceStore referenceStore;
+    private final String prefix;
+    private final Counter uploaded;
+    private final Counter deduplicated;
+
+    public ContentAddressedStore(BlobStore blobStore, BlobReferenceStore referenceStore, MeterRegistry meterRegistry,
+                                 String prefix, String metricName) {
+        this.blobStore = blobStore;
+        this.referenceStore = referenceStore;
+        this.prefix = prefix;
+        this.uploaded = Counter.builder(metricName).tag("result", "uploaded").register(meterRegistry);
+        this.deduplicated = Counter.builder(metricName).tag("result", "deduplicated").register(meterRegistry);
+    }
+
+    /**
+     * Takes a reference on the content and uploads the file only when no copy exists yet. Returns the
+     * object key the reference was taken on; the caller must give the reference back through
+     * {@link #releaseAll} if whatever points at the key is never stored.
+     */
+    public String store(String sha256Hex, Path file, String contentType) {
+        return store(sha256Hex, key -> blobStore.put(key, file, contentType));
+    }
+
+    public String store(String sha256Hex, byte[] content, String contentType) {
+        return store(sha256Hex, key -> blobStore.put(key, content, contentType));
+    }
+
+    private String store(String sha256Hex, Consumer<String> upload) {
+        BlobReferenceStore.Reference reference = referenceStore.acquire(prefix + sha256Hex);
+        String key = reference.objectKey();
+        try {
+            // A later reference double-checks the object, which heals a first upload that failed
+            if (reference.count() == 1 || !blobStore.exists(key)) {
+                upload.accept(key);
+                uploaded.increment();
+            } else {
+                deduplicated.increment();
+            }
+            return key;
+        } catch (RuntimeException e) {
+            releaseAll(List.of(key));
+            throw e;
+        }
+    }
+
+    public byte[] read(String key) {
+        return blobStore.read(key);
+    }
+
+    /**
+     * Drops one reference per key and deletes the objects nothing references any more, returning
+     * how many were deleted.
+     */
+    public int releaseAll(List<String> keys) {
+        List<String> unreferenced = new ArrayList<>();
+        for (String key : keys) {
+            if (!key.startsWith(prefix) || referenceStore.release(key)) {
+                unreferenced.add(key);
+            }
+        }
+        return unreferenced.isEmpty() ? 0 : blobStore.deleteAll(unreferenced);
+    }
+
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
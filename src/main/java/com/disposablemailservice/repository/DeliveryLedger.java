@@ -0,0 +1,26 @@
+// Storage contract for the inbound delivery ledger, implemented by DynamoDB and the in-memory backend.
+// Records which SES messages have been claimed or stored so redeliveries can be recognised across replicas.
+package com.disposablemailservice.repository;
+
+import java.time.Instant;
+
+public interface DeliveryLedger {
+
+    String TTL_ATTRIBUTE = "ttl";
+
+    /**
+     * Claims the delivery for processing until leaseUntil. Returns false when it is already completed,
+     * or claimed by someone else whose lease has not yet run out.
+     */
+    boolean tryClaim(String deliveryId, Instant leaseUntil, Instant expiresAt);
+
+    /**
+     * Marks a claimed delivery as stored; it is then refused until expiresAt.
+     */
+    void markCompleted(String deliveryId, Instant expiresAt);
+
+    /**
+     * Drops a claim whose processing failed, so the next redelivery can try again straight away.
+     */
+    void release(String deliveryId);
+}
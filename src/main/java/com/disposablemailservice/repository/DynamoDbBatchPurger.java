@@ -0,0 +1,143 @@
+// Deletes a list of DynamoDB items using parallel BatchWriteItem calls.
+// Keys are cut into 25-item chunks with a bounded number in flight, so memory stays bounded by the in-flight chunks.
+package com.disposablemailservice.repository;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.DeleteRequest;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+@Profile("!" + InMemoryMailboxStore.PROFILE)
+public class DynamoDbBatchPurger {
+
+    private static final Logger log = LoggerFactory.getLogger(DynamoDbBatchPurger.class);
+
+    // Hard DynamoDB limit for BatchWriteItem
+    static final int BATCH_SIZE = 25;
+
+    private final DynamoDbClient dynamoDbClient;
+    private final ExecutorService executor;
+    private final int concurrency;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+
+    public DynamoDbBatchPurger(DynamoDbClient dynamoDbClient,
+                               @Value("${app.dynamodb.purge.concurrency:8}") int concurrency,
+                               @Value("${app.dynamodb.purge.max-attempts:8}") int maxAttempts,
+                               @Value("${app.dynamodb.purge.base-backoff-ms:25}") long baseBackoffMillis) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.concurrency = concurrency;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        AtomicInteger threadIds = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "dynamodb-purge-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Deletes the items with the given keys and returns how many were deleted. BatchWriteItem does not
+     * return old items, so callers only use this for items whose deletion needs no follow-up work.
+     * At most {@code concurrency} chunks are in flight at once across the whole purge.
+     */
+    public int deleteKeys(String tableName, List<Map<String, AttributeValue>> keys) {
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicInteger deleted = new AtomicInteger();
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        List<WriteRequest> pending = new ArrayList<>(BATCH_SIZE);
+
+        try {
+            for (Map<String, AttributeValue> key : keys) {
+                pending.add(WriteRequest.builder()
+                        .deleteRequest(DeleteRequest.builder().key(key).build())
+                        .build());
+                if (pending.size() == BATCH_SIZE) {
+                    chunks.add(submit(tableName, pending, inFlight, deleted));
+                    pending = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!pending.isEmpty()) {
+                chunks.add(submit(tableName, pending, inFlight, deleted));
+            }
+            CompletableFuture.allOf(chunks.toArray(new CompletableFuture<?>[0])).join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while deleting from " + tableName, e);
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Failed to delete from " + tableName
+                    + " after deleting " + deleted.get() + " items", e.getCause());
+        }
+
+        log.info("Deleted {} items from {} in {} chunks", deleted.get(), tableName, chunks.size());
+        return deleted.get();
+    }
+
+    private CompletableFuture<Void> submit(String tableName, List<WriteRequest> chunk, Semaphore inFlight,
+                                           AtomicInteger deleted) throws InterruptedException {
+        inFlight.acquire();
+        return CompletableFuture.runAsync(() -> {
+            try {
+                writeWithRetry(tableName, chunk);
+                deleted.addAndGet(chunk.size());
+            } finally {
+                inFlight.release();
+            }
+        }, executor);
+    }
+
+    private void writeWithRetry(String tableName, List<WriteRequest> chunk) {
+        Map<String, List<WriteRequest>> requestItems = Map.of(tableName, chunk);
+        for (int attempt = 1; ; attempt++) {
+            BatchWriteItemResponse response = dynamoDbClient.batchWriteItem(BatchWriteItemRequest.builder()
+                    .requestItems(requestItems)
+                    .build());
+            if (!response.hasUnprocessedItems() || response.unprocessedItems().isEmpty()) {
+                return;
+            }
+            if (attempt >= maxAttempts) {
+                int remaining = response.unprocessedItems().values().stream().mapToInt(List::size).sum();
+                throw new IllegalStateException(remaining + " items still unprocessed after " + attempt + " attempts");
+            }
+            requestItems = response.unprocessedItems();
+            sleepBackoff(attempt);
+        }
+    }
+
+    private void sleepBackoff(int attempt) {
+        // Full jitter exponential backoff, capped so a throttled purge still makes progress
+        long cap = Math.min(baseBackoffMillis << Math.min(attempt, 10), 5_000L);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
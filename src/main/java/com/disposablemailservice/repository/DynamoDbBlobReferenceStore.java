@@ -0,0 +1,91 @@
+// Reference counts for content-addressed objects, one item per content key in the blob-refs table.
+// Counts change with atomic ADD updates, so concurrent messages never lose an increment.
+package com.disposablemailservice.repository;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.ReturnValue;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Reaching zero and removing the record are separate steps: the record is deleted only while the
+ * count is still at or below zero, so a message that takes a new reference in between keeps both
+ * the record and the object alive. Every update is conditioned on the generation, so a release
+ * aimed at an object whose record has since been recreated cannot touch the new count.
+ */
+@Repository
+@Profile("!" + InMemoryMailboxStore.PROFILE)
+public class DynamoDbBlobReferenceStore implements BlobReferenceStore {
+
+    private static final String REFS_ATTRIBUTE = "refs";
+    private static final String GENERATION_ATTRIBUTE = "generation";
+
+    private final DynamoDbClient dynamoDbClient;
+
+    public DynamoDbBlobReferenceStore(DynamoDbClient dynamoDbClient) {
+        this.dynamoDbClient = dynamoDbClient;
+    }
+
+    @Override
+    public Reference acquire(String contentKey) {
+        // The first writer's generation sticks; everyone else gets it back from the update
+        Map<String, AttributeValue> updated = dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                .tableName(TableSchemas.BLOB_REF_TABLE)
+                .key(Map.of("id", AttributeValue.fromS(contentKey)))
+                .updateExpression("ADD #refs :one SET #gen = if_not_exists(#gen, :gen)")
+                .expressionAttributeNames(Map.of("#refs", REFS_ATTRIBUTE, "#gen", GENERATION_ATTRIBUTE))
+                .expressionAttributeValues(Map.of(
+                        ":one", AttributeValue.fromN("1"),
+                        ":gen", AttributeValue.fromS(Long.toHexString(ThreadLocalRandom.current().nextLong()))))
+                .returnValues(ReturnValue.ALL_NEW)
+                .build()).attributes();
+        return new Reference(BlobReferenceStore.objectKey(contentKey, updated.get(GENERATION_ATTRIBUTE).s()),
+                Long.parseLong(updated.get(REFS_ATTRIBUTE).n()));
+    }
+
+    @Override
+    public boolean release(String objectKey) {
+        int slash = objectKey.lastIndexOf('/');
+        Map<String, AttributeValue> key = Map.of("id", AttributeValue.fromS(objectKey.substring(0, slash)));
+        Map<String, String> names = Map.of("#refs", REFS_ATTRIBUTE, "#gen", GENERATION_ATTRIBUTE);
+        AttributeValue generation = AttributeValue.fromS(objectKey.substring(slash + 1));
+        AttributeValue zero = AttributeValue.fromN("0");
+
+        long remaining;
+        try {
+            remaining = Long.parseLong(dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(TableSchemas.BLOB_REF_TABLE)
+                    .key(key)
+                    .updateExpression("ADD #refs :minusOne")
+                    .conditionExpression("#gen = :gen AND #refs > :zero")
+                    .expressionAttributeNames(names)
+                    .expressionAttributeValues(Map.of(":minusOne", AttributeValue.fromN("-1"), ":gen", generation, ":zero", zero))
+                    .returnValues(ReturnValue.UPDATED_NEW)
+                    .build()).attributes().get(REFS_ATTRIBUTE).n());
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+        if (remaining > 0) {
+            return false;
+        }
+        try {
+            dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                    .tableName(TableSchemas.BLOB_REF_TABLE)
+                    .key(key)
+                    .conditionExpression("#gen = :gen AND #refs <= :zero")
+                    .expressionAttributeNames(names)
+                    .expressionAttributeValues(Map.of(":gen", generation, ":zero", zero))
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+}
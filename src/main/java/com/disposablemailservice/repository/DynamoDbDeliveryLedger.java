@@ -0,0 +1,78 @@
+// Delivery ledger backed by a DynamoDB table keyed by SES message id.
+// Claims are conditional puts, so exactly one replica wins a delivery however many receive it.
+package com.disposablemailservice.repository;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.DeleteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * A claim is a lease rather than a lock: if the replica holding it dies mid-delivery, the item stays
+ * PENDING until its lease passes and the next SNS retry takes it over. Completed items linger until
+ * DynamoDB TTL removes them, which bounds the table to the redelivery window.
+ */
+@Repository
+@Profile("!" + InMemoryMailboxStore.PROFILE)
+public class DynamoDbDeliveryLedger implements DeliveryLedger {
+
+    private static final String PENDING = "PENDING";
+    private static final String COMPLETED = "COMPLETED";
+
+    private final DynamoDbClient dynamoDbClient;
+
+    public DynamoDbDeliveryLedger(DynamoDbClient dynamoDbClient) {
+        this.dynamoDbClient = dynamoDbClient;
+    }
+
+    @Override
+    public boolean tryClaim(String deliveryId, Instant leaseUntil, Instant expiresAt) {
+        try {
+            dynamoDbClient.putItem(PutItemRequest.builder()
+                    .tableName(TableSchemas.DELIVERY_TABLE)
+                    .item(item(deliveryId, PENDING, leaseUntil, expiresAt))
+                    .conditionExpression("attribute_not_exists(#id) OR (#state = :pending AND #lease < :now)")
+                    .expressionAttributeNames(Map.of("#id", "id", "#state", "state", "#lease", "leaseUntil"))
+                    .expressionAttributeValues(Map.of(
+                            ":pending", AttributeValue.fromS(PENDING),
+                            ":now", AttributeValue.fromN(Long.toString(Instant.now().toEpochMilli()))))
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void markCompleted(String deliveryId, Instant expiresAt) {
+        dynamoDbClient.putItem(PutItemRequest.builder()
+                .tableName(TableSchemas.DELIVERY_TABLE)
+                .item(item(deliveryId, COMPLETED, expiresAt, expiresAt))
+                .build());
+    }
+
+    @Override
+    public void release(String deliveryId) {
+        dynamoDbClient.deleteItem(DeleteItemRequest.builder()
+                .tableName(TableSchemas.DELIVERY_TABLE)
+                .key(Map.of("id", AttributeValue.fromS(deliveryId)))
+                .conditionExpression("#state = :pending")
+                .expressionAttributeNames(Map.of("#state", "state"))
+                .expressionAttributeValues(Map.of(":pending", AttributeValue.fromS(PENDING)))
+                .build());
+    }
+
+    private static Map<String, AttributeValue> item(String deliveryId, String state, Instant leaseUntil, Instant expiresAt) {
+        return Map.of(
+                "id", AttributeValue.fromS(deliveryId),
+                "state", AttributeValue.fromS(state),
+                "leaseUntil", AttributeValue.fromN(Long.toString(leaseUntil.toEpochMilli())),
+                TTL_ATTRIBUTE, AttributeValue.fromN(Long.toString(expiresAt.getEpochSecond())));
+    }
+}
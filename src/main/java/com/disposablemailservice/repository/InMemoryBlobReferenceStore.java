@@ -0,0 +1,42 @@
+// In-memory reference counts for the "inmemory" profile.
+// Increment, decrement and removal at zero happen atomically per key inside ConcurrentHashMap.compute.
+package com.disposablemailservice.repository;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Repository
+@Profile(InMemoryMailboxStore.PROFILE)
+public class InMemoryBlobReferenceStore implements BlobReferenceStore {
+
+    private final ConcurrentHashMap<String, Count> refs = new ConcurrentHashMap<>();
+
+    @Override
+    public Reference acquire(String contentKey) {
+        Count count = refs.compute(contentKey, (key, current) -> current == null
+                ? new Count(Long.toHexString(ThreadLocalRandom.current().nextLong()), 1)
+                : new Count(current.generation(), current.refs() + 1));
+        return new Reference(BlobReferenceStore.objectKey(contentKey, count.generation()), count.refs());
+    }
+
+    @Override
+    public boolean release(String objectKey) {
+        int slash = objectKey.lastIndexOf('/');
+        String generation = objectKey.substring(slash + 1);
+        boolean[] last = new boolean[1];
+        refs.computeIfPresent(objectKey.substring(0, slash), (key, current) -> {
+            if (!current.generation().equals(generation)) {
+                return current;
+            }
+            last[0] = current.refs() <= 1;
+            return last[0] ? null : new Count(generation, current.refs() - 1);
+        });
+        return last[0];
+    }
+
+    private record Count(String generation, long refs) {
+    }
+}
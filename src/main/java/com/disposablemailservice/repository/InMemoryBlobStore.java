@@ -0,0 +1,54 @@
+// In-memory blob storage for the "inmemory" profile, so bodies and attachments never reach S3.
+// Contents are held on the heap and lost on restart, like every other in-memory store.
+package com.disposablemailservice.repository;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Repository
+@Profile(InMemoryMailboxStore.PROFILE)
+public class InMemoryBlobStore implements BlobStore {
+
+    private final ConcurrentHashMap<String, byte[]> objects = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(String key, Path file, String contentType) {
+        try {
+            objects.put(key, Files.readAllBytes(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] content, String contentType) {
+        objects.put(key, content.clone());
+    }
+
+    @Override
+    public byte[] read(String key) {
+        byte[] content = objects.get(key);
+        if (content == null) {
+            throw new IllegalStateException("No object stored under " + key);
+        }
+        return content.clone();
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return objects.containsKey(key);
+    }
+
+    @Override
+    public int deleteAll(List<String> keys) {
+        keys.forEach(objects::remove);
+        return keys.size();
+    }
+}
@@ -0,0 +1,45 @@
+// In-memory delivery ledger for the "inmemory" profile.
+// Same claim, lease and completion rules as the DynamoDB table, applied atomically per delivery id.
+package com.disposablemailservice.repository;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Repository
+@Profile(InMemoryMailboxStore.PROFILE)
+public class InMemoryDeliveryLedger implements DeliveryLedger {
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean tryClaim(String deliveryId, Instant leaseUntil, Instant expiresAt) {
+        Entry claim = new Entry(false, leaseUntil, expiresAt);
+        Instant now = Instant.now();
+        return entries.compute(deliveryId, (id, current) ->
+                current == null || (!current.completed() && current.leaseUntil().isBefore(now)) ? claim : current) == claim;
+    }
+
+    @Override
+    public void markCompleted(String deliveryId, Instant expiresAt) {
+        entries.put(deliveryId, new Entry(true, expiresAt, expiresAt));
+    }
+
+    @Override
+    public void release(String deliveryId) {
+        entries.computeIfPresent(deliveryId, (id, current) -> current.completed() ? current : null);
+    }
+
+    // Stands in for DynamoDB TTL on the deliveries table
+    @Scheduled(fixedDelayString = "${app.inmemory.ttl-sweep-ms:60000}")
+    public void sweepExpired() {
+        Instant now = Instant.now();
+        entries.values().removeIf(entry -> entry.expiresAt().isBefore(now));
+    }
+
+    private record Entry(boolean completed, Instant leaseUntil, Instant expiresAt) {
+    }
+}
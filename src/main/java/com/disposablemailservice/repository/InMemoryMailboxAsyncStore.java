@@ -0,0 +1,40 @@
+// Async view of the in-memory mailbox store; calls complete on the caller's thread.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.Mailbox;
+import com.disposablemailservice.model.PagedResult;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.concurrent.CompletableFuture;
+
+@Repository
+@Profile(InMemoryMailboxStore.PROFILE)
+public class InMemoryMailboxAsyncStore implements MailboxAsyncStore {
+
+    private final InMemoryMailboxStore store;
+
+    public InMemoryMailboxAsyncStore(InMemoryMailboxStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public CompletableFuture<Mailbox> save(Mailbox mailbox) {
+        return CompletableFuture.supplyAsync(() -> store.save(mailbox), Runnable::run);
+    }
+
+    @Override
+    public CompletableFuture<Mailbox> findById(String id) {
+        return CompletableFuture.supplyAsync(() -> store.findById(id), Runnable::run);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteById(String id) {
+        return CompletableFuture.runAsync(() -> store.deleteById(id), Runnable::run);
+    }
+
+    @Override
+    public CompletableFuture<PagedResult<Mailbox>> findByUserId(String userId, int limit, String cursor) {
+        return CompletableFuture.supplyAsync(() -> store.findByUserId(userId, limit, cursor), Runnable::run);
+    }
+}
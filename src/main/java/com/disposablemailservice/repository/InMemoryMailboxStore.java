@@ -0,0 +1,251 @@
+// In-memory mailbox store for the "inmemory" profile, so the service and load tests run without AWS.
+// Mirrors the DynamoDB table and its GSIs with concurrent maps and skip-list indexes.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.Mailbox;
+import com.disposablemailservice.model.PagedResult;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.BiConsumer;
+
+/**
+ * Items are copied on the way in and out, as with a real table, so callers never share mutable state
+ * with the store. Every write goes through {@link ConcurrentHashMap#compute}, which serialises writers
+ * per mailbox and keeps the secondary indexes in step with the primary map.
+ */
+@Repository
+@Profile(InMemoryMailboxStore.PROFILE)
+public class InMemoryMailboxStore implements MailboxStore {
+
+    public static final String PROFILE = "inmemory";
+
+    private final ConcurrentHashMap<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, String> idsByAddress = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentSkipListSet<IndexKey>> byUser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentSkipListSet<IndexKey>> byExpiryBucket = new ConcurrentHashMap<>();
+    // Kept beside the items rather than on them, since the model has no field for the claim
+    private final ConcurrentHashMap<String, Instant> purgeClaims = new ConcurrentHashMap<>();
+
+    @Override
+    public Mailbox save(Mailbox mailbox) {
+        Mailbox stored = Mailbox.copyOf(mailbox);
+        mailboxes.compute(stored.getId(), (id, previous) -> {
+            unindex(previous);
+            index(stored);
+            return stored;
+        });
+        return mailbox;
+    }
+
+    @Override
+    public Mailbox findById(String id) {
+        return Mailbox.copyOf(mailboxes.get(id));
+    }
+
+    @Override
+    public Mailbox findByAddress(String address) {
+        String id = idsByAddress.get(address);
+        return id == null ? null : findById(id);
+    }
+
+    @Override
+    public void forEachAddress(BiConsumer<String, Instant> consumer) {
+        mailboxes.values().forEach(mailbox -> {
+            if (mailbox.getAddress() != null) {
+                consumer.accept(mailbox.getAddress(), mailbox.getExpiryTime());
+            }
+        });
+    }
+
+    @Override
+    public void deleteById(String id) {
+        deleteIfExists(id);
+    }
+
+    @Override
+    public boolean deleteIfExists(String id) {
+        boolean[] removed = new boolean[1];
+        mailboxes.computeIfPresent(id, (key, previous) -> {
+            unindex(previous);
+            purgeClaims.remove(key);
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    @Override
+    public boolean claimForPurge(String id, Instant now, Instant claimUntil) {
+        boolean[] claimed = new boolean[1];
+        mailboxes.computeIfPresent(id, (key, current) -> {
+            Instant held = purgeClaims.get(key);
+            if (held == null || held.isBefore(now)) {
+                purgeClaims.put(key, claimUntil);
+                claimed[0] = true;
+            }
+            return current;
+        });
+        return claimed[0];
+    }
+
+    @Override
+    public boolean recordMessageAdded(String id, long sizeBytes, Instant receivedAt) {
+        return mailboxes.computeIfPresent(id, (key, current) -> {
+            Mailbox updated = Mailbox.copyOf(current);
+            updated.setMessageCount(current.getMessageCount() + 1);
+            updated.setTotalBytes(current.getTotalBytes() + sizeBytes);
+            updated.setLastReceivedAt(receivedAt);
+            return updated;
+        }) != null;
+    }
+
+    @Override
+    public boolean recordMessageRemoved(String id, long sizeBytes) {
+        return mailboxes.computeIfPresent(id, (key, current) -> {
+            Mailbox updated = Mailbox.copyOf(current);
+            updated.setMessageCount(current.getMessageCount() - 1);
+            updated.setTotalBytes(current.getTotalBytes() - sizeBytes);
+            return updated;
+        }) != null;
+    }
+
+    @Override
+    public PagedResult<Mailbox> findByExpiryBucket(String expiryBucket, Instant upTo, int limit, String cursor) {
+        NavigableSet<IndexKey> keys = byExpiryBucket.get(expiryBucket);
+        if (keys == null) {
+            return new PagedResult<>(List.of(), null);
+        }
+        IndexKey start = IndexKey.decode(cursor);
+        return page(start == null ? keys : keys.tailSet(start, false), limit, upTo.toEpochMilli());
+    }
+
+    @Override
+    public PagedResult<Mailbox> findByUserId(String userId, int limit, String cursor) {
+        NavigableSet<IndexKey> keys = byUser.get(userId);
+        if (keys == null) {
+            return new PagedResult<>(List.of(), null);
+        }
+        NavigableSet<IndexKey> newestFirst = keys.descendingSet();
+        IndexKey start = IndexKey.decode(cursor);
+        return page(start == null ? newestFirst : newestFirst.tailSet(start, false), limit, Long.MAX_VALUE);
+    }
+
+    // Stands in for DynamoDB TTL: drops rows whose backstop expiry has passed without a purge
+    @Scheduled(fixedDelayString = "${app.inmemory.ttl-sweep-ms:60000}")
+    public void sweepExpired() {
+        long now = Instant.now().getEpochSecond();
+        mailboxes.values().forEach(mailbox -> {
+            if (mailbox.getTtl() != null && mailbox.getTtl() < now) {
+                deleteIfExists(mailbox.getId());
+            }
+        });
+    }
+
+    private PagedResult<Mailbox> page(NavigableSet<IndexKey> keys, int limit, long maxSortMillis) {
+        List<Mailbox> items = new ArrayList<>(Math.min(limit, 64));
+        IndexKey last = null;
+        Iterator<IndexKey> iterator = keys.iterator();
+        while (iterator.hasNext() && items.size() < limit) {
+            IndexKey key = iterator.next();
+            if (key.sortMillis() > maxSortMillis) {
+                return new PagedResult<>(items, null);
+            }
+            Mailbox mailbox = findById(key.id());
+            if (mailbox != null) {
+                items.add(mailbox);
+                last = key;
+            }
+        }
+        return new PagedResult<>(items, iterator.hasNext() && last != null ? last.encode() : null);
+    }
+
+    private void index(Mailbox mailbox) {
+        if (mailbox.getAddress() != null) {
+            idsByAddress.put(mailbox.getAddress(), mailbox.getId());
+        }
+        if (mailbox.getUserId() != null && mailbox.getCreatedAt() != null) {
+            addToIndex(byUser, mailbox.getUserId(), new IndexKey(mailbox.getCreatedAt().toEpochMilli(), mailbox.getId()));
+        }
+        if (mailbox.getExpiryBucket() != null) {
+            addToIndex(byExpiryBucket, mailbox.getExpiryBucket(),
+                    new IndexKey(mailbox.getExpiryTime().toEpochMilli(), mailbox.getId()));
+        }
+    }
+
+    private void unindex(Mailbox mailbox) {
+        if (mailbox == null) {
+            return;
+        }
+        if (mailbox.getAddress() != null) {
+            idsByAddress.remove(mailbox.getAddress(), mailbox.getId());
+        }
+        if (mailbox.getUserId() != null && mailbox.getCreatedAt() != null) {
+            removeFromIndex(byUser, mailbox.getUserId(), new IndexKey(mailbox.getCreatedAt().toEpochMilli(), mailbox.getId()));
+        }
+        if (mailbox.getExpiryBucket() != null) {
+            removeFromIndex(byExpiryBucket, mailbox.getExpiryBucket(),
+                    new IndexKey(mailbox.getExpiryTime().toEpochMilli(), mailbox.getId()));
+        }
+    }
+
+    // Adds inside the compute, so a concurrent removal cannot drop the set between lookup and add
+    private static void addToIndex(ConcurrentHashMap<String, ConcurrentSkipListSet<IndexKey>> index,
+                                   String partition, IndexKey key) {
+        index.compute(partition, (k, keys) -> {
+            ConcurrentSkipListSet<IndexKey> partitionKeys = keys == null ? new ConcurrentSkipListSet<>() : keys;
+            partitionKeys.add(key);
+            return partitionKeys;
+        });
+    }
+
+    private static void removeFromIndex(ConcurrentHashMap<String, ConcurrentSkipListSet<IndexKey>> index,
+                                        String partition, IndexKey key) {
+        index.computeIfPresent(partition, (k, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    // Sort key of a secondary index entry; the id breaks ties the way the table key does
+    private record IndexKey(long sortMillis, String id) implements Comparable<IndexKey> {
+
+        @Override
+        public int compareTo(IndexKey other) {
+            int bySort = Long.compare(sortMillis, other.sortMillis);
+            return bySort != 0 ? bySort : id.compareTo(other.id);
+        }
+
+        // Same opaque token format as the DynamoDB store, so clients cannot tell the backends apart
+        String encode() {
+            return PageCursor.encode(Map.of(
+                    "id", AttributeValue.fromS(id),
+                    "sort", AttributeValue.fromN(Long.toString(sortMillis))));
+        }
+
+        static IndexKey decode(String cursor) {
+            Map<String, AttributeValue> key = PageCursor.decode(cursor);
+            if (key == null) {
+                return null;
+            }
+            if (key.get("id") == null || key.get("sort") == null) {
+                throw new IllegalArgumentException("Invalid page cursor");
+            }
+            try {
+                return new IndexKey(Long.parseLong(key.get("sort").n()), key.get("id").s());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid page cursor");
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+// Async view of the in-memory message store; calls complete on the caller's thread.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.Message;
+import com.disposablemailservice.model.PagedResult;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.util.concurrent.CompletableFuture;
+
+@Repository
+@Profile(InMemoryMailboxStore.PROFILE)
+public class InMemoryMessageAsyncStore implements MessageAsyncStore {
+
+    private final InMemoryMessageStore store;
+
+    public InMemoryMessageAsyncStore(InMemoryMessageStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public CompletableFuture<Void> save(Message message) {
+        return CompletableFuture.runAsync(() -> store.save(message), Runnable::run);
+    }
+
+    @Override
+    public CompletableFuture<Message> findById(String mailboxId, String messageId) {
+        return CompletableFuture.supplyAsync(() -> store.findById(mailboxId, messageId), Runnable::run);
+    }
+
+    @Override
+    public CompletableFuture<PagedResult<Message>> findByMailboxId(String mailboxId, MessageProjection projection,
+                                                                   boolean newestFirst, int limit, String cursor) {
+        return CompletableFuture.supplyAsync(
+                () -> store.findByMailboxId(mailboxId, projection, newestFirst, limit, cursor), Runnable::run);
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteById(String mailboxId, String id) {
+        return CompletableFuture.runAsync(() -> store.deleteById(mailboxId, id), Runnable::run);
+    }
+}
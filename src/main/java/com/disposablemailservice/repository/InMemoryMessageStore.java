@@ -0,0 +1,159 @@
+// In-memory message store for the "inmemory" profile.
+// One skip list per mailbox keyed by the time-ordered message id, so range reads are in arrival order.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.Message;
+import com.disposablemailservice.model.PagedResult;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Bodies are kept inline whatever their size; there is no S3 offload in this backend.
+ */
+@Repository
+@Profile(InMemoryMailboxStore.PROFILE)
+public class InMemoryMessageStore implements MessageStore {
+
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<String, Message>> messagesByMailbox = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(Message message) {
+        message.setAttachmentCount(message.getAttachments() == null ? 0 : message.getAttachments().size());
+        if (message.getSizeBytes() == 0) {
+            message.setSizeBytes(MessageStore.estimateSize(message));
+        }
+        Message stored = project(message, MessageProjection.FULL);
+        // Inserted inside compute so it cannot land in a map that deleteAll is dropping as empty
+        messagesByMailbox.compute(message.getMailboxId(), (key, messages) -> {
+            ConcurrentSkipListMap<String, Message> target = messages == null ? new ConcurrentSkipListMap<>() : messages;
+            target.put(stored.getId(), stored);
+            return target;
+        });
+    }
+
+    @Override
+    public Message findById(String mailboxId, String messageId) {
+        NavigableMap<String, Message> messages = messagesByMailbox.get(mailboxId);
+        return messages == null ? null : project(messages.get(messageId), MessageProjection.FULL);
+    }
+
+    @Override
+    public PagedResult<Message> findByMailboxId(String mailboxId, MessageProjection projection,
+                                                boolean newestFirst, int limit, String cursor) {
+        NavigableMap<String, Message> messages = messagesByMailbox.get(mailboxId);
+        if (messages == null) {
+            return new PagedResult<>(List.of(), null);
+        }
+        NavigableMap<String, Message> ordered = newestFirst ? messages.descendingMap() : messages;
+        String start = decode(cursor);
+        if (start != null) {
+            ordered = ordered.tailMap(start, false);
+        }
+
+        List<Message> items = new ArrayList<>(Math.min(limit, 64));
+        Iterator<Message> iterator = ordered.values().iterator();
+        while (iterator.hasNext() && items.size() < limit) {
+            items.add(project(iterator.next(), projection));
+        }
+        String next = iterator.hasNext() && !items.isEmpty() ? encode(mailboxId, items.get(items.size() - 1).getId()) : null;
+        return new PagedResult<>(items, next);
+    }
+
+    @Override
+    public List<Message> findByMailboxId(String mailboxId, MessageProjection projection) {
+        NavigableMap<String, Message> messages = messagesByMailbox.get(mailboxId);
+        if (messages == null) {
+            return new ArrayList<>();
+        }
+        List<Message> items = new ArrayList<>(messages.size());
+        messages.values().forEach(message -> items.add(project(message, projection)));
+        return items;
+    }
+
+    @Override
+    public int deleteAll(String mailboxId, List<String> ids) {
+        NavigableMap<String, Message> messages = messagesByMailbox.get(mailboxId);
+        if (messages == null) {
+            return 0;
+        }
+        int deleted = 0;
+        for (String id : ids) {
+            if (messages.remove(id) != null) {
+                deleted++;
+            }
+        }
+        // Keeps the map of mailboxes from growing with every mailbox ever purged
+        messagesByMailbox.computeIfPresent(mailboxId, (key, remaining) -> remaining.isEmpty() ? null : remaining);
+        return deleted;
+    }
+
+    @Override
+    public Message deleteById(String mailboxId, String id) {
+        NavigableMap<String, Message> messages = messagesByMailbox.get(mailboxId);
+        return messages == null ? null : messages.remove(id);
+    }
+
+    // Copies the attributes a DynamoDB projection would return; FULL copies everything
+    static Message project(Message source, MessageProjection projection) {
+        if (source == null) {
+            return null;
+        }
+        List<String> attributes = projection.attributes();
+        Message copy = new Message();
+        copy.setMailboxId(source.getMailboxId());
+        copy.setId(source.getId());
+        if (attributes == null || attributes.contains("subject")) {
+            copy.setSubject(source.getSubject());
+        }
+        if (attributes == null || attributes.contains("from")) {
+            copy.setFrom(source.getFrom());
+        }
+        if (attributes == null || attributes.contains("body")) {
+            copy.setBody(source.getBody());
+        }
+        if (attributes == null || attributes.contains("bodyKey")) {
+            copy.setBodyKey(source.getBodyKey());
+        }
+        if (attributes == null || attributes.contains("preview")) {
+            copy.setPreview(source.getPreview());
+        }
+        if (attributes == null || attributes.contains("attachments")) {
+            copy.setAttachments(source.getAttachments() == null ? null : new ArrayList<>(source.getAttachments()));
+        }
+        if (attributes == null || attributes.contains("attachmentCount")) {
+            copy.setAttachmentCount(source.getAttachmentCount());
+        }
+        if (attributes == null || attributes.contains("sizeBytes")) {
+            copy.setSizeBytes(source.getSizeBytes());
+        }
+        if (attributes == null || attributes.contains("receivedAt")) {
+            copy.setReceivedAt(source.getReceivedAt());
+        }
+        return copy;
+    }
+
+    // Same token shape as the messages table's LastEvaluatedKey
+    private static String encode(String mailboxId, String id) {
+        return PageCursor.encode(Map.of("mailboxId", AttributeValue.fromS(mailboxId), "id", AttributeValue.fromS(id)));
+    }
+
+    private static String decode(String cursor) {
+        Map<String, AttributeValue> key = PageCursor.decode(cursor);
+        if (key == null) {
+            return null;
+        }
+        if (key.get("id") == null || key.get("id").s() == null) {
+            throw new IllegalArgumentException("Invalid page cursor");
+        }
+        return key.get("id").s();
+    }
+}
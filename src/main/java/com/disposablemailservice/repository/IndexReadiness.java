@@ -0,0 +1,84 @@
+// Tracks which DynamoDB global secondary indexes are ACTIVE, so queries on one still backfilling fail fast.
+// Schema bootstrap builds missing indexes in the background; features check here when they first need one.
+package com.disposablemailservice.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.DescribeTableRequest;
+import software.amazon.awssdk.services.dynamodb.model.GlobalSecondaryIndexDescription;
+import software.amazon.awssdk.services.dynamodb.model.IndexStatus;
+import software.amazon.awssdk.services.dynamodb.model.TableDescription;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An index only ever moves to ACTIVE, so once seen active it is remembered and the check is a set
+ * lookup. Until then DescribeTable is called at most once per recheck interval per index.
+ */
+@Component
+@Profile("!" + InMemoryMailboxStore.PROFILE)
+public class IndexReadiness {
+
+    private static final Logger log = LoggerFactory.getLogger(IndexReadiness.class);
+
+    private final DynamoDbClient dynamoDbClient;
+    private final long recheckNanos;
+    private final Set<String> active = ConcurrentHashMap.newKeySet();
+    private final ConcurrentHashMap<String, Long> nextCheck = new ConcurrentHashMap<>();
+
+    public IndexReadiness(DynamoDbClient dynamoDbClient,
+                          @Value("${app.dynamodb.index-recheck-seconds:10}") long recheckSeconds) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.recheckNanos = TimeUnit.SECONDS.toNanos(recheckSeconds);
+    }
+
+    /**
+     * Throws IllegalStateException while the index is still being built.
+     */
+    public void requireActive(String tableName, String indexName) {
+        if (!isActive(tableName, indexName)) {
+            throw new IllegalStateException("Index " + indexName + " on table " + tableName + " is still being built");
+        }
+    }
+
+    public boolean isActive(String tableName, String indexName) {
+        String key = tableName + "/" + indexName;
+        if (active.contains(key)) {
+            return true;
+        }
+        long now = System.nanoTime();
+        Long due = nextCheck.get(key);
+        if (due != null && now - due < 0) {
+            return false;
+        }
+        nextCheck.put(key, now + recheckNanos);
+        refresh(tableName, indexName);
+        return active.contains(key);
+    }
+
+    private void refresh(String tableName, String indexName) {
+        TableDescription table;
+        try {
+            table = dynamoDbClient.describeTable(DescribeTableRequest.builder().tableName(tableName).build()).table();
+        } catch (SdkException e) {
+            // Without DescribeTable we cannot tell; let the query run and fail on its own if the index is not ready
+            log.warn("Cannot describe table {}, assuming index {} is ready: {}", tableName, indexName, e.getMessage());
+            active.add(tableName + "/" + indexName);
+            return;
+        }
+        if (table.hasGlobalSecondaryIndexes()) {
+            for (GlobalSecondaryIndexDescription index : table.globalSecondaryIndexes()) {
+                if (index.indexStatus() == IndexStatus.ACTIVE) {
+                    active.add(tableName + "/" + index.indexName());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+// Non-blocking repository for the Mailbox DynamoDB table.
+// Mirrors MailboxRepository on the enhanced async client so callers never park a request thread on I/O.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.Mailbox;
+import com.disposablemailservice.model.PagedResult;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncIndex;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+
+import java.util.concurrent.CompletableFuture;
+
+@Repository
+@Profile("!" + InMemoryMailboxStore.PROFILE)
+public class MailboxAsyncRepository implements MailboxAsyncStore {
+
+    private final DynamoDbAsyncTable<Mailbox> mailboxTable;
+    private final DynamoDbAsyncIndex<Mailbox> userIdIndex;
+    private final IndexReadiness indexReadiness;
+
+    public MailboxAsyncRepository(DynamoDbEnhancedAsyncClient enhancedAsyncClient, IndexReadiness indexReadiness) {
+        this.indexReadiness = indexReadiness;
+        this.mailboxTable = enhancedAsyncClient.table(TableSchemas.MAILBOX_TABLE, TableSchemas.MAILBOX);
+        this.userIdIndex = mailboxTable.index(Mailbox.USER_ID_INDEX);
+    }
+
+    @Override
+    public CompletableFuture<Mailbox> save(Mailbox mailbox) {
+        return mailboxTable.putItem(mailbox).thenApply(done -> mailbox);
+    }
+
+    @Override
+    public CompletableFuture<Mailbox> findById(String id) {
+        return mailboxTable.getItem(Key.builder().partitionValue(id).build());
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteById(String id) {
+        return mailboxTable.deleteItem(Key.builder().partitionValue(id).build()).thenApply(deleted -> null);
+    }
+
+    @Override
+    public CompletableFuture<PagedResult<Mailbox>> findByUserId(String userId, int limit, String cursor) {
+        if (!indexReadiness.isActive(TableSchemas.MAILBOX_TABLE, Mailbox.USER_ID_INDEX)) {
+            return CompletableFuture.failedFuture(new IllegalStateException(
+                    "Index " + Mailbox.USER_ID_INDEX + " on table " + TableSchemas.MAILBOX_TABLE + " is still being built"));
+        }
+        QueryEnhancedRequest request = QueryEnhancedRequest.builder()
+                .queryConditional(QueryConditional.keyEqualTo(Key.builder().partitionValue(userId).build()))
+                .scanIndexForward(false)
+                .limit(limit)
+                .exclusiveStartKey(PageCursor.decode(cursor))
+                .build();
+        return AsyncPages.firstPage(userIdIndex.query(request));
+    }
+}
@@ -0,0 +1,18 @@
+// Non-blocking storage contract for mailboxes, used by the async request paths.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.Mailbox;
+import com.disposablemailservice.model.PagedResult;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface MailboxAsyncStore {
+
+    CompletableFuture<Mailbox> save(Mailbox mailbox);
+
+    CompletableFuture<Mailbox> findById(String id);
+
+    CompletableFuture<Void> deleteById(String id);
+
+    CompletableFuture<PagedResult<Mailbox>> findByUserId(String userId, int limit, String cursor);
+}
@@ -3,49 +3,218 @@
 package com.disposablemailservice.repository;
 
 import com.disposablemailservice.model.Mailbox;
+import com.disposablemailservice.model.PagedResult;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbIndex;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.Expression;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
-import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.model.DeleteItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.ScanEnhancedRequest;
 import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.ConditionalCheckFailedException;
+import software.amazon.awssdk.services.dynamodb.model.UpdateItemRequest;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
 
 @Repository
-public class MailboxRepository {
+@Profile("!" + InMemoryMailboxStore.PROFILE)
+public class MailboxRepository implements MailboxStore {
 
-    private final DynamoDbEnhancedClient enhancedClient;
+    private final DynamoDbClient dynamoDbClient;
     private final DynamoDbTable<Mailbox> mailboxTable;
+    private final DynamoDbIndex<Mailbox> userIdIndex;
+    private final DynamoDbIndex<Mailbox> expiryBucketIndex;
+    private final DynamoDbIndex<Mailbox> addressIndex;
+    private final IndexReadiness indexReadiness;
 
-    public MailboxRepository(DynamoDbClient dynamoDbClient) {
-        this.enhancedClient = DynamoDbEnhancedClient.builder()
-                .dynamoDbClient(dynamoDbClient)
-                .build();
-        this.mailboxTable = enhancedClient.table("mailboxes", TableSchema.fromBean(Mailbox.class));
+    public MailboxRepository(DynamoDbClient dynamoDbClient, DynamoDbEnhancedClient enhancedClient,
+                             IndexReadiness indexReadiness) {
+        this.dynamoDbClient = dynamoDbClient;
+        this.indexReadiness = indexReadiness;
+        this.mailboxTable = enhancedClient.table(TableSchemas.MAILBOX_TABLE, TableSchemas.MAILBOX);
+        this.userIdIndex = mailboxTable.index(Mailbox.USER_ID_INDEX);
+        this.expiryBucketIndex = mailboxTable.index(Mailbox.EXPIRY_BUCKET_INDEX);
+        this.addressIndex = mailboxTable.index(Mailbox.ADDRESS_INDEX);
     }
 
+    @Override
     public Mailbox save(Mailbox mailbox) {
         mailboxTable.putItem(mailbox);
         return mailbox;
     }
 
+    @Override
     public Mailbox findById(String id) {
         return mailboxTable.getItem(Key.builder().partitionValue(id).build());
     }
 
+    /**
+     * Resolves an address to its mailbox through the address GSI. The index is eventually consistent,
+     * so a mailbox created a moment ago may not be found yet.
+     */
+    @Override
+    public Mailbox findByAddress(String address) {
+        indexReadiness.requireActive(TableSchemas.MAILBOX_TABLE, Mailbox.ADDRESS_INDEX);
+        QueryEnhancedRequest request = QueryEnhancedRequest.builder()
+                .queryConditional(QueryConditional.keyEqualTo(Key.builder().partitionValue(address).build()))
+                .limit(1)
+                .build();
+        return addressIndex.query(request).stream()
+                .flatMap(page -> page.items().stream())
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Streams every mailbox's address and expiry time, reading only those two attributes.
+     */
+    @Override
+    public void forEachAddress(BiConsumer<String, Instant> consumer) {
+        mailboxTable.scan(ScanEnhancedRequest.builder()
+                        .attributesToProject("address", "expiryTime")
+                        .build())
+                .items()
+                .forEach(mailbox -> {
+                    if (mailbox.getAddress() != null) {
+                        consumer.accept(mailbox.getAddress(), mailbox.getExpiryTime());
+                    }
+                });
+    }
+
+    @Override
     public void deleteById(String id) {
         mailboxTable.deleteItem(Key.builder().partitionValue(id).build());
     }
 
-    public List<Mailbox> findByUserId(String userId) {
-        // Since we don't have a GSI for userId, we'll use a scan operation
-        // This is not ideal for large datasets but acceptable for this use case
-        return mailboxTable.scan()
-                .items()
-                .stream()
-                .filter(mailbox -> userId.equals(mailbox.getUserId()))
-                .collect(Collectors.toList());
+    /**
+     * Deletes the mailbox only if it still exists. Returns false when another caller
+     * (a concurrent DELETE or a reaper on another replica) already removed it.
+     */
+    @Override
+    public boolean deleteIfExists(String id) {
+        try {
+            mailboxTable.deleteItem(DeleteItemEnhancedRequest.builder()
+                    .key(Key.builder().partitionValue(id).build())
+                    .conditionExpression(Expression.builder()
+                            .expression("attribute_exists(#id)")
+                            .expressionNames(Map.of("#id", "id"))
+                            .build())
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean claimForPurge(String id, Instant now, Instant claimUntil) {
+        try {
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(TableSchemas.MAILBOX_TABLE)
+                    .key(Map.of("id", AttributeValue.fromS(id)))
+                    .updateExpression("SET #claim = :until")
+                    .conditionExpression("attribute_exists(#id) AND (attribute_not_exists(#claim) OR #claim < :now)")
+                    .expressionAttributeNames(Map.of("#id", "id", "#claim", Mailbox.PURGE_CLAIMED_UNTIL_ATTRIBUTE))
+                    .expressionAttributeValues(Map.of(
+                            ":until", AttributeValue.fromN(Long.toString(claimUntil.toEpochMilli())),
+                            ":now", AttributeValue.fromN(Long.toString(now.toEpochMilli()))))
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Atomically counts one received message against the mailbox. Returns false when the mailbox no
+     * longer exists, in which case nothing is written.
+     */
+    @Override
+    public boolean recordMessageAdded(String id, long sizeBytes, Instant receivedAt) {
+        return updateCounters(id, "ADD #count :one, #bytes :bytes SET #last = :last", Map.of(
+                ":one", AttributeValue.fromN("1"),
+                ":bytes", AttributeValue.fromN(Long.toString(sizeBytes)),
+                ":last", AttributeValue.fromS(receivedAt.toString())));
+    }
+
+    /**
+     * Atomically removes one deleted message from the mailbox counters.
+     */
+    @Override
+    public boolean recordMessageRemoved(String id, long sizeBytes) {
+        return updateCounters(id, "ADD #count :one, #bytes :bytes", Map.of(
+                ":one", AttributeValue.fromN("-1"),
+                ":bytes", AttributeValue.fromN(Long.toString(-sizeBytes))));
+    }
+
+    private boolean updateCounters(String id, String updateExpression, Map<String, AttributeValue> values) {
+        Map<String, String> names = new HashMap<>();
+        names.put("#id", "id");
+        names.put("#count", Mailbox.MESSAGE_COUNT_ATTRIBUTE);
+        names.put("#bytes", Mailbox.TOTAL_BYTES_ATTRIBUTE);
+        if (updateExpression.contains("#last")) {
+            names.put("#last", Mailbox.LAST_RECEIVED_AT_ATTRIBUTE);
+        }
+        try {
+            // The existence check stops a late message from recreating a mailbox that was just purged
+            dynamoDbClient.updateItem(UpdateItemRequest.builder()
+                    .tableName(TableSchemas.MAILBOX_TABLE)
+                    .key(Map.of("id", AttributeValue.fromS(id)))
+                    .updateExpression(updateExpression)
+                    .conditionExpression("attribute_exists(#id)")
+                    .expressionAttributeNames(names)
+                    .expressionAttributeValues(values)
+                    .build());
+            return true;
+        } catch (ConditionalCheckFailedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns one page of mailboxes in the given hourly expiry bucket whose expiryTime is at or before {@code upTo}.
+     */
+    @Override
+    public PagedResult<Mailbox> findByExpiryBucket(String expiryBucket, Instant upTo, int limit, String cursor) {
+        indexReadiness.requireActive(TableSchemas.MAILBOX_TABLE, Mailbox.EXPIRY_BUCKET_INDEX);
+        QueryEnhancedRequest request = QueryEnhancedRequest.builder()
+                .queryConditional(QueryConditional.sortLessThanOrEqualTo(Key.builder()
+                        .partitionValue(expiryBucket)
+                        .sortValue(upTo.toString())
+                        .build()))
+                .limit(limit)
+                .exclusiveStartKey(PageCursor.decode(cursor))
+                .build();
+
+        Page<Mailbox> page = expiryBucketIndex.query(request).iterator().next();
+        return new PagedResult<>(page.items(), PageCursor.encode(page.lastEvaluatedKey()));
+    }
+
+    /**
+     * Returns one page of the user's mailboxes, newest first, read from the userId/createdAt GSI.
+     * Cost is proportional to the page size, not to the size of the table.
+     */
+    @Override
+    public PagedResult<Mailbox> findByUserId(String userId, int limit, String cursor) {
+        indexReadiness.requireActive(TableSchemas.MAILBOX_TABLE, Mailbox.USER_ID_INDEX);
+        QueryEnhancedRequest request = QueryEnhancedRequest.builder()
+                .queryConditional(QueryConditional.keyEqualTo(Key.builder().partitionValue(userId).build()))
+                .scanIndexForward(false)
+                .limit(limit)
+                .exclusiveStartKey(PageCursor.decode(cursor))
+                .build();
+
+        Page<Mailbox> page = userIdIndex.query(request).iterator().next();
+        return new PagedResult<>(page.items(), PageCursor.encode(page.lastEvaluatedKey()));
     }
-}
\ No newline at end of file
+}
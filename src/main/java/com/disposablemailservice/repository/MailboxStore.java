@@ -0,0 +1,60 @@
+// Storage contract for mailboxes, implemented by the DynamoDB repository and the in-memory backend.
+// Services depend on this interface; the active Spring profile decides which implementation is wired.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.Mailbox;
+import com.disposablemailservice.model.PagedResult;
+
+import java.time.Instant;
+import java.util.function.BiConsumer;
+
+public interface MailboxStore {
+
+    Mailbox save(Mailbox mailbox);
+
+    Mailbox findById(String id);
+
+    /**
+     * Resolves an address to its mailbox, or null. May briefly miss a mailbox that was just created.
+     */
+    Mailbox findByAddress(String address);
+
+    /**
+     * Visits every mailbox's address and expiry time.
+     */
+    void forEachAddress(BiConsumer<String, Instant> consumer);
+
+    void deleteById(String id);
+
+    /**
+     * Deletes the mailbox only if it still exists. Returns false when another caller already removed it.
+     */
+    boolean deleteIfExists(String id);
+
+    /**
+     * Claims the mailbox for purging until {@code claimUntil}, so that of the schedulers racing for an
+     * expired mailbox on every replica only one purges it. Returns false if the mailbox is gone or
+     * another claim is still live; a claim whose holder died runs out and can be taken over.
+     */
+    boolean claimForPurge(String id, Instant now, Instant claimUntil);
+
+    /**
+     * Atomically counts one received message against the mailbox. Returns false if the mailbox is gone.
+     */
+    boolean recordMessageAdded(String id, long sizeBytes, Instant receivedAt);
+
+    /**
+     * Atomically removes one deleted message from the mailbox counters.
+     */
+    boolean recordMessageRemoved(String id, long sizeBytes);
+
+    /**
+     * Returns one page of mailboxes in the given hourly expiry bucket whose expiryTime is at or before {@code upTo}.
+     */
+    PagedResult<Mailbox> findByExpiryBucket(String expiryBucket, Instant upTo, int limit, String cursor);
+
+    /**
+     * Returns one page of the user's mailboxes, newest first.
+     */
+    PagedResult<Mailbox> findByUserId(String userId, int limit, String cursor);
+}
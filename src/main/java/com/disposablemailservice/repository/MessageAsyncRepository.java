@@ -0,0 +1,83 @@
+// Non-blocking repository for the Message DynamoDB table.
+// Mirrors MessageRepository on the enhanced async client; full listings are exposed as a Publisher.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.Message;
+import com.disposablemailservice.model.PagedResult;
+import org.reactivestreams.Publisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbAsyncTable;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedAsyncClient;
+import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+@Repository
+@Profile("!" + InMemoryMailboxStore.PROFILE)
+public class MessageAsyncRepository implements MessageAsyncStore {
+
+    private final DynamoDbAsyncTable<Message> messageTable;
+    private final MessageBodyStore bodyStore;
+
+    public MessageAsyncRepository(DynamoDbEnhancedAsyncClient enhancedAsyncClient, MessageBodyStore bodyStore) {
+        this.bodyStore = bodyStore;
+        this.messageTable = enhancedAsyncClient.table(TableSchemas.MESSAGE_TABLE, TableSchemas.MESSAGE);
+    }
+
+    @Override
+    public CompletableFuture<Void> save(Message message) {
+        message.setAttachmentCount(message.getAttachments() == null ? 0 : message.getAttachments().size());
+        if (message.getSizeBytes() == 0) {
+            message.setSizeBytes(MessageStore.estimateSize(message));
+        }
+        // Oversized bodies are uploaded on the body store's I/O pool; everything else goes straight to the async put
+        String previousKey = message.getBodyKey();
+        return bodyStore.offloadIfLargeAsync(message)
+                .thenCompose(offloaded -> messageTable.putItem(message))
+                .whenComplete((done, failure) -> {
+                    // The item never landed, so it holds no reference on the shared body
+                    if (failure != null && message.getBodyKey() != null && !message.getBodyKey().equals(previousKey)) {
+                        bodyStore.releaseAllAsync(List.of(message.getBodyKey()));
+                    }
+                });
+    }
+
+    @Override
+    public CompletableFuture<Message> findById(String mailboxId, String messageId) {
+        return messageTable.getItem(Key.builder().partitionValue(mailboxId).sortValue(messageId).build());
+    }
+
+    @Override
+    public CompletableFuture<PagedResult<Message>> findByMailboxId(String mailboxId, MessageProjection projection,
+                                                                   boolean newestFirst, int limit, String cursor) {
+        return AsyncPages.firstPage(messageTable.query(queryRequest(mailboxId, projection, newestFirst, limit, cursor)));
+    }
+
+    // Streams every message in the mailbox; DynamoDB pages are fetched only as the subscriber requests more
+    public Publisher<Message> streamByMailboxId(String mailboxId, MessageProjection projection) {
+        return messageTable.query(queryRequest(mailboxId, projection, false, null, null)).items();
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteById(String mailboxId, String id) {
+        return messageTable.deleteItem(Key.builder().partitionValue(mailboxId).sortValue(id).build())
+                .thenApply(deleted -> null);
+    }
+
+    private static QueryEnhancedRequest queryRequest(String mailboxId, MessageProjection projection,
+                                                     boolean newestFirst, Integer limit, String cursor) {
+        QueryEnhancedRequest.Builder request = QueryEnhancedRequest.builder()
+                .queryConditional(QueryConditional.keyEqualTo(Key.builder().partitionValue(mailboxId).build()))
+                .scanIndexForward(!newestFirst)
+                .limit(limit)
+                .exclusiveStartKey(PageCursor.decode(cursor));
+        if (projection.attributes() != null) {
+            request.attributesToProject(projection.attributes());
+        }
+        return request.build();
+    }
+}
@@ -0,0 +1,19 @@
+// Non-blocking storage contract for messages, used by the async request paths.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.Message;
+import com.disposablemailservice.model.PagedResult;
+
+import java.util.concurrent.CompletableFuture;
+
+public interface MessageAsyncStore {
+
+    CompletableFuture<Void> save(Message message);
+
+    CompletableFuture<Message> findById(String mailboxId, String messageId);
+
+    CompletableFuture<PagedResult<Message>> findByMailboxId(String mailboxId, MessageProjection projection,
+                                                            boolean newestFirst, int limit, String cursor);
+
+    CompletableFuture<Void> deleteById(String mailboxId, String id);
+}
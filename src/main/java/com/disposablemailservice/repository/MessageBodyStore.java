@@ -0,0 +1,136 @@
+// Stores larger message bodies in the blob store and leaves a pointer plus a short preview on the DynamoDB item.
+// Bodies are content addressed and reference counted, so bulk mail costs one object per distinct body.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.Message;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A newsletter sent to hundreds of addresses has one body, so bodies over the threshold are stored
+ * under bodies/sha256/ and each message only carries the key, its own headers and a preview. Bodies
+ * are offloaded from a few KB up rather than only near the item limit, since every inline KB is
+ * another write unit per recipient.
+ *
+ * <p>Blob I/O is blocking, so the async variants run it on a small dedicated pool: never on the
+ * caller's thread, the SDK's event loop or the common fork-join pool. They complete inline when
+ * there is nothing to transfer.
+ */
+@Component
+public class MessageBodyStore {
+
+    static final String CONTENT_ADDRESSED_PREFIX = "bodies/sha256/";
+
+    private final ContentAddressedStore blobs;
+    private final int thresholdBytes;
+    private final int previewChars;
+    private final ThreadPoolExecutor ioExecutor;
+
+    public MessageBodyStore(BlobStore blobStore, BlobReferenceStore referenceStore, MeterRegistry meterRegistry,
+                            @Value("${app.messages.body-offload-threshold-bytes:8192}") int thresholdBytes,
+                            @Value("${app.messages.preview-chars:256}") int previewChars,
+                            @Value("${app.messages.body-io-threads:8}") int ioThreads,
+                            @Value("${app.messages.body-io-queue-capacity:1000}") int ioQueueCapacity) {
+        this.blobs = new ContentAddressedStore(blobStore, referenceStore, meterRegistry,
+                CONTENT_ADDRESSED_PREFIX, "burnbox.bodies.stored");
+        this.thresholdBytes = thresholdBytes;
+        this.previewChars = previewChars;
+        AtomicInteger threadIds = new AtomicInteger();
+        this.ioExecutor = new ThreadPoolExecutor(ioThreads, ioThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(ioQueueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "body-io-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        Gauge.builder("burnbox.bodies.io.queue.depth", ioExecutor, pool -> pool.getQueue().size()).register(meterRegistry);
+    }
+
+    /**
+     * Moves the body to the blob store when its UTF-8 size exceeds the threshold, taking a reference on the shared
+     * object. Runs before the item is written, so a stored pointer always refers to an existing object;
+     * if the item is then not written, the caller gives the reference back with {@link #releaseAll}.
+     */
+    public void offloadIfLarge(Message message) {
+        String body = message.getBody();
+        // A UTF-8 char is at most 3 bytes, so short bodies skip the encoding pass entirely
+        if (body == null || (long) body.length() * 3 <= thresholdBytes) {
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= thresholdBytes) {
+            return;
+        }
+
+        String key = blobs.store(HexFormat.of().formatHex(ContentAddressedStore.sha256().digest(bytes)),
+                bytes, "text/plain; charset=utf-8");
+
+        if (message.getPreview() == null) {
+            message.setPreview(body.substring(0, Math.min(previewChars, body.length())));
+        }
+        message.setBodyKey(key);
+        message.setBody(null);
+    }
+
+    /**
+     * {@link #offloadIfLarge} on the I/O pool; completes inline when the body stays in the item.
+     */
+    public CompletableFuture<Message> offloadIfLargeAsync(Message message) {
+        String body = message.getBody();
+        if (body == null || (long) body.length() * 3 <= thresholdBytes) {
+            return CompletableFuture.completedFuture(message);
+        }
+        return onIoPool(() -> {
+            offloadIfLarge(message);
+            return message;
+        });
+    }
+
+    public CompletableFuture<Integer> releaseAllAsync(List<String> keys) {
+        return onIoPool(() -> releaseAll(keys));
+    }
+
+    /**
+     * Loads an offloaded body into the message. A no-op for inline bodies.
+     */
+    public Message resolve(Message message) {
+        if (message != null && message.getBody() == null && message.getBodyKey() != null) {
+            message.setBody(new String(blobs.read(message.getBodyKey()), StandardCharsets.UTF_8));
+        }
+        return message;
+    }
+
+    /**
+     * Drops one reference per body key and deletes the objects nothing references any more. Keys from
+     * before content addressing belong to a single message and are deleted outright.
+     */
+    public int releaseAll(List<String> keys) {
+        return blobs.releaseAll(keys);
+    }
+
+    private <T> CompletableFuture<T> onIoPool(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, ioExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ioExecutor.shutdown();
+    }
+}
@@ -0,0 +1,23 @@
+// Attribute sets a message query can return.
+// SUMMARY is what the inbox list renders and never reads the body attribute.
+package com.disposablemailservice.repository;
+
+import java.util.List;
+
+public enum MessageProjection {
+
+    SUMMARY(List.of("mailboxId", "id", "from", "subject", "preview", "receivedAt", "attachmentCount")),
+    ATTACHMENTS(List.of("mailboxId", "id", "attachments", "bodyKey")),
+    FULL(null);
+
+    private final List<String> attributes;
+
+    MessageProjection(List<String> attributes) {
+        this.attributes = attributes;
+    }
+
+    // null means every attribute of the item
+    public List<String> attributes() {
+        return attributes;
+    }
+}
@@ -3,41 +3,137 @@
 package com.disposablemailservice.repository;
 
 import com.disposablemailservice.model.Message;
+import com.disposablemailservice.model.PagedResult;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
 import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
 import software.amazon.awssdk.enhanced.dynamodb.Key;
+import software.amazon.awssdk.enhanced.dynamodb.model.Page;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryConditional;
+import software.amazon.awssdk.enhanced.dynamodb.model.QueryEnhancedRequest;
 import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 @Repository
-public class MessageRepository {
+@Profile("!" + InMemoryMailboxStore.PROFILE)
+public class MessageRepository implements MessageStore {
 
     private final DynamoDbEnhancedClient dynamoDbEnhancedClient;
     private final DynamoDbTable<Message> messageTable;
+    private final DynamoDbBatchPurger batchPurger;
+    private final MessageBodyStore bodyStore;
+    private final MessageWriteCoalescer writeCoalescer;
+    private final boolean coalesceWrites;
 
     @Autowired
-    public MessageRepository(DynamoDbEnhancedClient dynamoDbEnhancedClient) {
+    public MessageRepository(DynamoDbEnhancedClient dynamoDbEnhancedClient, DynamoDbBatchPurger batchPurger,
+                             MessageBodyStore bodyStore, MessageWriteCoalescer writeCoalescer,
+                             @Value("${app.dynamodb.write-coalescer.enabled:true}") boolean coalesceWrites) {
         this.dynamoDbEnhancedClient = dynamoDbEnhancedClient;
-        this.messageTable = dynamoDbEnhancedClient.table("messages", software.amazon.awssdk.enhanced.dynamodb.TableSchema.fromBean(Message.class));
+        this.batchPurger = batchPurger;
+        this.bodyStore = bodyStore;
+        this.writeCoalescer = writeCoalescer;
+        this.coalesceWrites = coalesceWrites;
+        this.messageTable = dynamoDbEnhancedClient.table(TableSchemas.MESSAGE_TABLE, TableSchemas.MESSAGE);
     }
 
+    @Override
     public void save(Message message) {
-        messageTable.putItem(message);
+        // Denormalised so the summary projection can show a count without reading the list
+        message.setAttachmentCount(message.getAttachments() == null ? 0 : message.getAttachments().size());
+        if (message.getSizeBytes() == 0) {
+            message.setSizeBytes(MessageStore.estimateSize(message));
+        }
+        bodyStore.offloadIfLarge(message);
+        try {
+            put(message);
+        } catch (RuntimeException e) {
+            // The item never landed, so it holds no reference on the shared body
+            if (message.getBodyKey() != null) {
+                bodyStore.releaseAll(List.of(message.getBodyKey()));
+            }
+            throw e;
+        }
     }
 
-    public List<Message> findByMailboxId(String mailboxId) {
-        // TODO: Implement actual query to DynamoDB for mailboxId
-        return List.of();
+    private void put(Message message) {
+        if (!coalesceWrites) {
+            messageTable.putItem(message);
+            return;
+        }
+        // Still synchronous for the caller; concurrent ingestion workers share BatchWriteItem calls
+        try {
+            writeCoalescer.put(message).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
     }
 
-    public void deleteByMailboxId(String mailboxId) {
-        // TODO: Implement actual delete logic for all messages with mailboxId
+    // Offloaded bodies are not fetched here; MessageBodyStore.resolve loads them when the body is actually needed
+    @Override
+    public Message findById(String mailboxId, String messageId) {
+        return messageTable.getItem(Key.builder().partitionValue(mailboxId).sortValue(messageId).build());
     }
 
-    public void deleteById(String id) {
-        messageTable.deleteItem(Key.builder().partitionValue(id).build());
+    /**
+     * Returns one page of a mailbox's messages. Message ids are time-ordered, so the sort key
+     * order is arrival order; newestFirst reads the partition backwards.
+     */
+    @Override
+    public PagedResult<Message> findByMailboxId(String mailboxId, MessageProjection projection,
+                                                boolean newestFirst, int limit, String cursor) {
+        Page<Message> page = messageTable.query(queryRequest(mailboxId, projection, newestFirst, limit, cursor))
+                .iterator()
+                .next();
+        return new PagedResult<>(page.items(), PageCursor.encode(page.lastEvaluatedKey()));
     }
-}
\ No newline at end of file
+
+    @Override
+    public List<Message> findByMailboxId(String mailboxId, MessageProjection projection) {
+        List<Message> messages = new ArrayList<>();
+        messageTable.query(queryRequest(mailboxId, projection, false, null, null))
+                .items()
+                .forEach(messages::add);
+        return messages;
+    }
+
+    /**
+     * Deletes the listed messages with batched writes and returns how many were deleted.
+     */
+    @Override
+    public int deleteAll(String mailboxId, List<String> ids) {
+        List<Map<String, AttributeValue>> keys = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            keys.add(Map.of("mailboxId", AttributeValue.fromS(mailboxId), "id", AttributeValue.fromS(id)));
+        }
+        return batchPurger.deleteKeys(TableSchemas.MESSAGE_TABLE, keys);
+    }
+
+    /**
+     * Deletes one message and returns the deleted item, or null if it was already gone.
+     */
+    @Override
+    public Message deleteById(String mailboxId, String id) {
+        return messageTable.deleteItem(Key.builder().partitionValue(mailboxId).sortValue(id).build());
+    }
+
+    private static QueryEnhancedRequest queryRequest(String mailboxId, MessageProjection projection,
+                                                     boolean newestFirst, Integer limit, String cursor) {
+        QueryEnhancedRequest.Builder request = QueryEnhancedRequest.builder()
+                .queryConditional(QueryConditional.keyEqualTo(Key.builder().partitionValue(mailboxId).build()))
+                .scanIndexForward(!newestFirst)
+                .limit(limit)
+                .exclusiveStartKey(PageCursor.decode(cursor));
+        if (projection.attributes() != null) {
+            request.attributesToProject(projection.attributes());
+        }
+        return request.build();
+    }
+}
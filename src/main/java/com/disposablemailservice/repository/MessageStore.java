@@ -0,0 +1,44 @@
+// Storage contract for messages, implemented by the DynamoDB repository and the in-memory backend.
+// Messages are keyed by (mailboxId, id); ids are time-ordered so key order is arrival order.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.Message;
+import com.disposablemailservice.model.PagedResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public interface MessageStore {
+
+    void save(Message message);
+
+    Message findById(String mailboxId, String messageId);
+
+    /**
+     * Returns one page of a mailbox's messages in arrival order, or newest first.
+     */
+    PagedResult<Message> findByMailboxId(String mailboxId, MessageProjection projection,
+                                         boolean newestFirst, int limit, String cursor);
+
+    List<Message> findByMailboxId(String mailboxId, MessageProjection projection);
+
+    /**
+     * Deletes the listed messages in bulk and returns how many were deleted. The deleted items are not
+     * returned, so messages holding attachment or body references go through {@link #deleteById}.
+     */
+    int deleteAll(String mailboxId, List<String> ids);
+
+    /**
+     * Deletes one message and returns the deleted item, or null if it was already gone.
+     */
+    Message deleteById(String mailboxId, String id);
+
+    // Stored size of the text parts; attachments live in S3 and are not counted
+    static long estimateSize(Message message) {
+        return utf8Length(message.getSubject()) + utf8Length(message.getFrom()) + utf8Length(message.getBody());
+    }
+
+    private static long utf8Length(String value) {
+        return value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
@@ -0,0 +1,246 @@
+// Coalesces concurrent message puts into BatchWriteItem calls of up to 25 items.
+// A single collector thread lingers a few milliseconds for company, then hands each batch to a writer pool.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.Message;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteItemEnhancedRequest;
+import software.amazon.awssdk.enhanced.dynamodb.model.BatchWriteResult;
+import software.amazon.awssdk.enhanced.dynamodb.model.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Under light load a put waits at most the linger time before going out alone; under a burst the
+ * batches fill before the linger expires, so latency falls back to one round trip while the number
+ * of calls drops up to 25-fold. Items DynamoDB leaves unprocessed are retried with backoff and each
+ * caller's future completes on its own, so one throttled item never fails its neighbours.
+ */
+@Component
+@Profile("!" + InMemoryMailboxStore.PROFILE)
+public class MessageWriteCoalescer {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageWriteCoalescer.class);
+
+    private final DynamoDbEnhancedClient dynamoDbEnhancedClient;
+    private final DynamoDbTable<Message> messageTable;
+    private final BlockingQueue<PendingPut> queue;
+    private final ExecutorService writers;
+    private final Thread collector;
+    private final long lingerNanos;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long shutdownTimeoutSeconds;
+
+    private final Timer putLatency;
+    private final DistributionSummary batchSize;
+
+    private volatile boolean closed;
+
+    public MessageWriteCoalescer(DynamoDbEnhancedClient dynamoDbEnhancedClient,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${app.dynamodb.write-coalescer.linger-ms:5}") long lingerMillis,
+                                 @Value("${app.dynamodb.write-coalescer.queue-capacity:10000}") int queueCapacity,
+                                 @Value("${app.dynamodb.write-coalescer.concurrency:8}") int concurrency,
+                                 @Value("${app.dynamodb.write-coalescer.max-attempts:8}") int maxAttempts,
+                                 @Value("${app.dynamodb.write-coalescer.base-backoff-ms:25}") long baseBackoffMillis,
+                                 @Value("${app.dynamodb.write-coalescer.shutdown-timeout-seconds:30}") long shutdownTimeoutSeconds) {
+        this.dynamoDbEnhancedClient = dynamoDbEnhancedClient;
+        this.messageTable = dynamoDbEnhancedClient.table(TableSchemas.MESSAGE_TABLE, TableSchemas.MESSAGE);
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
+
+        AtomicInteger threadIds = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "dynamodb-coalesce-" + threadIds.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.putLatency = Timer.builder("burnbox.dynamodb.coalesced.put")
+                .description("Time from submitting a message put to its batch being acknowledged")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("burnbox.dynamodb.coalesced.batch.size")
+                .description("Items per coalesced BatchWriteItem call")
+                .register(meterRegistry);
+
+        this.collector = new Thread(this::collect, "dynamodb-coalesce-collector");
+        this.collector.setDaemon(true);
+        this.collector.start();
+    }
+
+    /**
+     * Queues the put and returns a future completed once this item has been written. Blocks while the
+     * queue is full, which pushes back on ingestion instead of buffering without limit.
+     */
+    public CompletableFuture<Void> put(Message message) {
+        PendingPut pending = new PendingPut(message, System.nanoTime());
+        if (closed) {
+            pending.future.completeExceptionally(new IllegalStateException("Write coalescer is shut down"));
+            return pending.future;
+        }
+        try {
+            queue.put(pending);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.future.completeExceptionally(e);
+        }
+        return pending.future;
+    }
+
+    private void collect() {
+        PendingPut carry = null;
+        while (!closed || !queue.isEmpty() || carry != null) {
+            try {
+                PendingPut first = carry != null ? carry : queue.poll(100, TimeUnit.MILLISECONDS);
+                carry = null;
+                if (first == null) {
+                    continue;
+                }
+                Map<String, PendingPut> batch = new HashMap<>();
+                batch.put(first.key(), first);
+                long deadline = System.nanoTime() + lingerNanos;
+                while (batch.size() < DynamoDbBatchPurger.BATCH_SIZE) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingPut next = remaining > 0 && !closed ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    // BatchWriteItem rejects two writes to one key, so a repeat starts the next batch
+                    if (batch.containsKey(next.key())) {
+                        carry = next;
+                        break;
+                    }
+                    batch.put(next.key(), next);
+                }
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Write coalescer collector failed", e);
+            }
+        }
+    }
+
+    private void dispatch(Map<String, PendingPut> batch) {
+        batchSize.record(batch.size());
+        try {
+            writers.execute(() -> write(batch));
+        } catch (RuntimeException e) {
+            batch.values().forEach(pending -> pending.future.completeExceptionally(e));
+        }
+    }
+
+    private void write(Map<String, PendingPut> batch) {
+        Map<String, PendingPut> outstanding = batch;
+        try {
+            for (int attempt = 1; ; attempt++) {
+                WriteBatch.Builder<Message> writeBatch = WriteBatch.builder(Message.class).mappedTableResource(messageTable);
+                outstanding.values().forEach(pending -> writeBatch.addPutItem(pending.message));
+                BatchWriteResult result = dynamoDbEnhancedClient.batchWriteItem(BatchWriteItemEnhancedRequest.builder()
+                        .writeBatches(writeBatch.build())
+                        .build());
+
+                Map<String, PendingPut> unprocessed = new HashMap<>();
+                for (Message message : result.unprocessedPutItemsForTable(messageTable)) {
+                    String key = keyOf(message);
+                    unprocessed.put(key, outstanding.get(key));
+                }
+                outstanding.forEach((key, pending) -> {
+                    if (!unprocessed.containsKey(key)) {
+                        complete(pending);
+                    }
+                });
+                if (unprocessed.isEmpty()) {
+                    return;
+                }
+                if (attempt >= maxAttempts) {
+                    IllegalStateException failure = new IllegalStateException(
+                            unprocessed.size() + " message puts still unprocessed after " + attempt + " attempts");
+                    unprocessed.values().forEach(pending -> pending.future.completeExceptionally(failure));
+                    return;
+                }
+                outstanding = unprocessed;
+                sleepBackoff(attempt);
+            }
+        } catch (RuntimeException e) {
+            outstanding.values().forEach(pending -> pending.future.completeExceptionally(e));
+        }
+    }
+
+    private void complete(PendingPut pending) {
+        putLatency.record(System.nanoTime() - pending.submittedAt, TimeUnit.NANOSECONDS);
+        pending.future.complete(null);
+    }
+
+    private void sleepBackoff(int attempt) {
+        // Full jitter exponential backoff, capped so a throttled table still drains
+        long cap = Math.min(baseBackoffMillis << Math.min(attempt, 10), 2_000L);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while backing off", e);
+        }
+    }
+
+    // Flushes whatever is queued, then waits for the in-flight batches before the client is closed
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        closed = true;
+        collector.join(TimeUnit.SECONDS.toMillis(shutdownTimeoutSeconds));
+        writers.shutdown();
+        if (!writers.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+            log.warn("Message write coalescer did not flush within {}s", shutdownTimeoutSeconds);
+        }
+        PendingPut abandoned;
+        while ((abandoned = queue.poll()) != null) {
+            abandoned.future.completeExceptionally(new IllegalStateException("Write coalescer is shut down"));
+        }
+    }
+
+    private static String keyOf(Message message) {
+        return message.getMailboxId() + '\u0000' + message.getId();
+    }
+
+    private static final class PendingPut {
+        private final Message message;
+        private final long submittedAt;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingPut(Message message, long submittedAt) {
+            this.message = message;
+            this.submittedAt = submittedAt;
+        }
+
+        String key() {
+            return keyOf(message);
+        }
+    }
+}
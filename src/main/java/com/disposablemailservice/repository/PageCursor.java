@@ -0,0 +1,68 @@
+// Encodes DynamoDB LastEvaluatedKey maps as opaque, URL-safe cursor tokens.
+// Only string and number key attributes are supported, which covers every table and index we own.
+package com.disposablemailservice.repository;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class PageCursor {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, String>> TOKEN_TYPE = new TypeReference<>() {};
+
+    private PageCursor() {
+    }
+
+    public static String encode(Map<String, AttributeValue> lastEvaluatedKey) {
+        if (lastEvaluatedKey == null || lastEvaluatedKey.isEmpty()) {
+            return null;
+        }
+        Map<String, String> token = new HashMap<>();
+        lastEvaluatedKey.forEach((name, value) -> {
+            if (value.s() != null) {
+                token.put(name, "S:" + value.s());
+            } else if (value.n() != null) {
+                token.put(name, "N:" + value.n());
+            } else {
+                throw new IllegalStateException("Unsupported key attribute type for " + name);
+            }
+        });
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(token));
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to encode page cursor", e);
+        }
+    }
+
+    public static Map<String, AttributeValue> decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        Map<String, String> token;
+        try {
+            byte[] json = Base64.getUrlDecoder().decode(cursor.getBytes(StandardCharsets.US_ASCII));
+            token = MAPPER.readValue(json, TOKEN_TYPE);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Invalid page cursor");
+        }
+        Map<String, AttributeValue> key = new HashMap<>();
+        token.forEach((name, encoded) -> {
+            if (encoded == null || encoded.length() < 2 || encoded.charAt(1) != ':') {
+                throw new IllegalArgumentException("Invalid page cursor");
+            }
+            String value = encoded.substring(2);
+            switch (encoded.charAt(0)) {
+                case 'S' -> key.put(name, AttributeValue.builder().s(value).build());
+                case 'N' -> key.put(name, AttributeValue.builder().n(value).build());
+                default -> throw new IllegalArgumentException("Invalid page cursor");
+            }
+        });
+        return key;
+    }
+}
@@ -0,0 +1,99 @@
+// S3-backed blob storage; every object lives in the one configured bucket.
+// Deletes go out as multi-object requests, so purging a mailbox is one call per thousand objects.
+package com.disposablemailservice.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.nio.file.Path;
+import java.util.List;
+
+@Repository
+@Profile("!" + InMemoryMailboxStore.PROFILE)
+public class S3BlobStore implements BlobStore {
+
+    private static final Logger log = LoggerFactory.getLogger(S3BlobStore.class);
+
+    // S3 DeleteObjects accepts at most 1000 keys per call
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    private final S3Client s3Client;
+    private final String bucketName;
+
+    public S3BlobStore(S3Client s3Client, @Value("${aws.s3.bucket-name:burnbox-attachments}") String bucketName) {
+        this.s3Client = s3Client;
+        this.bucketName = bucketName;
+    }
+
+    @Override
+    public void put(String key, Path file, String contentType) {
+        put(key, RequestBody.fromFile(file), contentType);
+    }
+
+    @Override
+    public void put(String key, byte[] content, String contentType) {
+        put(key, RequestBody.fromBytes(content), contentType);
+    }
+
+    private void put(String key, RequestBody content, String contentType) {
+        s3Client.putObject(PutObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(key)
+                        .contentType(contentType)
+                        .build(),
+                content);
+    }
+
+    @Override
+    public byte[] read(String key) {
+        return s3Client.getObjectAsBytes(GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build()).asByteArray();
+    }
+
+    @Override
+    public boolean exists(String key) {
+        try {
+            s3Client.headObject(HeadObjectRequest.builder().bucket(bucketName).key(key).build());
+            return true;
+        } catch (NoSuchKeyException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public int deleteAll(List<String> keys) {
+        int deleted = 0;
+        for (int start = 0; start < keys.size(); start += DELETE_BATCH_SIZE) {
+            List<ObjectIdentifier> batch = keys.subList(start, Math.min(start + DELETE_BATCH_SIZE, keys.size()))
+                    .stream()
+                    .map(key -> ObjectIdentifier.builder().key(key).build())
+                    .toList();
+            DeleteObjectsResponse response = s3Client.deleteObjects(DeleteObjectsRequest.builder()
+                    .bucket(bucketName)
+                    .delete(Delete.builder().objects(batch).quiet(true).build())
+                    .build());
+            int failed = response.hasErrors() ? response.errors().size() : 0;
+            if (failed > 0) {
+                log.warn("Failed to delete {} of {} objects, first error: {}",
+                        failed, batch.size(), response.errors().get(0).message());
+            }
+            deleted += batch.size() - failed;
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,112 @@
+// Hand-built table schemas for the DynamoDB items.
+// Static schemas avoid bean introspection at startup and reflective getter/setter calls per item.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.CompressedStringAttributeConverter;
+import com.disposablemailservice.model.Mailbox;
+import com.disposablemailservice.model.Message;
+import software.amazon.awssdk.enhanced.dynamodb.EnhancedType;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;
+
+import java.time.Instant;
+import java.util.List;
+
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.primaryPartitionKey;
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.primarySortKey;
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.secondaryPartitionKey;
+import static software.amazon.awssdk.enhanced.dynamodb.mapper.StaticAttributeTags.secondarySortKey;
+
+public final class TableSchemas {
+
+    public static final String MAILBOX_TABLE = "mailboxes";
+    public static final String MESSAGE_TABLE = "messages";
+    // Written with the low-level client only, so these have no item schema
+    public static final String DELIVERY_TABLE = "deliveries";
+    public static final String BLOB_REF_TABLE = "blob-refs";
+
+    public static final StaticTableSchema<Mailbox> MAILBOX = StaticTableSchema.builder(Mailbox.class)
+            .newItemSupplier(Mailbox::new)
+            .addAttribute(String.class, a -> a.name("id")
+                    .getter(Mailbox::getId)
+                    .setter(Mailbox::setId)
+                    .tags(primaryPartitionKey()))
+            .addAttribute(String.class, a -> a.name("address")
+                    .getter(Mailbox::getAddress)
+                    .setter(Mailbox::setAddress)
+                    .tags(secondaryPartitionKey(Mailbox.ADDRESS_INDEX)))
+            .addAttribute(String.class, a -> a.name("userId")
+                    .getter(Mailbox::getUserId)
+                    .setter(Mailbox::setUserId)
+                    .tags(secondaryPartitionKey(Mailbox.USER_ID_INDEX)))
+            .addAttribute(Instant.class, a -> a.name("createdAt")
+                    .getter(Mailbox::getCreatedAt)
+                    .setter(Mailbox::setCreatedAt)
+                    .tags(secondarySortKey(Mailbox.USER_ID_INDEX)))
+            .addAttribute(Instant.class, a -> a.name("expiryTime")
+                    .getter(Mailbox::getExpiryTime)
+                    .setter(Mailbox::setExpiryTime)
+                    .tags(secondarySortKey(Mailbox.EXPIRY_BUCKET_INDEX)))
+            .addAttribute(String.class, a -> a.name("expiryBucket")
+                    .getter(Mailbox::getExpiryBucket)
+                    .setter(Mailbox::setExpiryBucket)
+                    .tags(secondaryPartitionKey(Mailbox.EXPIRY_BUCKET_INDEX)))
+            .addAttribute(Long.class, a -> a.name(Mailbox.TTL_ATTRIBUTE)
+                    .getter(Mailbox::getTtl)
+                    .setter(Mailbox::setTtl))
+            .addAttribute(Boolean.class, a -> a.name("burnAfterRead")
+                    .getter(Mailbox::isBurnAfterRead)
+                    .setter((mailbox, value) -> mailbox.setBurnAfterRead(Boolean.TRUE.equals(value))))
+            .addAttribute(Integer.class, a -> a.name(Mailbox.MESSAGE_COUNT_ATTRIBUTE)
+                    .getter(Mailbox::getMessageCount)
+                    .setter((mailbox, value) -> mailbox.setMessageCount(value == null ? 0 : value)))
+            .addAttribute(Long.class, a -> a.name(Mailbox.TOTAL_BYTES_ATTRIBUTE)
+                    .getter(Mailbox::getTotalBytes)
+                    .setter((mailbox, value) -> mailbox.setTotalBytes(value == null ? 0L : value)))
+            .addAttribute(Instant.class, a -> a.name(Mailbox.LAST_RECEIVED_AT_ATTRIBUTE)
+                    .getter(Mailbox::getLastReceivedAt)
+                    .setter(Mailbox::setLastReceivedAt))
+            .build();
+
+    public static final StaticTableSchema<Message> MESSAGE = StaticTableSchema.builder(Message.class)
+            .newItemSupplier(Message::new)
+            .addAttribute(String.class, a -> a.name("mailboxId")
+                    .getter(Message::getMailboxId)
+                    .setter(Message::setMailboxId)
+                    .tags(primaryPartitionKey()))
+            .addAttribute(String.class, a -> a.name("id")
+                    .getter(Message::getId)
+                    .setter(Message::setId)
+                    .tags(primarySortKey()))
+            .addAttribute(String.class, a -> a.name("subject")
+                    .getter(Message::getSubject)
+                    .setter(Message::setSubject))
+            .addAttribute(String.class, a -> a.name("from")
+                    .getter(Message::getFrom)
+                    .setter(Message::setFrom))
+            .addAttribute(String.class, a -> a.name("body")
+                    .getter(Message::getBody)
+                    .setter(Message::setBody)
+                    .attributeConverter(new CompressedStringAttributeConverter()))
+            .addAttribute(String.class, a -> a.name("bodyKey")
+                    .getter(Message::getBodyKey)
+                    .setter(Message::setBodyKey))
+            .addAttribute(String.class, a -> a.name("preview")
+                    .getter(Message::getPreview)
+                    .setter(Message::setPreview))
+            .addAttribute(EnhancedType.listOf(String.class), a -> a.name("attachments")
+                    .getter(Message::getAttachments)
+                    .setter(Message::setAttachments))
+            .addAttribute(Integer.class, a -> a.name("attachmentCount")
+                    .getter(Message::getAttachmentCount)
+                    .setter((message, value) -> message.setAttachmentCount(value == null ? 0 : value)))
+            .addAttribute(Long.class, a -> a.name("sizeBytes")
+                    .getter(Message::getSizeBytes)
+                    .setter((message, value) -> message.setSizeBytes(value == null ? 0L : value)))
+            .addAttribute(Instant.class, a -> a.name("receivedAt")
+                    .getter(Message::getReceivedAt)
+                    .setter(Message::setReceivedAt))
+            .build();
+
+    private TableSchemas() {
+    }
+}
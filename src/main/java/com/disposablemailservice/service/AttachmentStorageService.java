@@ -0,0 +1,48 @@
+// Service for attachment objects in the blob store.
+// Message.attachments holds the object keys written here; attachments are stored once per distinct content.
+package com.disposablemailservice.service;
+
+import com.disposablemailservice.repository.BlobReferenceStore;
+import com.disposablemailservice.repository.BlobStore;
+import com.disposablemailservice.repository.ContentAddressedStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * A newsletter blast delivers the same file to thousands of mailboxes, so attachments are keyed by
+ * the SHA-256 of their content and reference counted: only the first copy is uploaded, and the
+ * object is deleted when the last message referencing it goes. Keys from before content addressing
+ * belong to a single message and are still deleted directly.
+ */
+@Service
+public class AttachmentStorageService {
+
+    static final String CONTENT_ADDRESSED_PREFIX = "attachments/sha256/";
+
+    private final ContentAddressedStore blobs;
+
+    public AttachmentStorageService(BlobStore blobStore, BlobReferenceStore referenceStore, MeterRegistry meterRegistry) {
+        this.blobs = new ContentAddressedStore(blobStore, referenceStore, meterRegistry,
+                CONTENT_ADDRESSED_PREFIX, "burnbox.attachments.stored");
+    }
+
+    /**
+     * Takes a reference on the content-addressed object for this attachment, uploading it only when no
+     * copy exists yet, and returns its key. The caller must give the reference back through
+     * {@link #releaseAll} if the message is never stored.
+     */
+    public String storeContentAddressed(String sha256Hex, Path file, String contentType) {
+        return blobs.store(sha256Hex, file, contentType);
+    }
+
+    /**
+     * Drops one reference per key and deletes the objects nothing references any more, returning
+     * how many were deleted. Keys that are not content addressed are deleted outright.
+     */
+    public int releaseAll(List<String> keys) {
+        return blobs.releaseAll(keys);
+    }
+}
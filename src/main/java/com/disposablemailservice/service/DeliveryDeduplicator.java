@@ -0,0 +1,112 @@
+// Two-tier idempotency check for inbound SES deliveries, keyed by the SES message id.
+// A node-local recent set absorbs quick repeats without I/O; the delivery ledger is authoritative across replicas.
+package com.disposablemailservice.service;
+
+import com.disposablemailservice.repository.DeliveryLedger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The local tier is two generations of a concurrent set that rotate every half window, so an id is
+ * remembered for between one half and one full window and memory is bounded by the arrival rate.
+ * It only ever holds completed deliveries, so it can skip work but never hides an unfinished one.
+ */
+@Component
+public class DeliveryDeduplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(DeliveryDeduplicator.class);
+
+    private final DeliveryLedger ledger;
+    private final Duration lease;
+    private final Duration retention;
+    private final long rotateNanos;
+
+    private final Counter localHits;
+    private final Counter ledgerHits;
+    private final Counter claimed;
+
+    private volatile Set<String> current = ConcurrentHashMap.newKeySet();
+    private volatile Set<String> previous = ConcurrentHashMap.newKeySet();
+    private volatile long rotatedAt = System.nanoTime();
+
+    public DeliveryDeduplicator(DeliveryLedger ledger,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.ingest.dedup.local-window-seconds:600}") long localWindowSeconds,
+                                @Value("${app.ingest.dedup.lease-seconds:300}") long leaseSeconds,
+                                @Value("${app.ingest.dedup.retention-hours:48}") long retentionHours) {
+        this.ledger = ledger;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.retention = Duration.ofHours(retentionHours);
+        this.rotateNanos = Duration.ofSeconds(localWindowSeconds).toNanos() / 2;
+        this.localHits = Counter.builder("burnbox.ingest.duplicates").tag("tier", "local").register(meterRegistry);
+        this.ledgerHits = Counter.builder("burnbox.ingest.duplicates").tag("tier", "ledger").register(meterRegistry);
+        this.claimed = Counter.builder("burnbox.ingest.deliveries.claimed").register(meterRegistry);
+    }
+
+    /**
+     * True if the delivery completed on this node within the local window. Costs no I/O, so callers
+     * can check it before spending anything else on a repeat.
+     */
+    public boolean recentlyCompleted(String deliveryId) {
+        rotateIfDue();
+        if (current.contains(deliveryId) || previous.contains(deliveryId)) {
+            localHits.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the caller now owns the delivery and must finish with {@link #complete} or
+     * {@link #abandon}; false if it has been stored already or is being stored elsewhere.
+     */
+    public boolean tryBegin(String deliveryId) {
+        if (recentlyCompleted(deliveryId)) {
+            return false;
+        }
+        Instant now = Instant.now();
+        if (!ledger.tryClaim(deliveryId, now.plus(lease), now.plus(retention))) {
+            ledgerHits.increment();
+            return false;
+        }
+        claimed.increment();
+        return true;
+    }
+
+    public void complete(String deliveryId) {
+        ledger.markCompleted(deliveryId, Instant.now().plus(retention));
+        current.add(deliveryId);
+    }
+
+    // Best effort: if the release fails the claim simply runs out at the end of its lease
+    public void abandon(String deliveryId) {
+        try {
+            ledger.release(deliveryId);
+        } catch (RuntimeException e) {
+            log.warn("Could not release delivery claim {}: {}", deliveryId, e.getMessage());
+        }
+    }
+
+    private void rotateIfDue() {
+        long now = System.nanoTime();
+        if (now - rotatedAt < rotateNanos) {
+            return;
+        }
+        synchronized (this) {
+            if (now - rotatedAt >= rotateNanos) {
+                previous = current;
+                current = ConcurrentHashMap.newKeySet();
+                rotatedAt = now;
+            }
+        }
+    }
+}
@@ -1,10 +1,346 @@
+// Service for SES inbound mail delivered through SNS.
+// Parses the SNS envelope and SES notification, spools the raw MIME to disk and hands it to EmailService per recipient.
 package com.disposablemailservice.service;
 
+import com.disposablemailservice.model.Mailbox;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.mail.MessagingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * The raw message is written to a spool file and parsed from a shared file stream, so
+ * MIME parts are read from disk on demand instead of being materialised in the heap. Peak memory per
+ * message is the SNS payload (at most 256 KB) plus the text parts, regardless of attachment size.
+ */
 @Service
 public class EmailEventService {
-    public void processSnsEvent(String snsPayload) {
-        // TODO: Parse SNS payload, extract SES message, store metadata in DynamoDB, upload attachments to S3
+
+    private static final Logger log = LoggerFactory.getLogger(EmailEventService.class);
+    private static final Set<String> SUPPORTED_TYPES = Set.of("Notification", "SubscriptionConfirmation", "UnsubscribeConfirmation");
+    private static final Pattern SNS_HOST = Pattern.compile("sns\\.[a-z0-9-]+\\.amazonaws\\.com(\\.cn)?");
+    // Our own objects share the bucket and must never be read back as inbound mail
+    private static final List<String> RESERVED_KEY_PREFIXES = List.of("attachments/", "bodies/");
+
+    private final ObjectMapper objectMapper;
+    private final MailboxService mailboxService;
+    private final EmailService emailService;
+    private final DeliveryDeduplicator deduplicator;
+    private final IngestionRateLimiter rateLimiter;
+    private final SnsSignatureVerifier signatureVerifier;
+    private final S3Client s3Client;
+    private final String topicArn;
+    private final String receiptBucket;
+    private final String receiptKeyPrefix;
+    private final Path spoolDir;
+    private final HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+
+    public EmailEventService(ObjectMapper objectMapper, MailboxService mailboxService, EmailService emailService,
+                             DeliveryDeduplicator deduplicator, IngestionRateLimiter rateLimiter,
+                             SnsSignatureVerifier signatureVerifier, S3Client s3Client,
+                             @Value("${aws.sns.topic:}") String topicArn,
+                             @Value("${app.ingest.receipt-bucket:${aws.s3.bucket-name:burnbox-attachments}}") String receiptBucket,
+                             @Value("${app.ingest.receipt-key-prefix:}") String receiptKeyPrefix,
+                             @Value("${app.ingest.spool-dir:${java.io.tmpdir}}") String spoolDir) {
+        this.objectMapper = objectMapper;
+        this.mailboxService = mailboxService;
+        this.emailService = emailService;
+        this.deduplicator = deduplicator;
+        this.rateLimiter = rateLimiter;
+        this.signatureVerifier = signatureVerifier;
+        this.s3Client = s3Client;
+        this.topicArn = topicArn == null || topicArn.isBlank() ? null : topicArn.trim();
+        this.receiptBucket = receiptBucket;
+        this.receiptKeyPrefix = receiptKeyPrefix;
+        this.spoolDir = Paths.get(spoolDir);
+    }
+
+    /**
+     * Parses the SNS envelope and verifies its signature on the request thread, so forged events are
+     * refused before they are queued. Only a signing-certificate cache miss does any I/O.
+     */
+    public JsonNode parseEnvelope(String snsPayload) {
+        JsonNode envelope = readJson(snsPayload, "SNS envelope");
+        String type = envelope.path("Type").asText();
+        if (!SUPPORTED_TYPES.contains(type)) {
+            throw new IllegalArgumentException("Unsupported SNS message type: " + type);
+        }
+        signatureVerifier.verify(envelope);
+        return envelope;
+    }
+
+    /**
+     * Processes a parsed envelope. Throws IllegalArgumentException for events that can never succeed;
+     * any other failure propagates so the caller can retry with the same admission.
+     */
+    public void processEnvelope(JsonNode envelope, Admission admission) {
+        switch (envelope.path("Type").asText()) {
+            case "SubscriptionConfirmation" -> confirmSubscription(envelope);
+            case "UnsubscribeConfirmation" -> log.info("SNS unsubscribe confirmation for topic {}", envelope.path("TopicArn").asText());
+            default -> processNotification(readJson(envelope.path("Message").asText(), "SES notification"), admission);
+        }
+    }
+
+    /**
+     * The rate-limit decision for one SNS event. The caller keeps it across retries, so tokens are
+     * taken once per delivery and a retry is never dropped as throttled half way through.
+     */
+    public static final class Admission {
+        private final boolean exempt;
+        private Set<String> admittedAddresses;
+
+        public Admission() {
+            this(false);
+        }
+
+        private Admission(boolean exempt) {
+            this.exempt = exempt;
+        }
+
+        // For events accepted long ago (e.g. replayed from disk) whose original decision is not kept
+        public static Admission exempt() {
+            return new Admission(true);
+        }
+    }
+
+    private void processNotification(JsonNode notification, Admission admission) {
+        String notificationType = notification.path("notificationType").asText();
+        if (!"Received".equals(notificationType)) {
+            log.info("Ignoring SES notification of type {}", notificationType);
+            return;
+        }
+
+        String sesMessageId = notification.path("mail").path("messageId").asText();
+        if (sesMessageId.isEmpty()) {
+            throw new IllegalArgumentException("SES notification has no message id");
+        }
+        // A quick redelivery of a stored message is dropped before it can take rate-limit tokens again
+        if (deduplicator.recentlyCompleted(sesMessageId)) {
+            log.info("SES message {} already delivered, skipping", sesMessageId);
+            return;
+        }
+        // Admission is decided in memory before the ledger is touched, so throttled mail costs no writes
+        Set<String> addresses = admittedAddresses(sesMessageId, notification, admission);
+        if (addresses.isEmpty()) {
+            log.info("SES message {} has no known recipient under its rate limit, dropping it", sesMessageId);
+            return;
+        }
+        // SNS delivers at least once; a redelivery of a stored message is acknowledged and dropped
+        if (!deduplicator.tryBegin(sesMessageId)) {
+            log.info("SES message {} already delivered or in progress, skipping", sesMessageId);
+            return;
+        }
+        try {
+            Map<String, Mailbox> mailboxes = resolveMailboxes(addresses);
+            if (mailboxes.isEmpty()) {
+                log.info("SES message {} has no live recipient mailbox, dropping it", sesMessageId);
+            } else {
+                deliver(sesMessageId, notification, mailboxes);
+            }
+            deduplicator.complete(sesMessageId);
+        } catch (RuntimeException e) {
+            deduplicator.abandon(sesMessageId);
+            throw e;
+        }
+    }
+
+    private void deliver(String sesMessageId, JsonNode notification, Map<String, Mailbox> mailboxes) {
+        Path raw = spoolRawMessage(notification);
+        try {
+            emailService.handleSpooledMessage(raw, mailboxes.values());
+            log.info("Stored SES message {} for {} mailbox(es)", sesMessageId, mailboxes.size());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (MessagingException e) {
+            throw new IllegalArgumentException("Unparseable MIME in SES message " + sesMessageId, e);
+        } finally {
+            deleteQuietly(raw);
+        }
+    }
+
+    // Prefers the SMTP envelope recipients SES accepted over the To/Cc headers; decided once per admission
+    private Set<String> admittedAddresses(String sesMessageId, JsonNode notification, Admission admission) {
+        if (admission.admittedAddresses == null) {
+            Set<String> addresses = new LinkedHashSet<>();
+            notification.path("receipt").path("recipients").forEach(node -> addresses.add(node.asText()));
+            if (addresses.isEmpty()) {
+                notification.path("mail").path("destination").forEach(node -> addresses.add(node.asText()));
+            }
+            admission.admittedAddresses = admit(sesMessageId, notification, addresses, admission.exempt);
+        }
+        return admission.admittedAddresses;
+    }
+
+    private Map<String, Mailbox> resolveMailboxes(Set<String> addresses) {
+        Map<String, Mailbox> mailboxes = new LinkedHashMap<>();
+        for (String address : addresses) {
+            mailboxService.findLiveByAddress(address).ifPresent(mailbox -> mailboxes.putIfAbsent(mailbox.getId(), mailbox));
+        }
+        return mailboxes;
+    }
+
+    /**
+     * Filters the recipients down to known addresses under their rate limit. Both checks are in
+     * memory and run before the delivery ledger and the address GSI, so a flooded address costs no
+     * DynamoDB reads or writes.
+     */
+    private Set<String> admit(String sesMessageId, JsonNode notification, Set<String> addresses, boolean exempt) {
+        Set<String> known = new LinkedHashSet<>();
+        for (String address : addresses) {
+            if (mailboxService.mightExist(address)) {
+                known.add(address);
+            }
+        }
+        if (exempt || known.isEmpty()) {
+            return known;
+        }
+        String source = notification.path("mail").path("source").asText();
+        if (!rateLimiter.admitSender(source)) {
+            log.debug("Dropping SES message {}: sender {} is over its rate limit", sesMessageId, source);
+            return Set.of();
+        }
+        known.removeIf(address -> {
+            if (rateLimiter.admitRecipient(address)) {
+                return false;
+            }
+            log.debug("Dropping SES message {} for {}: over its rate limit", sesMessageId, address);
+            return true;
+        });
+        return known;
+    }
+
+    /**
+     * Writes the raw MIME to a spool file: streamed from S3 when the receipt rule stored it there,
+     * otherwise decoded from the content field that the SNS action inlines. The S3 location comes
+     * from the payload, so it is only honoured inside the configured receipt bucket and prefix;
+     * otherwise a forged event could copy any object our credentials reach into the caller's mailbox.
+     */
+    private Path spoolRawMessage(JsonNode notification) {
+        JsonNode action = notification.path("receipt").path("action");
+        Path spool = spoolDir.resolve("mime-" + UUID.randomUUID() + ".eml");
+        try {
+            if ("S3".equals(action.path("type").asText())) {
+                s3Client.getObject(GetObjectRequest.builder()
+                                .bucket(receiptBucket)
+                                .key(receiptObjectKey(action))
+                                .build(),
+                        ResponseTransformer.toFile(spool));
+                return spool;
+            }
+
+            String content = notification.path("content").asText(null);
+            if (content == null) {
+                throw new IllegalArgumentException("SES notification carries neither content nor an S3 location");
+            }
+            if ("BASE64".equalsIgnoreCase(action.path("encoding").asText())) {
+                try (InputStream decoded = Base64.getMimeDecoder()
+                        .wrap(new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII)))) {
+                    Files.copy(decoded, spool);
+                }
+            } else {
+                Files.writeString(spool, content, StandardCharsets.UTF_8);
+            }
+            return spool;
+        } catch (IOException e) {
+            deleteQuietly(spool);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            deleteQuietly(spool);
+            throw e;
+        }
+    }
+
+    private String receiptObjectKey(JsonNode action) {
+        String bucket = action.path("bucketName").asText();
+        String key = action.path("objectKey").asText();
+        if (!receiptBucket.equals(bucket) || key.isEmpty() || !key.startsWith(receiptKeyPrefix)
+                || RESERVED_KEY_PREFIXES.stream().anyMatch(key::startsWith)) {
+            throw new IllegalArgumentException("Refusing SES message location s3://" + bucket + "/" + key);
+        }
+        return key;
+    }
+
+    /**
+     * Only confirms subscriptions to the configured topic, through an HTTPS URL on an SNS endpoint
+     * that names the same topic, so neither a foreign topic nor a forged URL gets us subscribed.
+     */
+    private void confirmSubscription(JsonNode envelope) {
+        String envelopeTopic = envelope.path("TopicArn").asText(null);
+        if (topicArn == null || !topicArn.equals(envelopeTopic)) {
+            throw new IllegalArgumentException("Refusing SNS subscription to topic " + envelopeTopic
+                    + (topicArn == null ? " (set aws.sns.topic to confirm subscriptions)" : ""));
+        }
+        String subscribeUrl = envelope.path("SubscribeURL").asText(null);
+        URI uri;
+        try {
+            uri = subscribeUrl == null ? null : URI.create(subscribeUrl);
+        } catch (IllegalArgumentException e) {
+            uri = null;
+        }
+        if (uri == null || !"https".equals(uri.getScheme()) || uri.getHost() == null
+                || !SNS_HOST.matcher(uri.getHost()).matches()
+                || uri.getQuery() == null || !List.of(uri.getQuery().split("&")).contains("TopicArn=" + topicArn)) {
+            throw new IllegalArgumentException("Refusing SNS SubscribeURL " + subscribeUrl);
+        }
+        try {
+            HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(uri)
+                            .timeout(Duration.ofSeconds(10))
+                            .GET()
+                            .build(),
+                    HttpResponse.BodyHandlers.discarding());
+            log.info("Confirmed SNS subscription via {} (HTTP {})", uri.getHost(), response.statusCode());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while confirming SNS subscription", e);
+        }
+    }
+
+    private JsonNode readJson(String json, String what) {
+        if (json == null || json.isBlank()) {
+            throw new IllegalArgumentException("Empty " + what);
+        }
+        try {
+            return objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed " + what);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete spool file {}: {}", path, e.getMessage());
+        }
     }
 }
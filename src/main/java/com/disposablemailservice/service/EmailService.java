@@ -1,35 +1,147 @@
 // Service for processing incoming emails from AWS SES.
-// Parses and stores emails in the Message table.
+// Parses and stores emails in the Message table; attachments are streamed to S3 under their content hash.
 package com.disposablemailservice.service;
+import com.disposablemailservice.model.Mailbox;
 import com.disposablemailservice.model.Message;
-import com.disposablemailservice.repository.MessageRepository;
+import com.disposablemailservice.repository.ContentAddressedStore;
+import com.disposablemailservice.repository.MessageStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import jakarta.mail.Address;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.Session;
 import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.util.SharedFileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
 
 @Service
 public class EmailService {
 
-    private final MessageRepository messageRepository;
+    private static final Logger log = LoggerFactory.getLogger(EmailService.class);
+
+    private final MessageStore messageStore;
+    private final MailboxService mailboxService;
+    private final AttachmentStorageService attachmentStorageService;
+    private final EventPublisherService eventPublisherService;
+    private final Path spoolDir;
+    private final int previewChars;
+    private final Session session = Session.getInstance(new Properties());
 
     @Autowired
-    public EmailService(MessageRepository messageRepository) {
-        this.messageRepository = messageRepository;
+    public EmailService(MessageStore messageStore, MailboxService mailboxService,
+                        AttachmentStorageService attachmentStorageService, EventPublisherService eventPublisherService,
+                        @Value("${app.ingest.spool-dir:${java.io.tmpdir}}") String spoolDir,
+                        @Value("${app.messages.preview-chars:256}") int previewChars) {
+        this.messageStore = messageStore;
+        this.mailboxService = mailboxService;
+        this.attachmentStorageService = attachmentStorageService;
+        this.eventPublisherService = eventPublisherService;
+        this.spoolDir = Paths.get(spoolDir);
+        this.previewChars = previewChars;
+    }
+
+    /**
+     * Stores a raw MIME message spooled to disk in each of the given mailboxes. Parts are read from the
+     * file on demand, so heap use does not grow with the message size.
+     */
+    public void handleSpooledMessage(Path raw, Collection<Mailbox> mailboxes) throws IOException, MessagingException {
+        try (SharedFileInputStream in = new SharedFileInputStream(raw.toFile())) {
+            for (Mailbox mailbox : mailboxes) {
+                // Each recipient gets an independent view over the same spooled bytes
+                handleIncomingEmail(new MimeMessage(session, in.newStream(0, -1)), mailbox);
+            }
+        }
+    }
+
+    /**
+     * Stores one message in the mailbox. Text parts become the body and its list-view preview; each
+     * attachment is decoded to a spool file and streamed to S3 in turn, so heap use is bounded no
+     * matter how large it is.
+     */
+    public Message handleIncomingEmail(MimeMessage mimeMessage, Mailbox mailbox) throws IOException, MessagingException {
+        String mailboxId = mailbox.getId();
+        String messageId = generateMessageId();
+
+        MimeWalker.Content content = MimeWalker.walk(mimeMessage);
+
+        List<String> attachmentKeys = new ArrayList<>();
+        try {
+            for (Part part : content.attachments()) {
+                attachmentKeys.add(storeAttachment(part));
+            }
+
+            Message message = new Message();
+            message.setId(messageId);
+            message.setMailboxId(mailboxId);
+            message.setSubject(mimeMessage.getSubject());
+            message.setFrom(sender(mimeMessage));
+            message.setBody(content.body());
+            message.setPreview(MimeWalker.preview(content, previewChars));
+            message.setAttachments(attachmentKeys.isEmpty() ? null : attachmentKeys);
+            message.setReceivedAt(Instant.now());
+
+            messageStore.save(message);
+            if (!mailboxService.recordMessageReceived(message)) {
+                // Purged along with its references; there is no mailbox left to announce it to
+                return message;
+            }
+            eventPublisherService.publishMessageReceived(messageId, mailboxId, mailbox.getUserId(),
+                    message.getFrom(), message.getSubject(), !attachmentKeys.isEmpty());
+            return message;
+        } catch (IOException | MessagingException | RuntimeException e) {
+            // The message was never stored, so give back its references rather than leak the objects
+            if (!attachmentKeys.isEmpty()) {
+                attachmentStorageService.releaseAll(attachmentKeys);
+            }
+            throw e;
+        }
+    }
+
+    // Hashes the decoded bytes on their way to the spool file, so the content key costs no second read
+    private String storeAttachment(Part part) throws IOException, MessagingException {
+        Path spool = Files.createTempFile(spoolDir, "attachment-", ".part");
+        try {
+            MessageDigest sha256 = ContentAddressedStore.sha256();
+            try (InputStream in = new DigestInputStream(part.getInputStream(), sha256)) {
+                Files.copy(in, spool, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String contentType = part.getContentType() == null ? "application/octet-stream"
+                    : part.getContentType().split(";", 2)[0].trim();
+            String key = attachmentStorageService.storeContentAddressed(
+                    HexFormat.of().formatHex(sha256.digest()), spool, contentType);
+            log.debug("Stored attachment {} ({} bytes)", key, Files.size(spool));
+            return key;
+        } finally {
+            Files.deleteIfExists(spool);
+        }
+    }
+
+    private static String sender(MimeMessage mimeMessage) throws MessagingException {
+        Address[] from = mimeMessage.getFrom();
+        return from == null || from.length == 0 ? null : from[0].toString();
     }
 
-    public void handleIncomingEmail(MimeMessage mimeMessage, String mailboxId) throws IOException, jakarta.mail.MessagingException {
-        String subject = mimeMessage.getSubject();
-        String sender = mimeMessage.getFrom()[0].toString();
-        String body = mimeMessage.getContent().toString();
-        
-        Message message = new Message();
-        message.setMailboxId(mailboxId);
-        message.setSubject(subject);
-        message.setFrom(sender);
-        message.setBody(body);
-    
-        messageRepository.save(message);
+    private String generateMessageId() {
+        // Millisecond prefix keeps ids sortable by arrival, which is the order the messages sort key is queried in
+        return "msg_" + System.currentTimeMillis() + "_" + UUID.randomUUID().toString().substring(0, 8);
     }
-}
\ No newline at end of file
+}
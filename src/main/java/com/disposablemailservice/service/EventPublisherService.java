@@ -23,7 +23,7 @@ public class EventPublisherService {
     @Value("${app.kafka.enabled:false}")
     private boolean kafkaEnabled;
     
-    private static final String MAILBOX_EVENTS_TOPIC = "mailbox-events";
+    public static final String MAILBOX_EVENTS_TOPIC = "mailbox-events";
     private static final String MESSAGE_EVENTS_TOPIC = "message-events";
     
     public void publishMailboxCreated(Mailbox mailbox, String userId) {
@@ -0,0 +1,258 @@
+// Hierarchical timing wheel holding one pending deadline per mailbox id.
+// Timers live in primitive arrays linked into slot lists, and ids map to their handles through an open-addressed
+// int[] index, so insert and cancel are O(1) with no per-timer objects beyond the id itself.
+// Not thread-safe; MailboxExpiryScheduler serialises access.
+package com.disposablemailservice.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+final class ExpiryTimingWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    // 64^5 ticks: with one-second ticks the wheel spans decades without an overflow list
+    private static final int LEVELS = 5;
+    private static final int NONE = -1;
+
+    private final long tickMillis;
+    private final int[] slotHeads = new int[LEVELS * SLOTS];
+
+    // id -> handle, linear probing over a power-of-two table kept at most half full; the key is ids[handle]
+    private int[] index;
+    private int size;
+
+    // Timer storage, indexed by handle
+    private String[] ids;
+    private long[] deadlineTicks;
+    private int[] next;
+    private int[] prev;
+    private int[] slotOf;
+    private int freeHead = NONE;
+    private int highWater;
+
+    // Last tick that has been fully processed
+    private long currentTick;
+
+    ExpiryTimingWheel(long tickMillis, long nowMillis, int initialCapacity) {
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+        Arrays.fill(slotHeads, NONE);
+        int capacity = Math.max(16, initialCapacity);
+        ids = new String[capacity];
+        deadlineTicks = new long[capacity];
+        next = new int[capacity];
+        prev = new int[capacity];
+        slotOf = new int[capacity];
+        index = new int[Integer.highestOneBit(capacity - 1) << 2];
+        Arrays.fill(index, NONE);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Schedules (or reschedules) the id to fire at deadlineMillis. Deadlines in the past fire on the next tick.
+     */
+    void schedule(String id, long deadlineMillis) {
+        int position = probe(id);
+        int handle = index[position];
+        if (handle != NONE) {
+            unlink(handle);
+        } else {
+            handle = allocate();
+            ids[handle] = id;
+            index[position] = handle;
+            if (++size * 2 > index.length) {
+                rehash(index.length * 2);
+            }
+        }
+        deadlineTicks[handle] = ceilDiv(deadlineMillis, tickMillis);
+        link(handle, currentTick + 1);
+    }
+
+    boolean cancel(String id) {
+        int position = probe(id);
+        int handle = index[position];
+        if (handle == NONE) {
+            return false;
+        }
+        removeAt(position);
+        unlink(handle);
+        release(handle);
+        return true;
+    }
+
+    /**
+     * Processes every tick up to nowMillis and returns the ids whose deadline has passed, in deadline order per tick.
+     */
+    List<String> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        List<String> due = new ArrayList<>();
+        while (currentTick < targetTick) {
+            long tick = ++currentTick;
+            cascade(tick);
+            int slot = (int) (tick & SLOT_MASK);
+            int handle = detach(slot);
+            while (handle != NONE) {
+                int following = next[handle];
+                if (deadlineTicks[handle] <= tick) {
+                    due.add(ids[handle]);
+                    removeAt(probe(ids[handle]));
+                    release(handle);
+                } else {
+                    link(handle, tick);
+                }
+                handle = following;
+            }
+        }
+        return due;
+    }
+
+    // Moves timers from higher levels down once the lower levels have wrapped around to them
+    private void cascade(long tick) {
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = level * SLOT_BITS;
+            if ((tick & ((1L << shift) - 1)) != 0) {
+                return;
+            }
+            int slot = level * SLOTS + (int) ((tick >>> shift) & SLOT_MASK);
+            int handle = detach(slot);
+            while (handle != NONE) {
+                int following = next[handle];
+                link(handle, tick);
+                handle = following;
+            }
+        }
+    }
+
+    private void link(int handle, long baseTick) {
+        long target = Math.max(deadlineTicks[handle], baseTick);
+        long delta = target - baseTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << ((level + 1) * SLOT_BITS)) {
+            level++;
+        }
+        int slot = level * SLOTS + (int) ((target >>> (level * SLOT_BITS)) & SLOT_MASK);
+        int head = slotHeads[slot];
+        next[handle] = head;
+        prev[handle] = NONE;
+        if (head != NONE) {
+            prev[head] = handle;
+        }
+        slotHeads[slot] = handle;
+        slotOf[handle] = slot;
+    }
+
+    private void unlink(int handle) {
+        int slot = slotOf[handle];
+        if (slot == NONE) {
+            return;
+        }
+        if (prev[handle] != NONE) {
+            next[prev[handle]] = next[handle];
+        } else {
+            slotHeads[slot] = next[handle];
+        }
+        if (next[handle] != NONE) {
+            prev[next[handle]] = prev[handle];
+        }
+        slotOf[handle] = NONE;
+    }
+
+    // Takes the whole list out of a slot; callers walk it through next[] and relink or release each timer
+    private int detach(int slot) {
+        int head = slotHeads[slot];
+        slotHeads[slot] = NONE;
+        for (int handle = head; handle != NONE; handle = next[handle]) {
+            slotOf[handle] = NONE;
+        }
+        return head;
+    }
+
+    // Position of the id's handle in the index, or of the empty slot where it would be inserted
+    private int probe(String id) {
+        int mask = index.length - 1;
+        int position = home(id, mask);
+        int handle;
+        while ((handle = index[position]) != NONE && !ids[handle].equals(id)) {
+            position = (position + 1) & mask;
+        }
+        return position;
+    }
+
+    // Backward-shift deletion: pulls later entries of the probe run into the hole so lookups never need tombstones
+    private void removeAt(int position) {
+        int mask = index.length - 1;
+        int hole = position;
+        int scan = position;
+        while (true) {
+            scan = (scan + 1) & mask;
+            int handle = index[scan];
+            if (handle == NONE) {
+                break;
+            }
+            int home = home(ids[handle], mask);
+            // Move the entry only if its home is not cyclically within (hole, scan]
+            if (((scan - home) & mask) >= ((scan - hole) & mask)) {
+                index[hole] = handle;
+                hole = scan;
+            }
+        }
+        index[hole] = NONE;
+        size--;
+    }
+
+    private void rehash(int capacity) {
+        int[] old = index;
+        index = new int[capacity];
+        Arrays.fill(index, NONE);
+        int mask = capacity - 1;
+        for (int handle : old) {
+            if (handle != NONE) {
+                int position = home(ids[handle], mask);
+                while (index[position] != NONE) {
+                    position = (position + 1) & mask;
+                }
+                index[position] = handle;
+            }
+        }
+    }
+
+    private static int home(String id, int mask) {
+        // Fibonacci hashing spreads String.hashCode's weak low bits across the table
+        int hash = id.hashCode() * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private int allocate() {
+        if (freeHead != NONE) {
+            int handle = freeHead;
+            freeHead = next[handle];
+            return handle;
+        }
+        if (highWater == ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            deadlineTicks = Arrays.copyOf(deadlineTicks, capacity);
+            next = Arrays.copyOf(next, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+            slotOf = Arrays.copyOf(slotOf, capacity);
+        }
+        return highWater++;
+    }
+
+    private void release(int handle) {
+        ids[handle] = null;
+        slotOf[handle] = NONE;
+        next[handle] = freeHead;
+        freeHead = handle;
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+}
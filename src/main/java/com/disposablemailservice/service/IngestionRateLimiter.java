@@ -0,0 +1,132 @@
+// Admission control for inbound mail: token buckets per recipient address and per sender domain.
+// Checked before the mailbox lookup, spooling and parsing, so a flood to one address is refused for the cost of a CAS.
+package com.disposablemailservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Keys are hashed onto a fixed array of buckets, so memory is the same for ten keys or ten million;
+ * the price is that colliding keys share a budget, which only ever makes the limit stricter. Each
+ * bucket is a single long holding the time at which it would be full again (the GCRA form of a token
+ * bucket), so taking a token is one compare-and-set and a refusal writes nothing at all. The hash is
+ * seeded per instance, so a sender cannot pick domains that land on a popular domain's bucket.
+ * Callers only ask about addresses the address filter knows, so mail to random addresses cannot
+ * drain the buckets real mailboxes hash onto.
+ *
+ * <p>The sender-domain limit is off by default: limits are per node, and shared sending domains
+ * (amazonses.com, gmail.com, most OTP providers) would throttle legitimate mail for every user.
+ */
+@Component
+public class IngestionRateLimiter {
+
+    private final TokenBuckets recipients;
+    private final TokenBuckets senders;
+    private final Counter recipientThrottled;
+    private final Counter senderThrottled;
+
+    public IngestionRateLimiter(MeterRegistry meterRegistry,
+                                @Value("${app.ingest.rate-limit.stripes:16384}") int stripes,
+                                @Value("${app.ingest.rate-limit.recipient.per-hour:600}") long recipientPerHour,
+                                @Value("${app.ingest.rate-limit.recipient.burst:60}") long recipientBurst,
+                                @Value("${app.ingest.rate-limit.sender-domain.per-hour:0}") long senderPerHour,
+                                @Value("${app.ingest.rate-limit.sender-domain.burst:600}") long senderBurst) {
+        this.recipients = new TokenBuckets(stripes, recipientPerHour, recipientBurst);
+        this.senders = new TokenBuckets(stripes, senderPerHour, senderBurst);
+        this.recipientThrottled = Counter.builder("burnbox.ingest.throttled")
+                .description("Inbound messages refused because a rate limit was exceeded")
+                .tag("scope", "recipient")
+                .register(meterRegistry);
+        this.senderThrottled = Counter.builder("burnbox.ingest.throttled").tag("scope", "sender-domain").register(meterRegistry);
+        Gauge.builder("burnbox.ingest.rate-limit.per-hour", () -> recipientPerHour).tag("scope", "recipient").register(meterRegistry);
+        Gauge.builder("burnbox.ingest.rate-limit.burst", () -> recipientBurst).tag("scope", "recipient").register(meterRegistry);
+        Gauge.builder("burnbox.ingest.rate-limit.per-hour", () -> senderPerHour).tag("scope", "sender-domain").register(meterRegistry);
+        Gauge.builder("burnbox.ingest.rate-limit.burst", () -> senderBurst).tag("scope", "sender-domain").register(meterRegistry);
+    }
+
+    /**
+     * Takes a token for one message to the address; false means the message should be refused. An
+     * address belongs to one mailbox, so keying by address saves the lookup for refused mail.
+     */
+    public boolean admitRecipient(String address) {
+        if (recipients.tryAcquire(MailboxAddressFilter.normalize(address), 0)) {
+            return true;
+        }
+        recipientThrottled.increment();
+        return false;
+    }
+
+    /**
+     * Takes a token for the domain of the envelope sender. Null senders (bounces) share one bucket,
+     * which also caps backscatter.
+     */
+    public boolean admitSender(String senderAddress) {
+        String address = senderAddress == null ? "" : senderAddress;
+        if (senders.tryAcquire(address, address.lastIndexOf('@') + 1)) {
+            return true;
+        }
+        senderThrottled.increment();
+        return false;
+    }
+
+    static final class TokenBuckets {
+
+        private final AtomicLongArray fullAt;
+        private final int mask;
+        private final long seed = ThreadLocalRandom.current().nextLong();
+        // nanoTime may be negative, so times are kept relative to construction and 0 means "full"
+        private final long origin = System.nanoTime();
+        private final long nanosPerToken;
+        private final long capacityNanos;
+        private final boolean enabled;
+
+        TokenBuckets(int stripes, long perHour, long burst) {
+            if (stripes <= 0) {
+                throw new IllegalArgumentException("Rate limit stripes must be positive: " + stripes);
+            }
+            // Rounded up to a power of two so the stripe is a mask, not a division
+            int size = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+            this.fullAt = new AtomicLongArray(size);
+            this.mask = size - 1;
+            this.enabled = perHour > 0;
+            this.nanosPerToken = enabled ? TimeUnit.HOURS.toNanos(1) / perHour : 0;
+            this.capacityNanos = nanosPerToken * Math.max(1, burst);
+        }
+
+        // Keys are compared case-insensitively from the given offset, without allocating a substring
+        boolean tryAcquire(String key, int from) {
+            if (!enabled) {
+                return true;
+            }
+            int stripe = stripe(key, from);
+            long now = System.nanoTime() - origin;
+            while (true) {
+                long current = fullAt.get(stripe);
+                long next = Math.max(current, now) + nanosPerToken;
+                if (next - now > capacityNanos) {
+                    return false;
+                }
+                if (fullAt.compareAndSet(stripe, current, next)) {
+                    return true;
+                }
+            }
+        }
+
+        private int stripe(String key, int from) {
+            long hash = seed;
+            for (int i = from; i < key.length(); i++) {
+                hash = (hash ^ Character.toLowerCase(key.charAt(i))) * 0x100000001B3L;
+            }
+            hash ^= hash >>> 32;
+            hash *= 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & mask;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+// Node-local Bloom filter of live mailbox addresses.
+// Lets inbound routing reject mail for addresses that never existed without touching DynamoDB.
+package com.disposablemailservice.service;
+
+import com.disposablemailservice.repository.MailboxStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter cannot forget, so addresses of deleted mailboxes stay in it until the next
+ * periodic rebuild from the table. That only costs a wasted lookup; a false negative would lose
+ * mail, so until the first rebuild has finished every address is let through.
+ */
+@Component
+public class MailboxAddressFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(MailboxAddressFilter.class);
+
+    private final MailboxStore mailboxStore;
+    private final long expectedAddresses;
+    private final double falsePositiveRate;
+    private final Counter rejected;
+    private final Counter passed;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private volatile Bits current;
+    // Non-null while a rebuild is scanning; adds go to both so nothing created mid-scan is lost
+    private volatile Bits next;
+    private volatile boolean ready;
+
+    public MailboxAddressFilter(MailboxStore mailboxStore,
+                                MeterRegistry meterRegistry,
+                                @Value("${app.address-filter.expected-addresses:1000000}") long expectedAddresses,
+                                @Value("${app.address-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.mailboxStore = mailboxStore;
+        this.expectedAddresses = expectedAddresses;
+        this.falsePositiveRate = falsePositiveRate;
+        this.current = Bits.sizedFor(expectedAddresses, falsePositiveRate);
+        this.rejected = Counter.builder("burnbox.address.filter.lookups").tag("result", "rejected").register(meterRegistry);
+        this.passed = Counter.builder("burnbox.address.filter.lookups").tag("result", "passed").register(meterRegistry);
+        Gauge.builder("burnbox.address.filter.entries", this, filter -> filter.current.entries.get())
+                .description("Addresses inserted into the filter since the last rebuild")
+                .register(meterRegistry);
+    }
+
+    public void add(String address) {
+        if (address == null) {
+            return;
+        }
+        long hash = hash(normalize(address));
+        current.add(hash);
+        Bits building = next;
+        if (building != null) {
+            building.add(hash);
+        }
+    }
+
+    /**
+     * Returns false only when the address is certainly not a live mailbox.
+     */
+    public boolean mightContain(String address) {
+        if (address == null) {
+            rejected.increment();
+            return false;
+        }
+        boolean result = !ready || current.mightContain(hash(normalize(address)));
+        (result ? passed : rejected).increment();
+        return result;
+    }
+
+    @Async
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        rebuild();
+    }
+
+    // Drops addresses of deleted and expired mailboxes, which the filter has no other way to forget
+    @Scheduled(fixedDelayString = "${app.address-filter.rebuild-interval-ms:3600000}",
+               initialDelayString = "${app.address-filter.rebuild-interval-ms:3600000}")
+    public void rebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            // Size for the larger of the configured estimate and twice the last observed population
+            Bits building = Bits.sizedFor(Math.max(expectedAddresses, current.entries.get() * 2), falsePositiveRate);
+            next = building;
+            Instant now = Instant.now();
+            mailboxStore.forEachAddress((address, expiryTime) -> {
+                if (expiryTime == null || expiryTime.isAfter(now)) {
+                    building.add(hash(normalize(address)));
+                }
+            });
+            current = building;
+            ready = true;
+            log.info("Address filter rebuilt with {} addresses in {} ms",
+                    building.entries.get(), (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.error("Address filter rebuild failed, keeping the previous filter", e);
+        } finally {
+            next = null;
+            rebuilding.set(false);
+        }
+    }
+
+    static String normalize(String address) {
+        return address.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // 64-bit FNV-1a followed by the murmur3 finaliser to spread the bits
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static final class Bits {
+        private final AtomicLongArray words;
+        private final long numBits;
+        private final int numHashes;
+        private final AtomicLong entries = new AtomicLong();
+
+        private Bits(long numBits, int numHashes) {
+            this.words = new AtomicLongArray((int) ((numBits + 63) >>> 6));
+            this.numBits = numBits;
+            this.numHashes = numHashes;
+        }
+
+        static Bits sizedFor(long expected, double falsePositiveRate) {
+            long n = Math.max(1, expected);
+            long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            bits = Math.min(Math.max(bits, 64), (long) Integer.MAX_VALUE * 64);
+            int hashes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+            return new Bits(bits, hashes);
+        }
+
+        // Kirsch-Mitzenmacher: the k probe positions are derived from two halves of one 64-bit hash
+        void add(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= numHashes; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, numBits);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long value;
+                do {
+                    value = words.get(word);
+                    if ((value & mask) != 0) {
+                        break;
+                    }
+                } while (!words.compareAndSet(word, value, value | mask));
+            }
+            entries.incrementAndGet();
+        }
+
+        boolean mightContain(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 1; i <= numHashes; i++) {
+                long bit = Math.floorMod(h1 + (long) i * h2, numBits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
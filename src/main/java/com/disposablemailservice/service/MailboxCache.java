@@ -0,0 +1,174 @@
+// Bounded, node-local read-through cache for Mailbox items keyed by mailbox id.
+// Entries live for a short TTL and never past the mailbox's own expiryTime.
+package com.disposablemailservice.service;
+
+import com.disposablemailservice.model.Mailbox;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * The cache is split into independently locked LRU segments chosen by id hash, so concurrent
+ * lookups of different mailboxes rarely wait on each other; each segment holds its share of
+ * max-size, which makes eviction approximately rather than globally LRU. Mailbox is mutable, so the
+ * cache stores its own copy and hands out copies: a caller editing a mailbox it got from here
+ * cannot change what the next caller reads.
+ */
+@Component
+public class MailboxCache {
+
+    private static final String CACHE_NAME = "mailboxes";
+
+    private final Duration ttl;
+    private final Clock clock;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    public MailboxCache(MeterRegistry meterRegistry,
+                        @Value("${app.cache.mailbox.max-size:10000}") int maxSize,
+                        @Value("${app.cache.mailbox.ttl-seconds:30}") long ttlSeconds,
+                        @Value("${app.cache.mailbox.segments:16}") int segments) {
+        if (segments <= 0) {
+            throw new IllegalArgumentException("Mailbox cache segments must be positive: " + segments);
+        }
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.clock = Clock.systemUTC();
+        // Rounded up to a power of two so the segment is a mask, not a division
+        int count = segments == 1 ? 1 : Integer.highestOneBit(segments - 1) << 1;
+        int perSegment = Math.max(1, (maxSize + count - 1) / count);
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            this.segments[i] = new Segment(perSegment);
+        }
+        this.segmentMask = count - 1;
+
+        // Same meter names and tags Micrometer's own cache binders use
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+                .tags("cache", CACHE_NAME, "result", "hit")
+                .description("Mailbox lookups served from the cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+                .tags("cache", CACHE_NAME, "result", "miss")
+                .description("Mailbox lookups that went to DynamoDB")
+                .register(meterRegistry);
+        FunctionCounter.builder("cache.evictions", evictions, LongAdder::sum)
+                .tags("cache", CACHE_NAME)
+                .description("Mailboxes evicted because the cache was full")
+                .register(meterRegistry);
+        Gauge.builder("cache.size", this, MailboxCache::size)
+                .tags("cache", CACHE_NAME)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached mailbox, or loads and caches it. Null results are not cached.
+     */
+    public Mailbox get(String id, Function<String, Mailbox> loader) {
+        Mailbox cached = getIfPresent(id);
+        if (cached != null) {
+            return cached;
+        }
+        Mailbox loaded = loader.apply(id);
+        put(loaded);
+        return loaded;
+    }
+
+    public Mailbox getIfPresent(String id) {
+        Instant now = clock.instant();
+        Segment segment = segmentFor(id);
+        Entry entry;
+        synchronized (segment) {
+            entry = segment.get(id);
+            if (entry != null && !entry.expiresAt.isAfter(now)) {
+                segment.remove(id);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        // Copied outside the lock; the stored instance itself is never modified
+        return Mailbox.copyOf(entry.mailbox);
+    }
+
+    public void put(Mailbox mailbox) {
+        if (mailbox == null || mailbox.getId() == null) {
+            return;
+        }
+        Instant now = clock.instant();
+        Instant expiresAt = now.plus(ttl);
+        if (mailbox.getExpiryTime() != null && mailbox.getExpiryTime().isBefore(expiresAt)) {
+            expiresAt = mailbox.getExpiryTime();
+        }
+        if (!expiresAt.isAfter(now)) {
+            return;
+        }
+        Entry entry = new Entry(Mailbox.copyOf(mailbox), expiresAt);
+        Segment segment = segmentFor(mailbox.getId());
+        synchronized (segment) {
+            segment.put(mailbox.getId(), entry);
+        }
+    }
+
+    public void invalidate(String id) {
+        Segment segment = segmentFor(id);
+        synchronized (segment) {
+            segment.remove(id);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String id) {
+        int hash = id.hashCode();
+        // Spread the high bits down, as HashMap does, before masking
+        return segments[(hash ^ (hash >>> 16)) & segmentMask];
+    }
+
+    // Access-ordered so the least recently used entry of the segment is evicted once it is full
+    private final class Segment extends LinkedHashMap<String, Entry> {
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(Math.min(capacity, 1024), 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > capacity) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private record Entry(Mailbox mailbox, Instant expiresAt) {
+    }
+}
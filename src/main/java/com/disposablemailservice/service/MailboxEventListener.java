@@ -0,0 +1,78 @@
+// Consumes mailbox-events so every node's address filter learns about mailboxes created on other nodes.
+// Only active when Kafka is enabled; without it each node relies on its own creates plus the periodic rebuild.
+package com.disposablemailservice.service;
+
+import com.disposablemailservice.model.events.MailboxCreatedEvent;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+@Component
+@ConditionalOnProperty(name = "app.kafka.enabled", havingValue = "true")
+public class MailboxEventListener {
+
+    private static final Logger log = LoggerFactory.getLogger(MailboxEventListener.class);
+
+    private final MailboxAddressFilter addressFilter;
+    private final ObjectMapper objectMapper;
+
+    public MailboxEventListener(MailboxAddressFilter addressFilter, ObjectMapper objectMapper) {
+        this.addressFilter = addressFilter;
+        this.objectMapper = objectMapper;
+    }
+
+    // A random group id per process: every node needs every event, not a share of the partitions
+    @KafkaListener(topics = EventPublisherService.MAILBOX_EVENTS_TOPIC,
+                   groupId = "${app.address-filter.group-id-prefix:burnbox-address-filter}-${random.uuid}")
+    public void onMailboxEvent(Object payload) {
+        if (payload instanceof org.apache.kafka.clients.consumer.ConsumerRecord<?, ?> record) {
+            payload = record.value();
+        }
+        // Typed consumers (JsonDeserializer honouring the producer's type headers) hand us the event itself
+        if (payload instanceof MailboxCreatedEvent created) {
+            if (created.getAddress() != null) {
+                addressFilter.add(created.getAddress());
+            }
+            return;
+        }
+        Map<String, Object> event = toMap(payload);
+        if (event == null) {
+            return;
+        }
+        // Deletes and expiries cannot be removed from a Bloom filter; the periodic rebuild drops them
+        if ("MAILBOX_CREATED".equals(event.get("eventType")) && event.get("address") instanceof String address) {
+            addressFilter.add(address);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> toMap(Object payload) {
+        if (payload == null) {
+            return null;
+        }
+        if (payload instanceof Map<?, ?> map) {
+            return (Map<String, Object>) map;
+        }
+        if (payload instanceof String json) {
+            try {
+                return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() { });
+            } catch (Exception e) {
+                log.warn("Ignoring unreadable mailbox event: {}", e.getMessage());
+            }
+            return null;
+        }
+        // Any other event class on the topic, e.g. MailboxExpiredEvent
+        try {
+            return objectMapper.convertValue(payload, new TypeReference<Map<String, Object>>() { });
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring unreadable mailbox event of type {}: {}", payload.getClass().getName(), e.getMessage());
+            return null;
+        }
+    }
+}
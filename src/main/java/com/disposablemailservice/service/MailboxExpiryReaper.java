@@ -0,0 +1,125 @@
+// Scheduled job that destroys mailboxes whose expiryTime has passed.
+// Walks the hourly expiryBucket index from the oldest undrained bucket up to the current hour.
+package com.disposablemailservice.service;
+
+import com.disposablemailservice.model.Mailbox;
+import com.disposablemailservice.model.PagedResult;
+import com.disposablemailservice.repository.MailboxStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+@Component
+@ConditionalOnProperty(name = "app.reaper.enabled", havingValue = "true", matchIfMissing = true)
+public class MailboxExpiryReaper {
+
+    private static final Logger log = LoggerFactory.getLogger(MailboxExpiryReaper.class);
+
+    private final MailboxStore mailboxStore;
+    private final MailboxPurgeService mailboxPurgeService;
+    private final Clock clock = Clock.systemUTC();
+    private final int pageSize;
+    private final int maxPerRun;
+    private final long minPurgeIntervalNanos;
+    private final int lookbackHours;
+    private final Counter reaped;
+    private final Counter failures;
+
+    // Start of the oldest hourly bucket that may still hold expired mailboxes
+    private Instant nextBucket;
+    private long lastPurgeNanos;
+
+    public MailboxExpiryReaper(MailboxStore mailboxStore, MailboxPurgeService mailboxPurgeService,
+                               MeterRegistry meterRegistry,
+                               @Value("${app.reaper.page-size:25}") int pageSize,
+                               @Value("${app.reaper.max-per-run:500}") int maxPerRun,
+                               @Value("${app.reaper.max-per-second:20}") int maxPerSecond,
+                               @Value("${app.reaper.lookback-hours:72}") int lookbackHours) {
+        this.mailboxStore = mailboxStore;
+        this.mailboxPurgeService = mailboxPurgeService;
+        this.pageSize = pageSize;
+        this.maxPerRun = maxPerRun;
+        this.minPurgeIntervalNanos = 1_000_000_000L / Math.max(1, maxPerSecond);
+        this.lookbackHours = lookbackHours;
+        this.reaped = Counter.builder("burnbox.reaper.mailboxes")
+                .description("Expired mailboxes destroyed by the reaper")
+                .register(meterRegistry);
+        this.failures = Counter.builder("burnbox.reaper.failures")
+                .description("Expired mailboxes the reaper failed to destroy and will retry")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.reaper.interval-ms:60000}", initialDelayString = "${app.reaper.initial-delay-ms:30000}")
+    public synchronized void reapExpiredMailboxes() {
+        Instant now = clock.instant();
+        Instant currentBucket = now.truncatedTo(ChronoUnit.HOURS);
+        if (nextBucket == null) {
+            nextBucket = currentBucket.minus(lookbackHours, ChronoUnit.HOURS);
+        }
+
+        int budget = maxPerRun;
+        boolean drainedSoFar = true;
+        for (Instant bucket = nextBucket; !bucket.isAfter(currentBucket) && budget > 0; bucket = bucket.plus(1, ChronoUnit.HOURS)) {
+            BucketResult result = reapBucket(Mailbox.expiryBucketOf(bucket), now, budget);
+            budget -= result.processed();
+            // Only move the start forward past buckets that are closed and fully drained
+            drainedSoFar = drainedSoFar && result.drained() && bucket.isBefore(currentBucket);
+            if (drainedSoFar) {
+                nextBucket = bucket.plus(1, ChronoUnit.HOURS);
+            }
+        }
+
+        int processed = maxPerRun - budget;
+        if (processed > 0) {
+            log.info("Reaper processed {} expired mailboxes, oldest pending bucket {}", processed, Mailbox.expiryBucketOf(nextBucket));
+        }
+    }
+
+    private BucketResult reapBucket(String bucket, Instant now, int budget) {
+        int processed = 0;
+        boolean failed = false;
+        String cursor = null;
+        do {
+            PagedResult<Mailbox> page = mailboxStore.findByExpiryBucket(bucket, now, Math.min(pageSize, budget - processed), cursor);
+            for (Mailbox mailbox : page.getItems()) {
+                throttle();
+                try {
+                    if (mailboxPurgeService.purgeExpired(mailbox) != null) {
+                        reaped.increment();
+                    }
+                } catch (Exception e) {
+                    failed = true;
+                    failures.increment();
+                    log.warn("Failed to reap expired mailbox {}: {}", mailbox.getId(), e.getMessage());
+                }
+                processed++;
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null && processed < budget);
+        return new BucketResult(processed, cursor == null && !failed);
+    }
+
+    private void throttle() {
+        long waitNanos = lastPurgeNanos + minPurgeIntervalNanos - System.nanoTime();
+        if (waitNanos > 0) {
+            try {
+                Thread.sleep(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lastPurgeNanos = System.nanoTime();
+    }
+
+    private record BucketResult(int processed, boolean drained) {
+    }
+}
@@ -0,0 +1,194 @@
+// Fires mailbox expiry close to the exact expiryTime using an in-process hierarchical timing wheel.
+// The wheel is rebuilt from the expiry bucket index at startup and topped up hourly; the reaper remains the backstop.
+package com.disposablemailservice.service;
+
+import com.disposablemailservice.model.Mailbox;
+import com.disposablemailservice.model.PagedResult;
+import com.disposablemailservice.repository.MailboxStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Component
+@ConditionalOnProperty(name = "app.expiry-wheel.enabled", havingValue = "true", matchIfMissing = true)
+public class MailboxExpiryScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(MailboxExpiryScheduler.class);
+
+    private final MailboxStore mailboxStore;
+    private final MailboxPurgeService mailboxPurgeService;
+    private final ExpiryTimingWheel wheel;
+    private final long tickMillis;
+    private final int batchSize;
+    private final int horizonHours;
+    private final ScheduledExecutorService ticker;
+    private final ThreadPoolExecutor purgeExecutor;
+    private final Counter shed;
+
+    // Start of the first hourly bucket not yet loaded into the wheel
+    private Instant loadedUntil;
+
+    public MailboxExpiryScheduler(MailboxStore mailboxStore, MailboxPurgeService mailboxPurgeService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${app.expiry-wheel.tick-ms:1000}") long tickMillis,
+                                  @Value("${app.expiry-wheel.batch-size:100}") int batchSize,
+                                  @Value("${app.expiry-wheel.horizon-hours:48}") int horizonHours,
+                                  @Value("${app.expiry-wheel.purge-threads:4}") int purgeThreads,
+                                  @Value("${app.expiry-wheel.purge-queue-capacity:1024}") int purgeQueueCapacity,
+                                  @Value("${app.expiry-wheel.initial-capacity:65536}") int initialCapacity) {
+        this.mailboxStore = mailboxStore;
+        this.mailboxPurgeService = mailboxPurgeService;
+        this.tickMillis = tickMillis;
+        this.batchSize = batchSize;
+        this.horizonHours = horizonHours;
+        this.wheel = new ExpiryTimingWheel(tickMillis, System.currentTimeMillis(), initialCapacity);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "expiry-wheel-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.shed = Counter.builder("burnbox.expiry.wheel.shed")
+                .description("Expiry batches dropped because the purge queue was full; the reaper purges them later")
+                .register(meterRegistry);
+        // A full queue sheds the batch rather than purging on the ticker thread: the mailboxes stay in
+        // their expiry bucket, so the reaper still gets to them, and ticking stays on time
+        this.purgeExecutor = new ThreadPoolExecutor(purgeThreads, purgeThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(purgeQueueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "expiry-wheel-purge");
+                    thread.setDaemon(true);
+                    return thread;
+                }, (runnable, executor) -> shed.increment());
+
+        Gauge.builder("burnbox.expiry.wheel.pending", this, MailboxExpiryScheduler::pending)
+                .description("Mailbox expiry timers held in the timing wheel")
+                .register(meterRegistry);
+    }
+
+    public void register(Mailbox mailbox) {
+        if (mailbox.getExpiryTime() == null) {
+            return;
+        }
+        synchronized (wheel) {
+            wheel.schedule(mailbox.getId(), mailbox.getExpiryTime().toEpochMilli());
+        }
+    }
+
+    public void cancel(String mailboxId) {
+        synchronized (wheel) {
+            wheel.cancel(mailboxId);
+        }
+    }
+
+    public int pending() {
+        synchronized (wheel) {
+            return wheel.size();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        synchronized (this) {
+            loadedUntil = Instant.now().truncatedTo(ChronoUnit.HOURS);
+        }
+        loadUpcomingBuckets();
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+        log.info("Expiry wheel started with {} pending timers", pending());
+    }
+
+    // Keeps the wheel populated horizonHours ahead, including mailboxes created on other replicas
+    @Scheduled(cron = "${app.expiry-wheel.reload-cron:0 5 * * * *}")
+    public synchronized void loadUpcomingBuckets() {
+        if (loadedUntil == null) {
+            return;
+        }
+        Instant horizon = Instant.now().truncatedTo(ChronoUnit.HOURS).plus(horizonHours, ChronoUnit.HOURS);
+        int loaded = 0;
+        while (loadedUntil.isBefore(horizon)) {
+            loaded += loadBucket(loadedUntil);
+            loadedUntil = loadedUntil.plus(1, ChronoUnit.HOURS);
+        }
+        if (loaded > 0) {
+            log.info("Loaded {} mailbox expiry timers, wheel now covers up to {}", loaded, loadedUntil);
+        }
+    }
+
+    private int loadBucket(Instant bucketStart) {
+        String bucket = Mailbox.expiryBucketOf(bucketStart);
+        Instant bucketEnd = bucketStart.plus(1, ChronoUnit.HOURS);
+        int loaded = 0;
+        String cursor = null;
+        try {
+            do {
+                PagedResult<Mailbox> page = mailboxStore.findByExpiryBucket(bucket, bucketEnd, 500, cursor);
+                for (Mailbox mailbox : page.getItems()) {
+                    register(mailbox);
+                    loaded++;
+                }
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+        } catch (Exception e) {
+            log.warn("Failed to load expiry bucket {} into the wheel, the reaper will cover it: {}", bucket, e.getMessage());
+        }
+        return loaded;
+    }
+
+    private void tick() {
+        try {
+            List<String> due;
+            synchronized (wheel) {
+                due = wheel.advance(System.currentTimeMillis());
+            }
+            for (int start = 0; start < due.size(); start += batchSize) {
+                List<String> batch = due.subList(start, Math.min(start + batchSize, due.size()));
+                purgeExecutor.execute(() -> expire(batch));
+            }
+        } catch (Exception e) {
+            log.error("Expiry wheel tick failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void expire(List<String> mailboxIds) {
+        Instant now = Instant.now();
+        for (String mailboxId : mailboxIds) {
+            try {
+                Mailbox mailbox = mailboxStore.findById(mailboxId);
+                if (mailbox == null || mailbox.getExpiryTime() == null) {
+                    continue;
+                }
+                if (mailbox.getExpiryTime().isAfter(now)) {
+                    // Expiry was extended since the timer was registered
+                    register(mailbox);
+                    continue;
+                }
+                // Every replica's wheel and reaper reach this mailbox; the claim lets one of them purge it
+                mailboxPurgeService.purgeExpired(mailbox);
+            } catch (Exception e) {
+                log.warn("Failed to expire mailbox {} on time, the reaper will retry: {}", mailboxId, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        purgeExecutor.shutdown();
+    }
+}
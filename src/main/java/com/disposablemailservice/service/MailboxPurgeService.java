@@ -0,0 +1,150 @@
+// Destroys a mailbox together with its messages and attachments.
+// Shared by user deletes, burn-after-read and the expiry reaper.
+package com.disposablemailservice.service;
+
+import com.disposablemailservice.model.Mailbox;
+import com.disposablemailservice.model.Message;
+import com.disposablemailservice.repository.MailboxStore;
+import com.disposablemailservice.repository.MessageBodyStore;
+import com.disposablemailservice.repository.MessageProjection;
+import com.disposablemailservice.repository.MessageStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@Service
+public class MailboxPurgeService {
+
+    private static final Logger log = LoggerFactory.getLogger(MailboxPurgeService.class);
+
+    private final MailboxStore mailboxStore;
+    private final MessageStore messageStore;
+    private final AttachmentStorageService attachmentStorageService;
+    private final MessageBodyStore bodyStore;
+    private final MailboxCache mailboxCache;
+    private final EventPublisherService eventPublisherService;
+    private final Duration claimDuration;
+
+    public MailboxPurgeService(MailboxStore mailboxStore, MessageStore messageStore,
+                               AttachmentStorageService attachmentStorageService, MessageBodyStore bodyStore,
+                               MailboxCache mailboxCache, EventPublisherService eventPublisherService,
+                               @Value("${app.expiry.purge-claim-seconds:300}") long claimSeconds) {
+        this.mailboxStore = mailboxStore;
+        this.messageStore = messageStore;
+        this.attachmentStorageService = attachmentStorageService;
+        this.bodyStore = bodyStore;
+        this.mailboxCache = mailboxCache;
+        this.eventPublisherService = eventPublisherService;
+        this.claimDuration = Duration.ofSeconds(claimSeconds);
+    }
+
+    /**
+     * Purges an expired mailbox if this caller wins the claim on it. The expiry wheel and the reaper run
+     * on every replica and find the same mailboxes, so without the claim each would purge each one.
+     * Returns null when another caller holds the claim or the mailbox is already gone.
+     */
+    public PurgeResult purgeExpired(Mailbox mailbox) {
+        Instant now = Instant.now();
+        if (!mailboxStore.claimForPurge(mailbox.getId(), now, now.plus(claimDuration))) {
+            log.debug("Mailbox {} is claimed by another purge or already gone", mailbox.getId());
+            return null;
+        }
+        return purge(mailbox);
+    }
+
+    /**
+     * Deletes messages, releasing their attachments and bodies, then the mailbox item. The mailbox is
+     * removed last with a conditional delete, so a purge interrupted half way is simply redone, and
+     * only the caller that actually removed the mailbox publishes MAILBOX_EXPIRED. A message stored
+     * while the purge runs either lands before the mailbox is gone and is caught by the second listing,
+     * or finds the mailbox gone when it updates the counters and purges itself.
+     */
+    public PurgeResult purge(Mailbox mailbox) {
+        String mailboxId = mailbox.getId();
+
+        DeletedMessages listed = deleteMessages(mailboxId);
+        boolean deleted = mailboxStore.deleteIfExists(mailboxId);
+        mailboxCache.invalidate(mailboxId);
+        DeletedMessages stragglers = deleteMessages(mailboxId);
+        DeletedMessages messages = new DeletedMessages(listed.messages() + stragglers.messages(),
+                listed.attachments() + stragglers.attachments());
+
+        if (deleted) {
+            eventPublisherService.publishMailboxExpired(mailbox, mailbox.getUserId(),
+                    messages.messages(), messages.attachments());
+        } else {
+            log.info("Mailbox {} was already removed by another purge, skipping MAILBOX_EXPIRED", mailboxId);
+        }
+        return new PurgeResult(deleted, messages.messages(), messages.attachments());
+    }
+
+    /**
+     * Purges run more than once for the same mailbox (reaper, expiry wheel, user deletes, retries),
+     * so references are only released for messages this call's delete actually removed: the returned
+     * old item proves it, exactly as in {@link #purgeMessage}. Messages without references carry
+     * nothing to release and go out in bulk.
+     */
+    private DeletedMessages deleteMessages(String mailboxId) {
+        List<String> unreferenced = new ArrayList<>();
+        List<String> attachmentKeys = new ArrayList<>();
+        List<String> bodyKeys = new ArrayList<>();
+        int messagesDeleted = 0;
+        for (Message listed : messageStore.findByMailboxId(mailboxId, MessageProjection.ATTACHMENTS)) {
+            if (listed.getAttachments() == null && listed.getBodyKey() == null) {
+                unreferenced.add(listed.getId());
+                continue;
+            }
+            Message deleted = messageStore.deleteById(mailboxId, listed.getId());
+            if (deleted == null) {
+                continue;
+            }
+            messagesDeleted++;
+            if (deleted.getAttachments() != null) {
+                attachmentKeys.addAll(deleted.getAttachments());
+            }
+            if (deleted.getBodyKey() != null) {
+                bodyKeys.add(deleted.getBodyKey());
+            }
+        }
+        if (!unreferenced.isEmpty()) {
+            messagesDeleted += messageStore.deleteAll(mailboxId, unreferenced);
+        }
+        int attachmentsDeleted = attachmentKeys.isEmpty() ? 0 : attachmentStorageService.releaseAll(attachmentKeys);
+        if (!bodyKeys.isEmpty()) {
+            bodyStore.releaseAll(bodyKeys);
+        }
+        return new DeletedMessages(messagesDeleted, attachmentsDeleted);
+    }
+
+    /**
+     * Deletes a single message with its S3 objects and takes it off the mailbox counters.
+     * Returns false if the message was already gone, in which case the counters are left alone.
+     */
+    public boolean purgeMessage(String mailboxId, String messageId) {
+        Message deleted = messageStore.deleteById(mailboxId, messageId);
+        if (deleted == null) {
+            return false;
+        }
+        if (deleted.getAttachments() != null) {
+            attachmentStorageService.releaseAll(deleted.getAttachments());
+        }
+        if (deleted.getBodyKey() != null) {
+            bodyStore.releaseAll(List.of(deleted.getBodyKey()));
+        }
+        mailboxStore.recordMessageRemoved(mailboxId, deleted.getSizeBytes());
+        mailboxCache.invalidate(mailboxId);
+        return true;
+    }
+
+    public record PurgeResult(boolean mailboxDeleted, int messagesDeleted, int attachmentsDeleted) {
+    }
+
+    private record DeletedMessages(int messages, int attachments) {
+    }
+}
@@ -7,27 +7,55 @@ import java.util.List;
 
 import com.disposablemailservice.model.Mailbox;
 import com.disposablemailservice.model.Message;
-import com.disposablemailservice.repository.MailboxRepository;
-import com.disposablemailservice.repository.MessageRepository;
+import com.disposablemailservice.model.PagedResult;
+import com.disposablemailservice.repository.MailboxAsyncStore;
+import com.disposablemailservice.repository.MailboxStore;
+import com.disposablemailservice.repository.MessageAsyncStore;
+import com.disposablemailservice.repository.MessageBodyStore;
+import com.disposablemailservice.repository.MessageProjection;
+import com.disposablemailservice.repository.MessageStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class MailboxService {
 
     private static final Logger log = LoggerFactory.getLogger(MailboxService.class);
-    private final MailboxRepository mailboxRepository;
-    private final MessageRepository messageRepository;
+    private static final int MAX_PAGE_SIZE = 100;
+    private final MailboxStore mailboxStore;
+    private final MessageStore messageStore;
+    private final MailboxAsyncStore mailboxAsyncStore;
+    private final MessageAsyncStore messageAsyncStore;
     private final EventPublisherService eventPublisherService;
+    private final MailboxCache mailboxCache;
+    private final MailboxPurgeService mailboxPurgeService;
+    private final ObjectProvider<MailboxExpiryScheduler> expirySchedulerProvider;
+    private final MessageBodyStore messageBodyStore;
+    private final MailboxAddressFilter addressFilter;
     
-    public MailboxService(MailboxRepository mailboxRepository, MessageRepository messageRepository, EventPublisherService eventPublisherService) {
-        this.mailboxRepository = mailboxRepository;
-        this.messageRepository = messageRepository;
+    public MailboxService(MailboxStore mailboxStore, MessageStore messageStore,
+                          MessageBodyStore messageBodyStore,
+                          MailboxAsyncStore mailboxAsyncStore, MessageAsyncStore messageAsyncStore,
+                          EventPublisherService eventPublisherService, MailboxCache mailboxCache,
+                          MailboxPurgeService mailboxPurgeService,
+                          ObjectProvider<MailboxExpiryScheduler> expirySchedulerProvider,
+                          MailboxAddressFilter addressFilter) {
+        this.mailboxStore = mailboxStore;
+        this.messageStore = messageStore;
+        this.messageBodyStore = messageBodyStore;
+        this.mailboxAsyncStore = mailboxAsyncStore;
+        this.messageAsyncStore = messageAsyncStore;
         this.eventPublisherService = eventPublisherService;
+        this.mailboxCache = mailboxCache;
+        this.mailboxPurgeService = mailboxPurgeService;
+        this.expirySchedulerProvider = expirySchedulerProvider;
+        this.addressFilter = addressFilter;
     }
     // private final S3Service s3Service;
 
@@ -62,7 +90,10 @@ public class MailboxService {
             log.info("🔥 [SERVICE STEP 9] Set burn after read: {}", burnAfterRead);
             
             log.info("💾 [SERVICE STEP 10] Saving mailbox to repository...");
-            Mailbox savedMailbox = mailboxRepository.save(mailbox);
+            Mailbox savedMailbox = mailboxStore.save(mailbox);
+            mailboxCache.put(savedMailbox);
+            addressFilter.add(savedMailbox.getAddress());
+            expirySchedulerProvider.ifAvailable(scheduler -> scheduler.register(savedMailbox));
             log.info("✅ [SERVICE STEP 11] Mailbox saved successfully with ID: {}", savedMailbox.getId());
             
             // Publish event
@@ -86,11 +117,43 @@ public class MailboxService {
         }
     }
 
+    /**
+     * Resolves an inbound recipient to a live mailbox. Addresses the Bloom filter has never seen are
+     * rejected without a DynamoDB call; the rest go through the address GSI.
+     */
+    public Optional<Mailbox> resolveByAddress(String address) {
+        return mightExist(address) ? findLiveByAddress(address) : Optional.empty();
+    }
+
+    /**
+     * In-memory check against the address Bloom filter: false means no mailbox has this address.
+     */
+    public boolean mightExist(String address) {
+        if (!addressFilter.mightContain(address)) {
+            log.debug("🚫 [SERVICE] Rejected mail for unknown address {}", address);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * The GSI half of {@link #resolveByAddress}, for callers that already asked {@link #mightExist}.
+     */
+    public Optional<Mailbox> findLiveByAddress(String address) {
+        Mailbox mailbox = mailboxStore.findByAddress(MailboxAddressFilter.normalize(address));
+        if (mailbox == null || (mailbox.getExpiryTime() != null && mailbox.getExpiryTime().isBefore(Instant.now()))) {
+            log.debug("📭 [SERVICE] No live mailbox for address {}", address);
+            return Optional.empty();
+        }
+        mailboxCache.put(mailbox);
+        return Optional.of(mailbox);
+    }
+
     public Optional<Mailbox> getMailbox(String id) {
         log.info("🔍 [SERVICE STEP 1] Looking up mailbox with ID: {}", id);
         
         try {
-            Mailbox mailbox = mailboxRepository.findById(id);
+            Mailbox mailbox = mailboxCache.get(id, mailboxStore::findById);
             
             if (mailbox != null) {
                 log.info("✅ [SERVICE STEP 2] Mailbox found:");
@@ -112,19 +175,21 @@ public class MailboxService {
     }
 
     public Optional<Mailbox> getMailboxForUser(String id, String userId) {
-        Mailbox mailbox = mailboxRepository.findById(id);
+        Mailbox mailbox = mailboxCache.get(id, mailboxStore::findById);
         if (mailbox != null && mailbox.getUserId().equals(userId)) {
             return Optional.of(mailbox);
         }
         return Optional.empty();
     }
 
-    public List<Mailbox> getAllMailboxesForUser(String userId) {
-        log.info("📋 [SERVICE STEP 1] Getting all mailboxes for user: {}", userId);
+    public PagedResult<Mailbox> getAllMailboxesForUser(String userId, int limit, String cursor) {
+        log.info("📋 [SERVICE STEP 1] Getting mailboxes for user: {} (limit={}, cursor={})", userId, limit, cursor != null);
         
         try {
-            log.info("🔍 [SERVICE STEP 2] Querying repository for user mailboxes...");
-            List<Mailbox> mailboxes = mailboxRepository.findByUserId(userId);
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            log.info("🔍 [SERVICE STEP 2] Querying userId index for a page of {} mailboxes...", pageSize);
+            PagedResult<Mailbox> page = mailboxStore.findByUserId(userId, pageSize, cursor);
+            List<Mailbox> mailboxes = page.getItems();
             
             log.info("📊 [SERVICE STEP 3] Found {} mailboxes for user {}", mailboxes.size(), userId);
             for (int i = 0; i < mailboxes.size(); i++) {
@@ -133,8 +198,8 @@ public class MailboxService {
                         i + 1, mb.getId(), mb.getAddress(), mb.getCreatedAt(), mb.getExpiryTime());
             }
             
-            log.info("✅ [SERVICE STEP 4] Successfully retrieved {} mailboxes", mailboxes.size());
-            return mailboxes;
+            log.info("✅ [SERVICE STEP 4] Successfully retrieved {} mailboxes, more available: {}", mailboxes.size(), page.hasMore());
+            return page;
         } catch (Exception e) {
             log.error("💥 [SERVICE ERROR] Failed to get mailboxes for user {}: {}", userId, e.getMessage());
             log.error("📍 [SERVICE ERROR] Stack trace:", e);
@@ -142,8 +207,8 @@ public class MailboxService {
         }
     }
 
-    public List<Message> getMessagesByMailboxId(String mailboxId, String userId) {
-        log.info("📨 [SERVICE STEP 1] Getting messages for mailbox: {}, user: {}", mailboxId, userId);
+    public PagedResult<Message> getMessagesByMailboxId(String mailboxId, String userId, int limit, String cursor, boolean newestFirst) {
+        log.info("📨 [SERVICE STEP 1] Getting messages for mailbox: {}, user: {} (limit={}, cursor={})", mailboxId, userId, limit, cursor != null);
         
         try {
             // Verify mailbox belongs to user
@@ -156,18 +221,20 @@ public class MailboxService {
             }
             
             log.info("✅ [SERVICE STEP 3] Mailbox ownership verified for user: {}", userId);
-            log.info("📮 [SERVICE STEP 4] Retrieving messages from repository...");
+            log.info("📮 [SERVICE STEP 4] Querying message summaries from repository...");
             
-            List<Message> messages = messageRepository.findByMailboxId(mailboxId);
+            int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+            PagedResult<Message> page = messageStore.findByMailboxId(mailboxId, MessageProjection.SUMMARY, newestFirst, pageSize, cursor);
+            List<Message> messages = page.getItems();
             
-            log.info("📊 [SERVICE STEP 5] Found {} messages for mailbox {}", messages.size(), mailboxId);
+            log.info("📊 [SERVICE STEP 5] Found {} messages for mailbox {}, more available: {}", messages.size(), mailboxId, page.hasMore());
             for (int i = 0; i < messages.size(); i++) {
                 Message msg = messages.get(i);
                 log.info("   📧 Message {}: ID={}, From={}, Subject={}, Received={}", 
                         i + 1, msg.getId(), msg.getFrom(), msg.getSubject(), msg.getReceivedAt());
             }
             
-            return messages;
+            return page;
         } catch (Exception e) {
             log.error("💥 [SERVICE ERROR] Failed to get messages for mailbox {}: {}", mailboxId, e.getMessage());
             log.error("📍 [SERVICE ERROR] Stack trace:", e);
@@ -175,6 +242,95 @@ public class MailboxService {
         }
     }
 
+    /**
+     * Reads the mailbox item straight from the table (one GetItem) and refreshes the cache with it.
+     * Used where the counters must be current across replicas, such as the status endpoint.
+     */
+    public Optional<Mailbox> refreshMailbox(String mailboxId) {
+        Mailbox mailbox = mailboxStore.findById(mailboxId);
+        if (mailbox == null) {
+            mailboxCache.invalidate(mailboxId);
+            return Optional.empty();
+        }
+        mailboxCache.put(mailbox);
+        return Optional.of(mailbox);
+    }
+
+    /**
+     * Counts a stored message against its mailbox. The cached copy is dropped so the next read sees the new counters.
+     * If the mailbox was purged meanwhile, the purge may have listed its messages before this one was
+     * written, so the message is purged here rather than left behind holding its references; returns
+     * false in that case.
+     */
+    public boolean recordMessageReceived(Message message) {
+        boolean counted = mailboxStore.recordMessageAdded(message.getMailboxId(), message.getSizeBytes(),
+                message.getReceivedAt() != null ? message.getReceivedAt() : Instant.now());
+        mailboxCache.invalidate(message.getMailboxId());
+        if (!counted) {
+            log.warn("⚠️ [SERVICE] Mailbox {} was purged while message {} was stored, removing the message",
+                    message.getMailboxId(), message.getId());
+            mailboxPurgeService.purgeMessage(message.getMailboxId(), message.getId());
+        }
+        return counted;
+    }
+
+    public boolean deleteMessage(String mailboxId, String messageId, String userId) {
+        log.info("🗑️ [SERVICE STEP 1] Deleting message {} in mailbox {} for user {}", messageId, mailboxId, userId);
+
+        if (getMailboxForUser(mailboxId, userId).isEmpty()) {
+            log.error("⛔ [SERVICE STEP 2] Access denied - mailbox {} not found or doesn't belong to user {}", mailboxId, userId);
+            throw new IllegalArgumentException("Mailbox not found or access denied");
+        }
+
+        if (!mailboxPurgeService.purgeMessage(mailboxId, messageId)) {
+            log.info("📭 [SERVICE STEP 3] Message {} was already gone", messageId);
+            return false;
+        }
+        log.info("✅ [SERVICE STEP 3] Message {} deleted", messageId);
+        return true;
+    }
+
+    public Optional<Message> getMessage(String mailboxId, String messageId, String userId) {
+        log.info("📨 [SERVICE STEP 1] Getting message {} in mailbox {} for user {}", messageId, mailboxId, userId);
+        
+        if (getMailboxForUser(mailboxId, userId).isEmpty()) {
+            log.error("⛔ [SERVICE STEP 2] Access denied - mailbox {} not found or doesn't belong to user {}", mailboxId, userId);
+            throw new IllegalArgumentException("Mailbox not found or access denied");
+        }
+        
+        Message message = messageBodyStore.resolve(messageStore.findById(mailboxId, messageId));
+        log.info("📬 [SERVICE STEP 2] Message {} found: {}", messageId, message != null);
+        return Optional.ofNullable(message);
+    }
+
+    // Non-blocking variants: these complete on SDK I/O threads, so request threads are released while DynamoDB responds
+
+    public CompletableFuture<Optional<Mailbox>> getMailboxAsync(String id) {
+        Mailbox cached = mailboxCache.getIfPresent(id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(Optional.of(cached));
+        }
+        return mailboxAsyncStore.findById(id).thenApply(mailbox -> {
+            mailboxCache.put(mailbox);
+            return Optional.ofNullable(mailbox);
+        });
+    }
+
+    public CompletableFuture<PagedResult<Mailbox>> getAllMailboxesForUserAsync(String userId, int limit, String cursor) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return mailboxAsyncStore.findByUserId(userId, pageSize, cursor);
+    }
+
+    /**
+     * Lists summaries for a mailbox the caller has already loaded and checked ownership of, so the
+     * request costs one Query and no second mailbox lookup.
+     */
+    public CompletableFuture<PagedResult<Message>> getMessagesAsync(Mailbox mailbox, int limit, String cursor,
+                                                                   boolean newestFirst) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return messageAsyncStore.findByMailboxId(mailbox.getId(), MessageProjection.SUMMARY, newestFirst, pageSize, cursor);
+    }
+
     public void deleteMailbox(String id, String userId) {
         log.info("🗑️ [SERVICE STEP 1] Starting mailbox deletion: {}, user: {}", id, userId);
         
@@ -192,49 +348,14 @@ public class MailboxService {
             log.info("   📧 Address: {}", mailboxToDelete.getAddress());
             log.info("   👤 Owner: {}", mailboxToDelete.getUserId());
             
-            // Get message count for event
-            log.info("📊 [SERVICE STEP 4] Counting messages to delete...");
-            List<Message> messages = messageRepository.findByMailboxId(id);
-            int messagesDeleted = messages.size();
-            log.info("📨 [SERVICE STEP 5] Found {} messages to delete", messagesDeleted);
-            
-            // Delete S3 attachments
-            log.info("📎 [SERVICE STEP 6] Processing attachments for deletion...");
-            int attachmentsDeleted = 0;
-            for (Message message : messages) {
-                if (message.getAttachments() != null && !message.getAttachments().isEmpty()) {
-                    log.info("📎 [SERVICE STEP 7] Message {} has {} attachments", 
-                            message.getId(), message.getAttachments().size());
-                    for (String attachmentId : message.getAttachments()) {
-                        try {
-                            log.info("🗑️ [SERVICE STEP 8] Deleting attachment: {}", attachmentId);
-                            // s3Service.deleteAttachment(id, message.getId(), attachmentId);
-                            attachmentsDeleted++;
-                            log.info("✅ [SERVICE STEP 9] Attachment deleted: {}", attachmentId);
-                        } catch (Exception e) {
-                            log.warn("⚠️ [SERVICE WARNING] Failed to delete attachment {} for message {}: {}", 
-                                    attachmentId, message.getId(), e.getMessage());
-                        }
-                    }
-                }
-            }
-            log.info("📎 [SERVICE STEP 10] Processed {} attachments for deletion", attachmentsDeleted);
-            
-            // Delete messages and mailbox
-            log.info("🗑️ [SERVICE STEP 11] Deleting messages from repository...");
-            messageRepository.deleteByMailboxId(id);
-            log.info("✅ [SERVICE STEP 12] Messages deleted successfully");
-            
-            log.info("🗑️ [SERVICE STEP 13] Deleting mailbox from repository...");
-            mailboxRepository.deleteById(id);
-            log.info("✅ [SERVICE STEP 14] Mailbox deleted successfully");
-            
-            // Publish event
-            log.info("📡 [SERVICE STEP 15] Publishing MAILBOX_EXPIRED event...");
-            eventPublisherService.publishMailboxExpired(mailboxToDelete, userId, messagesDeleted, attachmentsDeleted);
-            log.info("📢 [SERVICE STEP 16] Event published successfully");
+            log.info("🗑️ [SERVICE STEP 4] Purging attachments, messages and mailbox...");
+            MailboxPurgeService.PurgeResult result = mailboxPurgeService.purge(mailboxToDelete);
+            expirySchedulerProvider.ifAvailable(scheduler -> scheduler.cancel(id));
+            int messagesDeleted = result.messagesDeleted();
+            int attachmentsDeleted = result.attachmentsDeleted();
+            log.info("✅ [SERVICE STEP 5] Purge finished, mailbox removed by this request: {}", result.mailboxDeleted());
             
-            log.info("🎉 [SERVICE STEP 17] Mailbox deletion completed successfully:");
+            log.info("🎉 [SERVICE STEP 6] Mailbox deletion completed successfully:");
             log.info("   📦 Mailbox ID: {}", id);
             log.info("   👤 User ID: {}", userId);
             log.info("   📨 Messages deleted: {}", messagesDeleted);
@@ -0,0 +1,212 @@
+// Walks a MIME tree once and sorts its leaves into the text body, the HTML body and attachments.
+// Text parts are decoded exactly once with their declared charset; attachments are left unread for streaming.
+package com.disposablemailservice.service;
+
+import jakarta.mail.MessagingException;
+import jakarta.mail.Multipart;
+import jakarta.mail.Part;
+import jakarta.mail.internet.ContentType;
+import jakarta.mail.internet.MimeUtility;
+import jakarta.mail.internet.ParseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decoding is done here rather than through {@code Part.getContent()}: an unknown or misspelled
+ * charset falls back to UTF-8 instead of failing the whole message, and the raw bytes are read
+ * straight from the part's stream without the activation framework's intermediate copies.
+ * Nested messages (message/rfc822) are kept as attachments, not mined for a body. The body is the
+ * first inline text part together with its siblings in the same multipart/alternative; any other
+ * inline text is kept as an attachment rather than silently dropped.
+ */
+final class MimeWalker {
+
+    // Guards against pathological nesting in hostile mail
+    private static final int MAX_DEPTH = 32;
+    private static final String[] RAW_TEXT_ELEMENTS = {"script", "style"};
+
+    private MimeWalker() {
+    }
+
+    record Content(String plain, String html, List<Part> attachments) {
+
+        // The body to store: the plain-text alternative when there is one, HTML otherwise
+        String body() {
+            return plain != null ? plain : html;
+        }
+    }
+
+    static Content walk(Part root) throws MessagingException, IOException {
+        Collector collector = new Collector();
+        collector.visit(root, 0, null);
+        return new Content(collector.plain, collector.html, collector.attachments);
+    }
+
+    /**
+     * Returns at most maxChars of readable text for the inbox list: the plain body with whitespace
+     * collapsed, or the HTML body with tags, scripts and styles removed.
+     */
+    static String preview(Content content, int maxChars) {
+        if (content.plain() != null) {
+            return collapse(content.plain(), false, maxChars);
+        }
+        return content.html() == null ? null : collapse(content.html(), true, maxChars);
+    }
+
+    private static final class Collector {
+        private String plain;
+        private String html;
+        // The multipart/alternative the body came from, or the body part itself when it had no alternatives
+        private Object bodyGroup;
+        private final List<Part> attachments = new ArrayList<>();
+
+        void visit(Part part, int depth, Multipart alternatives) throws MessagingException, IOException {
+            if (part.isMimeType("multipart/*") && depth < MAX_DEPTH) {
+                Multipart multipart = (Multipart) part.getContent();
+                // Representations nested under an alternative (e.g. multipart/related HTML) stay in its group
+                Multipart group = part.isMimeType("multipart/alternative") ? multipart : alternatives;
+                for (int i = 0; i < multipart.getCount(); i++) {
+                    visit(multipart.getBodyPart(i), depth + 1, group);
+                }
+                return;
+            }
+
+            boolean attachment = Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition());
+            boolean isPlain = !attachment && part.isMimeType("text/plain");
+            boolean isHtml = !attachment && !isPlain && part.isMimeType("text/html");
+            if (!isPlain && !isHtml) {
+                attachments.add(part);
+                return;
+            }
+
+            if (bodyGroup == null) {
+                bodyGroup = alternatives != null ? alternatives : part;
+            } else if (alternatives == null || alternatives != bodyGroup) {
+                // A second inline text, such as a forwarded note or a list footer: kept, not dropped
+                attachments.add(part);
+                return;
+            }
+            if (isPlain && plain == null) {
+                plain = decode(part);
+            } else if (isHtml && html == null) {
+                html = decode(part);
+            }
+            // Anything else is another rendering of the body already taken from this alternative
+        }
+    }
+
+    private static String decode(Part part) throws MessagingException, IOException {
+        try (InputStream in = part.getInputStream()) {
+            return new String(in.readAllBytes(), charsetOf(part));
+        }
+    }
+
+    private static Charset charsetOf(Part part) throws MessagingException {
+        String declared = null;
+        try {
+            declared = new ContentType(part.getContentType()).getParameter("charset");
+        } catch (ParseException e) {
+            // Malformed Content-Type: treat as undeclared
+        }
+        if (declared == null) {
+            return StandardCharsets.UTF_8;
+        }
+        try {
+            return Charset.forName(MimeUtility.javaCharset(declared.trim()));
+        } catch (IllegalArgumentException e) {
+            return StandardCharsets.UTF_8;
+        }
+    }
+
+    // Single pass: skips markup when asked, folds runs of whitespace, stops as soon as maxChars are kept
+    private static String collapse(String text, boolean html, int maxChars) {
+        StringBuilder out = new StringBuilder(Math.min(maxChars, text.length()));
+        boolean pendingSpace = false;
+        int i = 0;
+        while (i < text.length() && out.length() < maxChars) {
+            char c = text.charAt(i);
+            if (html && c == '<') {
+                i = skipTag(text, i);
+                pendingSpace = true;
+                continue;
+            }
+            if (html && c == '&') {
+                int end = text.indexOf(';', i);
+                if (end > i && end - i <= 8) {
+                    String decoded = entity(text.substring(i + 1, end));
+                    if (" ".equals(decoded)) {
+                        pendingSpace = true;
+                        i = end + 1;
+                        continue;
+                    }
+                    if (decoded != null) {
+                        if (pendingSpace && out.length() > 0) {
+                            out.append(' ');
+                        }
+                        pendingSpace = false;
+                        out.append(decoded);
+                        i = end + 1;
+                        continue;
+                    }
+                }
+            }
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                pendingSpace = true;
+            } else {
+                if (pendingSpace && out.length() > 0) {
+                    out.append(' ');
+                }
+                pendingSpace = false;
+                out.append(c);
+            }
+            i++;
+        }
+        if (out.length() > maxChars) {
+            // An entity can push past the limit by a few characters
+            out.setLength(maxChars);
+        }
+        return out.length() == 0 ? null : out.toString();
+    }
+
+    // Returns the index after the tag; script and style elements are skipped with their contents
+    private static int skipTag(String text, int start) {
+        int end = text.indexOf('>', start);
+        if (end < 0) {
+            return text.length();
+        }
+        for (String element : RAW_TEXT_ELEMENTS) {
+            if (text.regionMatches(true, start + 1, element, 0, element.length())) {
+                int close = indexOfIgnoreCase(text, "</" + element, end);
+                int closeEnd = close < 0 ? -1 : text.indexOf('>', close);
+                return closeEnd < 0 ? text.length() : closeEnd + 1;
+            }
+        }
+        return end + 1;
+    }
+
+    private static int indexOfIgnoreCase(String text, String needle, int from) {
+        for (int i = from; i <= text.length() - needle.length(); i++) {
+            if (text.regionMatches(true, i, needle, 0, needle.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String entity(String name) {
+        return switch (name) {
+            case "amp" -> "&";
+            case "lt" -> "<";
+            case "gt" -> ">";
+            case "quot" -> "\"";
+            case "apos", "#39" -> "'";
+            case "nbsp" -> " ";
+            default -> null;
+        };
+    }
+}
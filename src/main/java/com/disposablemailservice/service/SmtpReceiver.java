@@ -0,0 +1,315 @@
+// Optional embedded SMTP listener that takes mail straight from sending servers, skipping SES and SNS.
+// One selector thread runs every connection; mailbox lookups and storage happen on a small worker pool.
+package com.disposablemailservice.service;
+
+import com.disposablemailservice.model.Mailbox;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Memory per connection is bounded by the line buffer: DATA is unstuffed straight into a spool file
+ * and parsed from disk by {@link EmailService#handleSpooledMessage}, the same path SNS deliveries
+ * take. Unknown recipients are refused at RCPT TO, so mail for dead addresses is never transferred,
+ * and 250 is only sent after the message is stored, so a sender never gets an ack for mail we lost.
+ */
+@Component
+@ConditionalOnProperty(name = "app.smtp.enabled", havingValue = "true")
+public class SmtpReceiver {
+
+    private static final Logger log = LoggerFactory.getLogger(SmtpReceiver.class);
+
+    private final MailboxService mailboxService;
+    private final EmailService emailService;
+    private final IngestionRateLimiter rateLimiter;
+    private final SmtpSession.Limits limits;
+    private final String bindAddress;
+    private final int port;
+    private final int maxConnections;
+    private final long idleTimeoutNanos;
+    private final Path spoolDir;
+    private final ThreadPoolExecutor workers;
+
+    // Work finished on the pool, applied to its session on the selector thread
+    private final ConcurrentLinkedQueue<Runnable> completions = new ConcurrentLinkedQueue<>();
+    private final Set<SmtpSession> sessions = new HashSet<>();
+    private final AtomicInteger openConnections = new AtomicInteger();
+
+    private final Counter refusedConnections;
+    private final Counter acceptedRecipients;
+    private final Counter rejectedRecipients;
+    private final Timer stored;
+    private final Timer failed;
+
+    private Selector selector;
+    private ServerSocketChannel server;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    public SmtpReceiver(MailboxService mailboxService, EmailService emailService, IngestionRateLimiter rateLimiter,
+                        MeterRegistry meterRegistry,
+                        @Value("${app.smtp.bind-address:0.0.0.0}") String bindAddress,
+                        @Value("${app.smtp.port:2525}") int port,
+                        @Value("${app.smtp.hostname:${app.email.domain:localhost}}") String hostname,
+                        @Value("${app.smtp.max-connections:500}") int maxConnections,
+                        @Value("${app.smtp.line-buffer-bytes:4096}") int lineBufferBytes,
+                        @Value("${app.smtp.max-message-bytes:26214400}") long maxMessageBytes,
+                        @Value("${app.smtp.max-recipients:50}") int maxRecipients,
+                        @Value("${app.smtp.idle-timeout-seconds:60}") long idleTimeoutSeconds,
+                        @Value("${app.smtp.workers:16}") int workerThreads,
+                        @Value("${app.smtp.worker-queue-capacity:1000}") int workerQueueCapacity,
+                        @Value("${app.ingest.spool-dir:${java.io.tmpdir}}") String spoolDir) {
+        this.mailboxService = mailboxService;
+        this.emailService = emailService;
+        this.rateLimiter = rateLimiter;
+        this.limits = new SmtpSession.Limits(hostname, lineBufferBytes, maxMessageBytes, maxRecipients);
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.maxConnections = maxConnections;
+        this.idleTimeoutNanos = TimeUnit.SECONDS.toNanos(idleTimeoutSeconds);
+        this.spoolDir = Paths.get(spoolDir);
+
+        AtomicInteger threadIds = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workerQueueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "smtp-worker-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+
+        this.refusedConnections = Counter.builder("burnbox.smtp.connections.refused")
+                .description("Connections turned away because the connection limit was reached")
+                .register(meterRegistry);
+        this.acceptedRecipients = Counter.builder("burnbox.smtp.recipients").tag("result", "accepted").register(meterRegistry);
+        this.rejectedRecipients = Counter.builder("burnbox.smtp.recipients").tag("result", "rejected").register(meterRegistry);
+        this.stored = Timer.builder("burnbox.smtp.delivery")
+                .description("Time from the end of DATA until the message is stored and visible")
+                .tag("result", "stored")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.failed = Timer.builder("burnbox.smtp.delivery").tag("result", "failed").register(meterRegistry);
+        Gauge.builder("burnbox.smtp.connections", openConnections, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("burnbox.smtp.worker.queue.depth", workers, pool -> pool.getQueue().size()).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() throws IOException {
+        selector = Selector.open();
+        server = ServerSocketChannel.open();
+        server.configureBlocking(false);
+        server.bind(new InetSocketAddress(bindAddress, port), 128);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+        selectorThread = new Thread(this::run, "smtp-selector");
+        selectorThread.start();
+        log.info("SMTP receiver listening on {}:{}", bindAddress, port);
+    }
+
+    private void run() {
+        long lastIdleCheck = System.nanoTime();
+        while (running) {
+            try {
+                selector.select(1000);
+                Runnable completion;
+                while ((completion = completions.poll()) != null) {
+                    completion.run();
+                }
+
+                Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+                while (selected.hasNext()) {
+                    SelectionKey key = selected.next();
+                    selected.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    SmtpSession session = (SmtpSession) key.attachment();
+                    if (key.isWritable()) {
+                        session.onWritable();
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        session.onReadable();
+                    }
+                }
+
+                long now = System.nanoTime();
+                if (now - lastIdleCheck > TimeUnit.SECONDS.toNanos(1)) {
+                    lastIdleCheck = now;
+                    for (SmtpSession session : new ArrayList<>(sessions)) {
+                        if (session.idleSince(now) > idleTimeoutNanos) {
+                            session.timeOut();
+                        }
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("SMTP selector loop error", e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        if (sessions.size() >= maxConnections) {
+            refusedConnections.increment();
+            // Best effort: the greeting fits in the socket buffer of a fresh connection
+            channel.write(ByteBuffer.wrap("421 4.7.0 Too many connections, try again later\r\n".getBytes(StandardCharsets.US_ASCII)));
+            channel.close();
+            return;
+        }
+        SmtpSession session = new SmtpSession(this, channel, limits);
+        session.open(channel.register(selector, SelectionKey.OP_READ, session));
+        sessions.add(session);
+        openConnections.set(sessions.size());
+    }
+
+    void sessionClosed(SmtpSession session) {
+        sessions.remove(session);
+        openConnections.set(sessions.size());
+    }
+
+    Path createSpoolFile() throws IOException {
+        return Files.createTempFile(spoolDir, "smtp-", ".eml");
+    }
+
+    // Cheap enough for the selector thread: one hash and at most a CAS
+    boolean admitSender(String senderAddress) {
+        return rateLimiter.admitSender(senderAddress);
+    }
+
+    /**
+     * The address filter and the rate limit are checked on the selector thread, both in memory; only
+     * known addresses under their limit cost a lookup on the pool. A full pool is a temporary failure
+     * the sender retries.
+     */
+    void resolveRecipient(SmtpSession session, String address) {
+        if (!mailboxService.mightExist(address)) {
+            rejectedRecipients.increment();
+            post(() -> session.recipientResolved(null, false));
+            return;
+        }
+        if (!rateLimiter.admitRecipient(address)) {
+            post(session::recipientThrottled);
+            return;
+        }
+        try {
+            workers.execute(() -> {
+                Optional<Mailbox> mailbox;
+                try {
+                    mailbox = mailboxService.findLiveByAddress(address);
+                } catch (RuntimeException e) {
+                    log.warn("Recipient lookup for {} failed: {}", address, e.getMessage());
+                    post(() -> session.recipientResolved(null, true));
+                    return;
+                }
+                (mailbox.isPresent() ? acceptedRecipients : rejectedRecipients).increment();
+                post(() -> session.recipientResolved(mailbox.orElse(null), false));
+            });
+        } catch (RejectedExecutionException e) {
+            post(() -> session.recipientResolved(null, true));
+        }
+    }
+
+    void deliver(SmtpSession session, Path spool, Collection<Mailbox> mailboxes) {
+        long start = System.nanoTime();
+        try {
+            workers.execute(() -> {
+                SmtpSession.Outcome outcome;
+                try {
+                    emailService.handleSpooledMessage(spool, mailboxes);
+                    outcome = SmtpSession.Outcome.STORED;
+                } catch (MessagingException e) {
+                    log.info("Refusing unparseable SMTP message: {}", e.getMessage());
+                    outcome = SmtpSession.Outcome.REJECTED;
+                } catch (IOException | RuntimeException e) {
+                    log.error("Failed to store SMTP message", e);
+                    outcome = SmtpSession.Outcome.DEFERRED;
+                } finally {
+                    deleteQuietly(spool);
+                }
+                (outcome == SmtpSession.Outcome.STORED ? stored : failed)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                SmtpSession.Outcome result = outcome;
+                post(() -> session.deliveryFinished(result));
+            });
+        } catch (RejectedExecutionException e) {
+            deleteQuietly(spool);
+            post(() -> session.deliveryFinished(SmtpSession.Outcome.DEFERRED));
+        }
+    }
+
+    void post(Runnable completion) {
+        completions.add(completion);
+        selector.wakeup();
+    }
+
+    static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete spool file {}: {}", path, e.getMessage());
+        }
+    }
+
+    // Stops accepting, lets in-flight deliveries finish, then drops the remaining connections
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+        workers.shutdown();
+        workers.awaitTermination(30, TimeUnit.SECONDS);
+        for (SmtpSession session : new ArrayList<>(sessions)) {
+            session.close();
+        }
+        try {
+            server.close();
+            selector.close();
+        } catch (IOException e) {
+            log.warn("Error closing SMTP listener: {}", e.getMessage());
+        }
+    }
+}
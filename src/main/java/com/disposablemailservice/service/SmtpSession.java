@@ -0,0 +1,475 @@
+// Protocol state for one SMTP connection, driven entirely by the SmtpReceiver selector thread.
+// Implements the receiving subset of RFC 5321 with PIPELINING; commands are handled strictly in order.
+package com.disposablemailservice.service;
+
+import com.disposablemailservice.model.Mailbox;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A command that needs a worker (RCPT TO lookups, storing DATA) parks the session: reads stop until
+ * the result comes back, and any pipelined commands wait in the line buffer. Reads also stop while
+ * more than {@link #MAX_PENDING_REPLY_BYTES} of replies are unsent, so a client that never reads
+ * cannot make us buffer without limit.
+ */
+final class SmtpSession {
+
+    private static final Logger log = LoggerFactory.getLogger(SmtpSession.class);
+
+    private static final int SPOOL_BUFFER_BYTES = 8192;
+    private static final int MAX_PENDING_REPLY_BYTES = 16384;
+
+    record Limits(String hostname, int lineBufferBytes, long maxMessageBytes, int maxRecipients) {
+    }
+
+    enum Outcome { STORED, REJECTED, DEFERRED }
+
+    // Progress through the end-of-data marker CRLF "." CRLF, with dot-unstuffing at line starts
+    private enum DataState { LINE_START, IN_LINE, CR, DOT, DOT_CR }
+
+    private final SmtpReceiver receiver;
+    private final SocketChannel channel;
+    private final Limits limits;
+    private final ByteBuffer in;
+    private final ArrayDeque<ByteBuffer> replies = new ArrayDeque<>();
+    private SelectionKey key;
+
+    private int pendingReplyBytes;
+    private long lastActivity = System.nanoTime();
+    private boolean parked;
+    private boolean closeAfterReplies;
+    private boolean closed;
+
+    private String heloName;
+    private String sender;
+    private final Map<String, Mailbox> recipients = new LinkedHashMap<>();
+
+    private boolean inData;
+    private DataState dataState;
+    private Path spoolPath;
+    private FileChannel spool;
+    private ByteBuffer spoolBuffer;
+    private long messageBytes;
+
+    SmtpSession(SmtpReceiver receiver, SocketChannel channel, Limits limits) {
+        this.receiver = receiver;
+        this.channel = channel;
+        this.limits = limits;
+        this.in = ByteBuffer.allocate(limits.lineBufferBytes());
+    }
+
+    void open(SelectionKey key) {
+        this.key = key;
+        reply("220 " + limits.hostname() + " ESMTP ready");
+    }
+
+    long idleSince(long now) {
+        return parked ? 0 : now - lastActivity;
+    }
+
+    /**
+     * The 421 gets one more idle period to drain. A client that is not reading its replies would
+     * never see it, so with replies still pending, or on the second timeout, the channel is closed.
+     */
+    void timeOut() {
+        if (closeAfterReplies || !replies.isEmpty()) {
+            close();
+            return;
+        }
+        closeAfterReplies = true;
+        lastActivity = System.nanoTime();
+        reply("421 4.4.2 " + limits.hostname() + " idle timeout, closing connection");
+    }
+
+    void onReadable() {
+        int read;
+        try {
+            read = channel.read(in);
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        if (read < 0) {
+            close();
+            return;
+        }
+        lastActivity = System.nanoTime();
+        process();
+    }
+
+    void onWritable() {
+        flush();
+    }
+
+    private void process() {
+        in.flip();
+        try {
+            while (!parked && !closed && !closeAfterReplies && in.hasRemaining()) {
+                if (inData) {
+                    consumeData();
+                    continue;
+                }
+                String line = nextLine();
+                if (line == null) {
+                    if (in.position() == 0 && in.limit() == in.capacity()) {
+                        closeAfterReplies = true;
+                        reply("500 5.5.2 Line too long");
+                    }
+                    break;
+                }
+                handleCommand(line);
+            }
+        } catch (IOException e) {
+            log.warn("SMTP spool write failed: {}", e.getMessage());
+            abortData();
+            closeAfterReplies = true;
+            reply("451 4.3.0 Local error in processing");
+        } finally {
+            if (!closed) {
+                in.compact();
+            }
+        }
+        updateInterest();
+    }
+
+    private String nextLine() {
+        for (int i = in.position(); i < in.limit(); i++) {
+            if (in.get(i) == '\n') {
+                int end = i > in.position() && in.get(i - 1) == '\r' ? i - 1 : i;
+                byte[] bytes = new byte[end - in.position()];
+                in.get(bytes);
+                in.position(i + 1);
+                return new String(bytes, StandardCharsets.ISO_8859_1);
+            }
+        }
+        return null;
+    }
+
+    private void handleCommand(String line) {
+        String upper = line.toUpperCase(Locale.ROOT);
+        if (upper.startsWith("EHLO ") || upper.startsWith("HELO ")) {
+            heloName = line.substring(5).trim();
+            resetTransaction();
+            if (upper.startsWith("EHLO")) {
+                reply("250-" + limits.hostname() + "\r\n250-PIPELINING\r\n250-8BITMIME\r\n250 SIZE " + limits.maxMessageBytes());
+            } else {
+                reply("250 " + limits.hostname());
+            }
+        } else if (upper.startsWith("MAIL FROM:")) {
+            mailFrom(line.substring(10).trim());
+        } else if (upper.startsWith("RCPT TO:")) {
+            rcptTo(line.substring(8).trim());
+        } else if (upper.equals("DATA")) {
+            data();
+        } else if (upper.equals("RSET")) {
+            resetTransaction();
+            reply("250 2.0.0 OK");
+        } else if (upper.equals("NOOP") || upper.startsWith("NOOP ")) {
+            reply("250 2.0.0 OK");
+        } else if (upper.equals("QUIT")) {
+            closeAfterReplies = true;
+            reply("221 2.0.0 Bye");
+        } else if (upper.startsWith("VRFY")) {
+            reply("252 2.5.0 Cannot verify, send some mail");
+        } else {
+            reply("502 5.5.1 Command not implemented");
+        }
+    }
+
+    private void mailFrom(String argument) {
+        if (heloName == null) {
+            reply("503 5.5.1 Send EHLO or HELO first");
+            return;
+        }
+        if (sender != null) {
+            reply("503 5.5.1 Sender already specified");
+            return;
+        }
+        String path = pathOf(argument);
+        if (path == null) {
+            reply("501 5.1.7 Bad sender address syntax");
+            return;
+        }
+        for (String parameter : argument.substring(argument.indexOf('>') + 1).trim().split("\\s+")) {
+            if (parameter.toUpperCase(Locale.ROOT).startsWith("SIZE=")) {
+                try {
+                    if (Long.parseLong(parameter.substring(5)) > limits.maxMessageBytes()) {
+                        reply("552 5.3.4 Message size exceeds fixed limit");
+                        return;
+                    }
+                } catch (NumberFormatException e) {
+                    reply("501 5.5.4 Bad SIZE parameter");
+                    return;
+                }
+            }
+        }
+        // Checked after the cheap syntax checks, so malformed commands do not spend the sender's tokens
+        if (!receiver.admitSender(path)) {
+            reply("451 4.7.1 Too much mail from this sender domain, try again later");
+            return;
+        }
+        sender = path;
+        reply("250 2.1.0 OK");
+    }
+
+    private void rcptTo(String argument) {
+        if (sender == null) {
+            reply("503 5.5.1 Need MAIL before RCPT");
+            return;
+        }
+        String address = pathOf(argument);
+        if (address == null || address.isEmpty()) {
+            reply("501 5.1.3 Bad recipient address syntax");
+            return;
+        }
+        if (recipients.size() >= limits.maxRecipients()) {
+            reply("452 4.5.3 Too many recipients");
+            return;
+        }
+        parked = true;
+        receiver.resolveRecipient(this, address);
+    }
+
+    void recipientResolved(Mailbox mailbox, boolean temporaryFailure) {
+        if (closed) {
+            return;
+        }
+        parked = false;
+        if (temporaryFailure) {
+            reply("451 4.3.0 Recipient lookup failed, try again later");
+        } else if (mailbox == null) {
+            reply("550 5.1.1 No such mailbox");
+        } else {
+            recipients.putIfAbsent(mailbox.getId(), mailbox);
+            reply("250 2.1.5 OK");
+        }
+        process();
+    }
+
+    void recipientThrottled() {
+        if (closed) {
+            return;
+        }
+        parked = false;
+        reply("450 4.7.1 Mailbox is receiving too much mail, try again later");
+        process();
+    }
+
+    private void data() {
+        if (sender == null || recipients.isEmpty()) {
+            reply("554 5.5.1 No valid recipients");
+            return;
+        }
+        try {
+            spoolPath = receiver.createSpoolFile();
+            spool = FileChannel.open(spoolPath, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Could not open SMTP spool file: {}", e.getMessage());
+            abortData();
+            reply("451 4.3.0 Local error in processing");
+            return;
+        }
+        spoolBuffer = ByteBuffer.allocate(SPOOL_BUFFER_BYTES);
+        messageBytes = 0;
+        dataState = DataState.LINE_START;
+        inData = true;
+        reply("354 End data with <CR><LF>.<CR><LF>");
+    }
+
+    // Consumes DATA bytes up to the end marker; anything after it is left for the command parser
+    private void consumeData() throws IOException {
+        while (in.hasRemaining()) {
+            byte b = in.get();
+            switch (dataState) {
+                case LINE_START -> {
+                    if (b == '.') {
+                        dataState = DataState.DOT;
+                    } else {
+                        spoolByte(b);
+                        dataState = b == '\r' ? DataState.CR : DataState.IN_LINE;
+                    }
+                }
+                case IN_LINE -> {
+                    spoolByte(b);
+                    if (b == '\r') {
+                        dataState = DataState.CR;
+                    }
+                }
+                case CR -> {
+                    spoolByte(b);
+                    dataState = b == '\n' ? DataState.LINE_START : b == '\r' ? DataState.CR : DataState.IN_LINE;
+                }
+                case DOT -> {
+                    if (b == '\r') {
+                        dataState = DataState.DOT_CR;
+                    } else {
+                        // A stuffed dot: drop it and keep the rest of the line
+                        spoolByte(b);
+                        dataState = DataState.IN_LINE;
+                    }
+                }
+                case DOT_CR -> {
+                    if (b == '\n') {
+                        endOfData();
+                        return;
+                    }
+                    spoolByte((byte) '\r');
+                    spoolByte(b);
+                    dataState = b == '\r' ? DataState.CR : DataState.IN_LINE;
+                }
+            }
+        }
+    }
+
+    private void spoolByte(byte b) throws IOException {
+        // Oversized messages are still read to the end marker, as SMTP requires, but no longer written
+        if (++messageBytes > limits.maxMessageBytes()) {
+            return;
+        }
+        if (!spoolBuffer.hasRemaining()) {
+            writeSpoolBuffer();
+        }
+        spoolBuffer.put(b);
+    }
+
+    private void writeSpoolBuffer() throws IOException {
+        spoolBuffer.flip();
+        while (spoolBuffer.hasRemaining()) {
+            spool.write(spoolBuffer);
+        }
+        spoolBuffer.clear();
+    }
+
+    private void endOfData() throws IOException {
+        inData = false;
+        if (messageBytes > limits.maxMessageBytes()) {
+            abortData();
+            resetTransaction();
+            reply("552 5.3.4 Message size exceeds fixed limit");
+            return;
+        }
+        writeSpoolBuffer();
+        spool.close();
+        spool = null;
+        spoolBuffer = null;
+
+        Path message = spoolPath;
+        spoolPath = null;
+        parked = true;
+        receiver.deliver(this, message, List.copyOf(recipients.values()));
+    }
+
+    void deliveryFinished(Outcome outcome) {
+        if (closed) {
+            return;
+        }
+        parked = false;
+        resetTransaction();
+        switch (outcome) {
+            case STORED -> reply("250 2.0.0 OK message stored");
+            case REJECTED -> reply("554 5.6.0 Message could not be parsed");
+            case DEFERRED -> reply("451 4.3.0 Temporary failure storing message, try again later");
+        }
+        process();
+    }
+
+    // Extracts the address between angle brackets; "<>" yields an empty string, the null reverse-path
+    private static String pathOf(String argument) {
+        int open = argument.indexOf('<');
+        int close = argument.indexOf('>', open + 1);
+        if (open != 0 || close < 0) {
+            return null;
+        }
+        String path = argument.substring(1, close).trim();
+        // Source routes (@a,@b:user@host) are obsolete; the mailbox is what follows the colon
+        int colon = path.startsWith("@") ? path.indexOf(':') : -1;
+        return colon >= 0 ? path.substring(colon + 1) : path;
+    }
+
+    private void resetTransaction() {
+        sender = null;
+        recipients.clear();
+    }
+
+    private void abortData() {
+        inData = false;
+        spoolBuffer = null;
+        if (spool != null) {
+            try {
+                spool.close();
+            } catch (IOException e) {
+                log.debug("Error closing SMTP spool: {}", e.getMessage());
+            }
+            spool = null;
+        }
+        if (spoolPath != null) {
+            SmtpReceiver.deleteQuietly(spoolPath);
+            spoolPath = null;
+        }
+    }
+
+    private void reply(String text) {
+        ByteBuffer buffer = ByteBuffer.wrap((text + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        replies.add(buffer);
+        pendingReplyBytes += buffer.remaining();
+        flush();
+    }
+
+    private void flush() {
+        try {
+            while (!replies.isEmpty()) {
+                ByteBuffer head = replies.peek();
+                pendingReplyBytes -= channel.write(head);
+                if (head.hasRemaining()) {
+                    break;
+                }
+                replies.poll();
+            }
+        } catch (IOException e) {
+            close();
+            return;
+        }
+        if (replies.isEmpty() && closeAfterReplies) {
+            close();
+            return;
+        }
+        updateInterest();
+    }
+
+    private void updateInterest() {
+        if (closed || !key.isValid()) {
+            return;
+        }
+        boolean reading = !parked && !closeAfterReplies && pendingReplyBytes < MAX_PENDING_REPLY_BYTES;
+        key.interestOps((reading ? SelectionKey.OP_READ : 0) | (replies.isEmpty() ? 0 : SelectionKey.OP_WRITE));
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        abortData();
+        key.cancel();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Error closing SMTP connection: {}", e.getMessage());
+        }
+        receiver.sessionClosed(this);
+    }
+}
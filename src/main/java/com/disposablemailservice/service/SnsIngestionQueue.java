@@ -0,0 +1,273 @@
+// Bounded hand-off between the SNS endpoint and the ingestion workers.
+// The request thread only validates and enqueues; a fixed pool drains the queue and sheds load when full.
+package com.disposablemailservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Once an event is accepted SNS considers it delivered, so transient failures are first retried here
+ * with backoff; while workers back off the queue fills and the endpoint answers 503, which hands the
+ * backlog back to SNS. An event that still fails after max-attempts, or is still queued at shutdown,
+ * is parked as a file in the parked directory and replayed on a timer until it goes through, so an
+ * outage of any length delays mail instead of dropping it. Only losing the node's disk loses it.
+ */
+@Service
+public class SnsIngestionQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(SnsIngestionQueue.class);
+
+    private final EmailEventService emailEventService;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor executor;
+    private final BlockingQueue<Runnable> queue;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long shutdownTimeoutSeconds;
+    private final Path parkedDir;
+    // Parked files currently queued or running, so a replay never submits the same file twice
+    private final Set<Path> replaying = ConcurrentHashMap.newKeySet();
+
+    private final Timer lag;
+    private final Timer processed;
+    private final Timer failed;
+    private final Counter rejected;
+    private final Counter parked;
+    private final Counter replayed;
+
+    public SnsIngestionQueue(EmailEventService emailEventService,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.ingest.workers:8}") int workers,
+                             @Value("${app.ingest.queue-capacity:1000}") int queueCapacity,
+                             @Value("${app.ingest.max-attempts:5}") int maxAttempts,
+                             @Value("${app.ingest.base-backoff-ms:200}") long baseBackoffMillis,
+                             @Value("${app.ingest.shutdown-timeout-seconds:30}") long shutdownTimeoutSeconds,
+                             @Value("${app.ingest.parked-dir:${java.io.tmpdir}/burnbox-parked}") String parkedDir) {
+        this.emailEventService = emailEventService;
+        this.objectMapper = objectMapper;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.parkedDir = Paths.get(parkedDir);
+        try {
+            Files.createDirectories(this.parkedDir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create parked event directory " + parkedDir, e);
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        // AbortPolicy: a full queue surfaces as RejectedExecutionException, which becomes a 503
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS, queue, runnable -> {
+            Thread thread = new Thread(runnable, "sns-ingest-" + threadCount.incrementAndGet());
+            thread.setDaemon(false);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.prestartAllCoreThreads();
+
+        this.lag = Timer.builder("burnbox.ingest.lag")
+                .description("Time an accepted SNS event waited in the queue before a worker picked it up")
+                .register(meterRegistry);
+        this.processed = Timer.builder("burnbox.ingest.processing").tag("result", "success").register(meterRegistry);
+        this.failed = Timer.builder("burnbox.ingest.processing").tag("result", "failure").register(meterRegistry);
+        this.rejected = Counter.builder("burnbox.ingest.rejected")
+                .description("SNS events refused because the ingestion queue was full")
+                .register(meterRegistry);
+        this.parked = Counter.builder("burnbox.ingest.parked")
+                .description("Accepted SNS events written to disk after exhausting their retries")
+                .register(meterRegistry);
+        this.replayed = Counter.builder("burnbox.ingest.parked.replayed").register(meterRegistry);
+        Gauge.builder("burnbox.ingest.queue.depth", queue, BlockingQueue::size).register(meterRegistry);
+        Gauge.builder("burnbox.ingest.queue.remaining", queue, BlockingQueue::remainingCapacity).register(meterRegistry);
+        Gauge.builder("burnbox.ingest.workers.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    }
+
+    /**
+     * Validates the payload and queues it for processing. Returns false when the queue is full.
+     * Throws IllegalArgumentException for payloads that can never be processed.
+     */
+    public boolean submit(String snsPayload) {
+        JsonNode envelope = emailEventService.parseEnvelope(snsPayload);
+        try {
+            executor.execute(new Task(envelope, null));
+            return true;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Re-queues parked events, using at most half of the free queue space so live traffic keeps
+     * priority. Parked envelopes were verified when they were accepted, so they are not checked again.
+     */
+    @Scheduled(fixedDelayString = "${app.ingest.parked-replay-interval-ms:60000}")
+    public void replayParked() {
+        int budget = queue.remainingCapacity() / 2;
+        if (budget == 0 || executor.isShutdown()) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(parkedDir, "*.json")) {
+            for (Path file : files) {
+                if (budget == 0) {
+                    return;
+                }
+                if (!replaying.add(file)) {
+                    continue;
+                }
+                try {
+                    executor.execute(new Task(objectMapper.readTree(Files.readString(file, StandardCharsets.UTF_8)), file));
+                    replayed.increment();
+                    budget--;
+                } catch (IOException e) {
+                    replaying.remove(file);
+                    log.error("Unreadable parked SNS event {}, leaving it for inspection: {}", file, e.getMessage());
+                } catch (RejectedExecutionException e) {
+                    replaying.remove(file);
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Cannot list parked SNS events in {}: {}", parkedDir, e.getMessage());
+        }
+    }
+
+    private final class Task implements Runnable {
+        private final JsonNode envelope;
+        private final Path parkedFile;
+        // Parked events already waited out an outage; throttling them now would drop held mail
+        private final EmailEventService.Admission admission;
+        private final long enqueuedAt = System.nanoTime();
+
+        Task(JsonNode envelope, Path parkedFile) {
+            this.envelope = envelope;
+            this.parkedFile = parkedFile;
+            this.admission = parkedFile == null ? new EmailEventService.Admission() : EmailEventService.Admission.exempt();
+        }
+
+        @Override
+        public void run() {
+            try {
+                process(this);
+            } finally {
+                if (parkedFile != null) {
+                    replaying.remove(parkedFile);
+                }
+            }
+        }
+    }
+
+    private void process(Task task) {
+        JsonNode envelope = task.envelope;
+        long start = System.nanoTime();
+        lag.record(start - task.enqueuedAt, TimeUnit.NANOSECONDS);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                emailEventService.processEnvelope(envelope, task.admission);
+                processed.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                unpark(task);
+                return;
+            } catch (IllegalArgumentException e) {
+                log.warn("Dropping SNS event {}: {}", envelope.path("MessageId").asText(), e.getMessage());
+                failed.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                unpark(task);
+                return;
+            } catch (Exception e) {
+                if (attempt >= maxAttempts || !backoff(attempt)) {
+                    log.error("SNS event {} still failing after {} attempts, parking it for replay",
+                            envelope.path("MessageId").asText(), attempt, e);
+                    failed.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    park(task);
+                    return;
+                }
+                log.warn("SNS event {} failed on attempt {}, retrying: {}",
+                        envelope.path("MessageId").asText(), attempt, e.getMessage());
+            }
+        }
+    }
+
+    // Full-jitter exponential backoff; returns false if interrupted
+    private boolean backoff(int attempt) {
+        long cap = baseBackoffMillis << Math.min(attempt - 1, 10);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(cap + 1));
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // Written under a temporary name and renamed, so a replay never reads a half-written file
+    private void park(Task task) {
+        if (task.parkedFile != null) {
+            // Already on disk; the next replay picks it up again
+            return;
+        }
+        Path target = parkedDir.resolve(UUID.randomUUID() + ".json");
+        Path partial = parkedDir.resolve(target.getFileName() + ".part");
+        try {
+            Files.writeString(partial, task.envelope.toString(), StandardCharsets.UTF_8);
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+            parked.increment();
+        } catch (IOException e) {
+            log.error("Could not park SNS event {}; it is lost: {}", task.envelope.path("MessageId").asText(), e.getMessage());
+        }
+    }
+
+    private void unpark(Task task) {
+        if (task.parkedFile == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(task.parkedFile);
+        } catch (IOException e) {
+            // Harmless: the replay is deduplicated by the delivery ledger
+            log.warn("Could not delete parked SNS event {}: {}", task.parkedFile, e.getMessage());
+        }
+    }
+
+    // Lets queued events finish; whatever is left when the timeout runs out is parked, not abandoned
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(shutdownTimeoutSeconds, TimeUnit.SECONDS)) {
+            List<Runnable> pending = executor.shutdownNow();
+            pending.forEach(runnable -> park((Task) runnable));
+            log.warn("Ingestion queue did not drain within {}s, parked {} queued events", shutdownTimeoutSeconds, pending.size());
+            // Interrupted workers park their own event once their backoff is cut short
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
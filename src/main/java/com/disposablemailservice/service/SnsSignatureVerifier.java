@@ -0,0 +1,256 @@
+// Verifies that SNS messages come from our topic and carry a valid signature before they are queued for ingestion.
+// Signing certificates are fetched once per SigningCertURL and cached until they expire.
+package com.disposablemailservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * The hot path is a map lookup and one RSA verify on a per-thread {@link Signature}; the network is
+ * only touched the first time a certificate URL is seen, or after the cached copy expires. Only
+ * HTTPS URLs on an allow-listed host are fetched, so a forged message cannot point us at a key it
+ * controls or make us call arbitrary hosts. A valid signature only proves that some SNS topic sent
+ * the message, and anyone can create a topic and subscribe our endpoint to it, so the TopicArn is
+ * pinned to the configured topic first.
+ */
+@Component
+public class SnsSignatureVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(SnsSignatureVerifier.class);
+
+    private static final List<String> NOTIFICATION_FIELDS =
+            List.of("Message", "MessageId", "Subject", "Timestamp", "TopicArn", "Type");
+    private static final List<String> SUBSCRIPTION_FIELDS =
+            List.of("Message", "MessageId", "SubscribeURL", "Timestamp", "Token", "TopicArn", "Type");
+
+    private static final ThreadLocal<Signature> SHA1_WITH_RSA = ThreadLocal.withInitial(() -> signature("SHA1withRSA"));
+    private static final ThreadLocal<Signature> SHA256_WITH_RSA = ThreadLocal.withInitial(() -> signature("SHA256withRSA"));
+
+    /**
+     * Where certificates come from; a test can hand back a locally generated certificate instead.
+     */
+    @FunctionalInterface
+    interface CertificateSource {
+        InputStream open(URI url) throws IOException;
+    }
+
+    private final boolean enabled;
+    private final String topicArn;
+    private final Pattern allowedHosts;
+    private final Duration maxCacheAge;
+    private final int maxCachedCertificates;
+    private final CertificateSource certificateSource;
+    private final ConcurrentHashMap<String, CachedKey> keys = new ConcurrentHashMap<>();
+
+    private final Timer verified;
+    private final Timer rejected;
+    private final Counter fetches;
+
+    @Autowired
+    public SnsSignatureVerifier(MeterRegistry meterRegistry,
+                                @Value("${app.webhook.ses.verify-signature:false}") boolean enabled,
+                                @Value("${aws.sns.topic:}") String topicArn,
+                                @Value("${app.webhook.ses.cert-host-pattern:sns\\.[a-z0-9-]+\\.amazonaws\\.com(\\.cn)?}") String allowedHosts,
+                                @Value("${app.webhook.ses.cert-cache-max-age-hours:24}") long maxCacheAgeHours,
+                                @Value("${app.webhook.ses.cert-cache-max-entries:64}") int maxCachedCertificates) {
+        this(meterRegistry, enabled, topicArn, allowedHosts, maxCacheAgeHours, maxCachedCertificates, httpSource());
+    }
+
+    SnsSignatureVerifier(MeterRegistry meterRegistry, boolean enabled, String topicArn, String allowedHosts,
+                         long maxCacheAgeHours, int maxCachedCertificates, CertificateSource certificateSource) {
+        this.enabled = enabled;
+        this.topicArn = topicArn == null || topicArn.isBlank() ? null : topicArn.trim();
+        this.allowedHosts = Pattern.compile(allowedHosts);
+        this.maxCacheAge = Duration.ofHours(maxCacheAgeHours);
+        this.maxCachedCertificates = maxCachedCertificates;
+        this.certificateSource = certificateSource;
+        this.verified = Timer.builder("burnbox.sns.signature.verify").tag("result", "valid").register(meterRegistry);
+        this.rejected = Timer.builder("burnbox.sns.signature.verify").tag("result", "invalid").register(meterRegistry);
+        this.fetches = Counter.builder("burnbox.sns.signature.cert.fetches")
+                .description("Signing certificates downloaded because they were not cached")
+                .register(meterRegistry);
+        if (!enabled) {
+            log.warn("SNS signature verification is disabled; any caller can post events to /api/sns/event");
+        }
+        if (this.topicArn == null) {
+            log.warn("aws.sns.topic is not set; SNS messages from any topic are accepted");
+        }
+    }
+
+    /**
+     * Throws IllegalArgumentException unless the envelope comes from the configured topic and carries
+     * a valid SNS signature. The topic is checked before anything else, so messages from foreign
+     * topics, subscription confirmations included, never cause a certificate download. A failure to
+     * download the certificate surfaces as UncheckedIOException, so SNS gets a 5xx and retries.
+     */
+    public void verify(JsonNode envelope) {
+        if (topicArn != null && !topicArn.equals(envelope.path("TopicArn").asText(null))) {
+            throw new IllegalArgumentException("SNS message is not from the configured topic");
+        }
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        boolean valid = false;
+        try {
+            Signature signature = signatureFor(envelope.path("SignatureVersion").asText());
+            byte[] expected = decodeSignature(envelope.path("Signature").asText(null));
+            PublicKey key = publicKey(envelope.path("SigningCertURL").asText(null));
+
+            signature.initVerify(key);
+            signature.update(stringToSign(envelope).getBytes(StandardCharsets.UTF_8));
+            valid = signature.verify(expected);
+        } catch (GeneralSecurityException e) {
+            log.debug("SNS signature check failed: {}", e.getMessage());
+        } finally {
+            (valid ? verified : rejected).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        if (!valid) {
+            throw new IllegalArgumentException("Invalid SNS message signature");
+        }
+    }
+
+    private static Signature signatureFor(String version) {
+        return switch (version) {
+            case "1" -> SHA1_WITH_RSA.get();
+            case "2" -> SHA256_WITH_RSA.get();
+            default -> throw new IllegalArgumentException("Unsupported SNS SignatureVersion: " + version);
+        };
+    }
+
+    private static byte[] decodeSignature(String signature) {
+        if (signature == null) {
+            throw new IllegalArgumentException("SNS message is not signed");
+        }
+        try {
+            return Base64.getDecoder().decode(signature);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed SNS signature");
+        }
+    }
+
+    // Field order and the optional Subject follow the SNS signing rules for each message type
+    static String stringToSign(JsonNode envelope) {
+        List<String> fields = "Notification".equals(envelope.path("Type").asText()) ? NOTIFICATION_FIELDS : SUBSCRIPTION_FIELDS;
+        StringBuilder text = new StringBuilder(256);
+        for (String field : fields) {
+            JsonNode value = envelope.get(field);
+            if (value == null || value.isNull()) {
+                if ("Subject".equals(field)) {
+                    continue;
+                }
+                throw new IllegalArgumentException("SNS message is missing " + field);
+            }
+            text.append(field).append('\n').append(value.asText()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private PublicKey publicKey(String certUrl) {
+        CachedKey cached = keys.get(certUrl == null ? "" : certUrl);
+        Instant now = Instant.now();
+        if (cached != null && now.isBefore(cached.expiresAt())) {
+            return cached.key();
+        }
+
+        URI uri = checkedUri(certUrl);
+        if (keys.size() >= maxCachedCertificates) {
+            // Only a handful of URLs exist per region; hitting the bound means churn, so start over
+            keys.clear();
+        }
+        return keys.compute(certUrl, (url, existing) ->
+                existing != null && now.isBefore(existing.expiresAt()) ? existing : load(uri, now)).key();
+    }
+
+    private URI checkedUri(String certUrl) {
+        URI uri;
+        try {
+            uri = certUrl == null ? null : URI.create(certUrl);
+        } catch (IllegalArgumentException e) {
+            uri = null;
+        }
+        if (uri == null || !"https".equals(uri.getScheme()) || uri.getHost() == null
+                || !allowedHosts.matcher(uri.getHost()).matches() || uri.getPath() == null
+                || !uri.getPath().endsWith(".pem")) {
+            throw new IllegalArgumentException("Refusing SNS SigningCertURL " + certUrl);
+        }
+        return uri;
+    }
+
+    private CachedKey load(URI uri, Instant now) {
+        fetches.increment();
+        try (InputStream in = certificateSource.open(uri)) {
+            X509Certificate certificate = (X509Certificate) CertificateFactory.getInstance("X.509").generateCertificate(in);
+            certificate.checkValidity();
+            Instant expiresAt = now.plus(maxCacheAge);
+            Instant notAfter = certificate.getNotAfter().toInstant();
+            log.info("Cached SNS signing certificate from {} (valid until {})", uri, notAfter);
+            return new CachedKey(certificate.getPublicKey(), notAfter.isBefore(expiresAt) ? notAfter : expiresAt);
+        } catch (CertificateException e) {
+            throw new IllegalArgumentException("Unusable SNS signing certificate at " + uri, e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static CertificateSource httpSource() {
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        return uri -> {
+            try {
+                HttpResponse<InputStream> response = httpClient.send(HttpRequest.newBuilder(uri)
+                                .timeout(Duration.ofSeconds(10))
+                                .GET()
+                                .build(),
+                        HttpResponse.BodyHandlers.ofInputStream());
+                if (response.statusCode() != 200) {
+                    response.body().close();
+                    throw new IOException("HTTP " + response.statusCode() + " fetching " + uri);
+                }
+                return response.body();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted fetching " + uri, e);
+            }
+        };
+    }
+
+    private static Signature signature(String algorithm) {
+        try {
+            return Signature.getInstance(algorithm);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(algorithm + " is not available", e);
+        }
+    }
+
+    private record CachedKey(PublicKey key, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,144 @@
+// Measures what body compression costs in CPU and saves in DynamoDB capacity units per message.
+// Run with mvn test -Pbenchmark; prints encode/decode latency and item sizes for each kind of mail.
+package com.disposablemailservice.model;
+
+import com.disposablemailservice.support.LatencyRecorder;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The samples are shaped like the mail a disposable inbox gets: one-time codes, a transactional
+ * receipt, a marketing newsletter and a quoted plain-text thread. Words and numbers are drawn at
+ * random so deflate cannot cheat on exact repeats. Capacity units assume the rest of the item
+ * (keys, sender, subject, preview, timestamps) takes about 400 bytes.
+ */
+@Tag("benchmark")
+class CompressedStringAttributeConverterBenchmark {
+
+    private static final int OTHER_ATTRIBUTE_BYTES = 400;
+    private static final int WARMUP_ITERATIONS = 20_000;
+    private static final int MEASURE_ITERATIONS = 50_000;
+    private static final String[] WORDS = ("the your order account please click here update security code verify "
+            + "shipping delivered tracking number invoice total payment receipt unsubscribe preferences offer "
+            + "limited time discount members exclusive weekend sale new arrivals support team thanks regards "
+            + "password reset link expires minutes confirm email address welcome aboard getting started").split(" ");
+
+    private final CompressedStringAttributeConverter converter = new CompressedStringAttributeConverter();
+
+    @Test
+    void capacityAndCpuPerMessage() {
+        Random random = new Random(7);
+        Map<String, String> samples = new LinkedHashMap<>();
+        samples.put("one-time code (text)", "Your verification code is " + (100000 + random.nextInt(900000))
+                + ". It expires in 10 minutes. If you did not request it, ignore this email.\n");
+        samples.put("receipt (html)", receipt(random, 18));
+        samples.put("newsletter (html)", newsletter(random, 40));
+        samples.put("reply thread (text)", thread(random, 12));
+
+        System.out.printf(Locale.ROOT, "%-22s %9s %9s %7s %7s %7s %7s %10s %10s%n", "sample", "raw B", "stored B",
+                "WCU", "WCU'", "RCU", "RCU'", "enc p50us", "dec p50us");
+        for (Map.Entry<String, String> sample : samples.entrySet()) {
+            measure(sample.getKey(), sample.getValue());
+        }
+    }
+
+    private void measure(String name, String body) {
+        int rawBytes = body.getBytes(StandardCharsets.UTF_8).length;
+        AttributeValue stored = converter.transformFrom(body);
+        int storedBytes = stored.s() != null ? stored.s().getBytes(StandardCharsets.UTF_8).length : stored.b().asByteArrayUnsafe().length;
+        assertThat(converter.transformTo(stored)).isEqualTo(body);
+
+        LatencyRecorder encode = new LatencyRecorder(name + " encode", MEASURE_ITERATIONS);
+        LatencyRecorder decode = new LatencyRecorder(name + " decode", MEASURE_ITERATIONS);
+        run(body, stored, new LatencyRecorder("warmup", WARMUP_ITERATIONS), new LatencyRecorder("warmup", WARMUP_ITERATIONS), WARMUP_ITERATIONS);
+        run(body, stored, encode, decode, MEASURE_ITERATIONS);
+
+        System.out.printf(Locale.ROOT, "%-22s %9d %9d %7d %7d %7.1f %7.1f %10.1f %10.1f%n", name, rawBytes, storedBytes,
+                writeUnits(rawBytes), writeUnits(storedBytes), readUnits(rawBytes), readUnits(storedBytes),
+                encode.percentileNanos(50) / 1e3, decode.percentileNanos(50) / 1e3);
+        System.out.println("  " + encode.report());
+        System.out.println("  " + decode.report());
+    }
+
+    private void run(String body, AttributeValue stored, LatencyRecorder encode, LatencyRecorder decode, int iterations) {
+        encode.start();
+        decode.start();
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            AttributeValue value = converter.transformFrom(body);
+            encode.record(System.nanoTime() - start);
+            start = System.nanoTime();
+            String text = converter.transformTo(stored);
+            decode.record(System.nanoTime() - start);
+            if (value == null || text.isEmpty()) {
+                throw new AssertionError();
+            }
+        }
+        encode.stop();
+        decode.stop();
+    }
+
+    private static int writeUnits(int attributeBytes) {
+        return (attributeBytes + OTHER_ATTRIBUTE_BYTES + 1023) / 1024;
+    }
+
+    // Eventually consistent reads, as the message list and detail reads use
+    private static double readUnits(int attributeBytes) {
+        return ((attributeBytes + OTHER_ATTRIBUTE_BYTES + 4095) / 4096) / 2.0;
+    }
+
+    private static String sentence(Random random, int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            text.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.append('.').toString();
+    }
+
+    private static String receipt(Random random, int lines) {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><style>td{padding:8px;font-family:Arial,sans-serif;"
+                + "border-bottom:1px solid #eee}.total{font-weight:bold}</style></head><body><table width=\"600\">\n");
+        for (int i = 0; i < lines; i++) {
+            html.append("<tr><td class=\"item\">").append(sentence(random, 4)).append("</td><td align=\"right\">$")
+                    .append(random.nextInt(200)).append('.').append(10 + random.nextInt(90)).append("</td></tr>\n");
+        }
+        return html.append("<tr><td class=\"total\">Total</td><td align=\"right\">$").append(random.nextInt(5000))
+                .append("</td></tr></table><p>").append(sentence(random, 30)).append("</p></body></html>").toString();
+    }
+
+    private static String newsletter(Random random, int blocks) {
+        StringBuilder html = new StringBuilder("<!DOCTYPE html><html><body style=\"margin:0;background:#f4f4f4\">\n");
+        for (int i = 0; i < blocks; i++) {
+            html.append("<table role=\"presentation\" width=\"100%\" cellpadding=\"0\" cellspacing=\"0\"><tr><td style=\"")
+                    .append("padding:24px;font-family:Helvetica,Arial,sans-serif;color:#333333;font-size:16px\">")
+                    .append("<h2>").append(sentence(random, 5)).append("</h2><p>").append(sentence(random, 40))
+                    .append("</p><a href=\"https://click.example.com/c/").append(Long.toHexString(random.nextLong()))
+                    .append("?utm_source=newsletter&amp;utm_medium=email\" style=\"background:#0066cc;color:#fff;")
+                    .append("padding:12px 20px;text-decoration:none\">Shop now</a><img src=\"https://img.example.com/")
+                    .append(Long.toHexString(random.nextLong())).append(".jpg\" width=\"552\" alt=\"\"></td></tr></table>\n");
+        }
+        return html.append("</body></html>").toString();
+    }
+
+    private static String thread(Random random, int replies) {
+        StringBuilder text = new StringBuilder();
+        String quote = "";
+        for (int i = 0; i < replies; i++) {
+            text.append(quote).append("On Mon, Mar ").append(1 + random.nextInt(28)).append(", someone wrote:\n");
+            for (int line = 0; line < 4; line++) {
+                text.append(quote).append(sentence(random, 12)).append('\n');
+            }
+            quote += "> ";
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,79 @@
+// Tests for the compressing attribute converter used for message bodies.
+// Checks round trips, the size thresholds, and that plain S items from before compression still read.
+package com.disposablemailservice.model;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.SdkBytes;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompressedStringAttributeConverterTest {
+
+    private final CompressedStringAttributeConverter converter = new CompressedStringAttributeConverter();
+
+    private static String text(int chars) {
+        StringBuilder text = new StringBuilder(chars);
+        while (text.length() < chars) {
+            text.append("<p>Your order has shipped. Track it at https://example.com/track — ¡gracias! ✓</p>\n");
+        }
+        return text.substring(0, chars);
+    }
+
+    @Test
+    void keepsShortValuesAsPlainStrings() {
+        AttributeValue value = converter.transformFrom("Your code is 123456");
+
+        assertThat(value.s()).isEqualTo("Your code is 123456");
+    }
+
+    @Test
+    void compressesLargerValuesWithTheDefaultCodec() {
+        String body = text(4096);
+
+        AttributeValue value = converter.transformFrom(body);
+
+        assertThat(value.s()).isNull();
+        byte[] stored = value.b().asByteArray();
+        assertThat(stored[0]).isEqualTo(CompressedStringAttributeConverter.MAGIC);
+        assertThat(stored[1]).isEqualTo(CompressedStringAttributeConverter.CODEC_DEFLATE);
+        assertThat(stored.length).isLessThan(body.length() / 4);
+        assertThat(converter.transformTo(value)).isEqualTo(body);
+    }
+
+    @Test
+    void switchesToTheFastCodecForLargeValues() {
+        String body = text(64 * 1024);
+
+        AttributeValue value = converter.transformFrom(body);
+
+        assertThat(value.b().asByteArray()[1]).isEqualTo(CompressedStringAttributeConverter.CODEC_DEFLATE_FAST);
+        assertThat(converter.transformTo(value)).isEqualTo(body);
+    }
+
+    @Test
+    void leavesValuesBelowTheThresholdUncompressed() {
+        String body = text(1023);
+
+        assertThat(converter.transformFrom(body).s()).isEqualTo(body);
+    }
+
+    @Test
+    void readsItemsWrittenBeforeCompression() {
+        String legacy = text(5000);
+
+        assertThat(converter.transformTo(AttributeValue.builder().s(legacy).build())).isEqualTo(legacy);
+        assertThat(converter.transformTo(AttributeValue.builder().nul(true).build())).isNull();
+    }
+
+    @Test
+    void refusesUnknownHeaders() {
+        AttributeValue foreign = AttributeValue.builder().b(SdkBytes.fromByteArray(new byte[]{1, 2, 3})).build();
+        AttributeValue unknownCodec = AttributeValue.builder()
+                .b(SdkBytes.fromByteArray(new byte[]{CompressedStringAttributeConverter.MAGIC, 9, 0})).build();
+
+        assertThatThrownBy(() -> converter.transformTo(foreign)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> converter.transformTo(unknownCodec)).hasMessageContaining("codec");
+    }
+}
@@ -0,0 +1,80 @@
+// Reference counting tests for content-addressed blobs, on the in-memory blob and reference stores.
+// Covers deduplication, deletion on the last release, generations and releases after a failed upload.
+package com.disposablemailservice.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ContentAddressedStoreTest {
+
+    private static final String HASH = "ab".repeat(32);
+    private static final byte[] CONTENT = "hello".getBytes(StandardCharsets.UTF_8);
+
+    private final InMemoryBlobStore blobStore = new InMemoryBlobStore();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ContentAddressedStore store = new ContentAddressedStore(blobStore, new InMemoryBlobReferenceStore(),
+            meterRegistry, "test/sha256/", "test.stored");
+
+    @Test
+    void storesSharedContentOnce() {
+        String first = store.store(HASH, CONTENT, "text/plain");
+        String second = store.store(HASH, CONTENT, "text/plain");
+
+        assertThat(second).isEqualTo(first).startsWith("test/sha256/" + HASH + "/");
+        assertThat(meterRegistry.counter("test.stored", "result", "uploaded").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("test.stored", "result", "deduplicated").count()).isEqualTo(1);
+        assertThat(store.read(first)).isEqualTo(CONTENT);
+    }
+
+    @Test
+    void deletesTheObjectWithTheLastReference() {
+        String key = store.store(HASH, CONTENT, "text/plain");
+        store.store(HASH, CONTENT, "text/plain");
+
+        assertThat(store.releaseAll(List.of(key))).isZero();
+        assertThat(blobStore.exists(key)).isTrue();
+        assertThat(store.releaseAll(List.of(key))).isEqualTo(1);
+        assertThat(blobStore.exists(key)).isFalse();
+    }
+
+    @Test
+    void staleReleasesDoNotTouchANewGeneration() {
+        String old = store.store(HASH, CONTENT, "text/plain");
+        store.releaseAll(List.of(old));
+
+        String current = store.store(HASH, CONTENT, "text/plain");
+        // A duplicate release of the old generation, e.g. a purge retried after a crash
+        assertThat(store.releaseAll(List.of(old))).isZero();
+
+        assertThat(current).isNotEqualTo(old);
+        assertThat(blobStore.exists(current)).isTrue();
+        assertThat(store.releaseAll(List.of(current))).isEqualTo(1);
+    }
+
+    @Test
+    void givesTheReferenceBackWhenTheUploadFails() {
+        assertThatThrownBy(() -> store.store(HASH, Path.of("does-not-exist.bin"), "application/octet-stream"))
+                .isInstanceOf(UncheckedIOException.class);
+
+        // Had the failed upload kept its reference, this would be deduplicated against nothing
+        String key = store.store(HASH, CONTENT, "text/plain");
+        assertThat(blobStore.exists(key)).isTrue();
+        assertThat(meterRegistry.counter("test.stored", "result", "deduplicated").count()).isZero();
+    }
+
+    @Test
+    void deletesKeysFromBeforeContentAddressingOutright() {
+        blobStore.put("attachments/legacy/1", CONTENT, "text/plain");
+
+        assertThat(store.releaseAll(List.of("attachments/legacy/1"))).isEqualTo(1);
+        assertThat(blobStore.exists("attachments/legacy/1")).isFalse();
+    }
+}
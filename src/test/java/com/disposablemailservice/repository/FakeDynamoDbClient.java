@@ -0,0 +1,110 @@
+// In-process stand-in for the DynamoDB client that answers PutItem and BatchWriteItem.
+// Calls hold one of a fixed number of connections for a fixed round trip, like the pooled HTTP client.
+package com.disposablemailservice.repository;
+
+import software.amazon.awssdk.services.dynamodb.DynamoDbClient;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.BatchWriteItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.PutItemRequest;
+import software.amazon.awssdk.services.dynamodb.model.PutItemResponse;
+import software.amazon.awssdk.services.dynamodb.model.WriteRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Items are keyed by mailboxId and id, the message table's key. An item matching {@link #unprocessed}
+ * is handed back as unprocessed instead of being written, which is how DynamoDB reports throttling
+ * inside a batch.
+ */
+class FakeDynamoDbClient implements DynamoDbClient {
+
+    final Map<String, Map<String, AttributeValue>> items = new ConcurrentHashMap<>();
+    final AtomicInteger putCalls = new AtomicInteger();
+    final AtomicInteger batchCalls = new AtomicInteger();
+    final Queue<Integer> batchSizes = new ConcurrentLinkedQueue<>();
+    volatile Predicate<Map<String, AttributeValue>> unprocessed = item -> false;
+
+    private final Semaphore connections;
+    private final long roundTripNanos;
+
+    FakeDynamoDbClient(int connections, long roundTripMicros) {
+        this.connections = new Semaphore(connections, true);
+        this.roundTripNanos = TimeUnit.MICROSECONDS.toNanos(roundTripMicros);
+    }
+
+    FakeDynamoDbClient() {
+        this(Integer.MAX_VALUE, 0);
+    }
+
+    @Override
+    public PutItemResponse putItem(PutItemRequest request) {
+        putCalls.incrementAndGet();
+        roundTrip();
+        items.put(key(request.item()), request.item());
+        return PutItemResponse.builder().build();
+    }
+
+    @Override
+    public BatchWriteItemResponse batchWriteItem(BatchWriteItemRequest request) {
+        batchCalls.incrementAndGet();
+        roundTrip();
+        Map<String, List<WriteRequest>> left = new ConcurrentHashMap<>();
+        request.requestItems().forEach((table, writes) -> {
+            batchSizes.add(writes.size());
+            List<WriteRequest> skipped = new ArrayList<>();
+            for (WriteRequest write : writes) {
+                Map<String, AttributeValue> item = write.putRequest().item();
+                if (unprocessed.test(item)) {
+                    skipped.add(write);
+                } else {
+                    items.put(key(item), item);
+                }
+            }
+            if (!skipped.isEmpty()) {
+                left.put(table, skipped);
+            }
+        });
+        return BatchWriteItemResponse.builder().unprocessedItems(left).build();
+    }
+
+    private void roundTrip() {
+        if (roundTripNanos == 0) {
+            return;
+        }
+        connections.acquireUninterruptibly();
+        try {
+            long until = System.nanoTime() + roundTripNanos;
+            long remaining;
+            while ((remaining = until - System.nanoTime()) > 0) {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connections.release();
+        }
+    }
+
+    static String key(Map<String, AttributeValue> item) {
+        return item.get("mailboxId").s() + '/' + item.get("id").s();
+    }
+
+    @Override
+    public String serviceName() {
+        return SERVICE_NAME;
+    }
+
+    @Override
+    public void close() {
+    }
+}
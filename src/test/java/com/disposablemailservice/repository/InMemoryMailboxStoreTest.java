@@ -0,0 +1,157 @@
+// Tests for the in-memory mailbox store: index paging, conditional deletes, purge claims and the TTL sweep.
+// The concurrent case creates and deletes within one partition, which is how creates and reaper deletes share a bucket.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.Mailbox;
+import com.disposablemailservice.model.PagedResult;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class InMemoryMailboxStoreTest {
+
+    // Start of an hourly expiry bucket, so every mailbox below lands in the same one
+    private static final Instant HOUR = Instant.parse("2030-01-01T10:00:00Z");
+
+    private final InMemoryMailboxStore store = new InMemoryMailboxStore();
+
+    private static Mailbox mailbox(String id, String userId, int second) {
+        Mailbox mailbox = new Mailbox();
+        mailbox.setId(id);
+        mailbox.setAddress(id + "@burnbox.test");
+        mailbox.setUserId(userId);
+        mailbox.setCreatedAt(HOUR.minusSeconds(3600 - second));
+        mailbox.setExpiryTime(HOUR.plusSeconds(second));
+        return mailbox;
+    }
+
+    private static List<String> ids(PagedResult<Mailbox> page) {
+        return page.getItems().stream().map(Mailbox::getId).toList();
+    }
+
+    @Test
+    void pagesAUsersMailboxesNewestFirst() {
+        for (int i = 0; i < 5; i++) {
+            store.save(mailbox("mb-" + i, "user-1", i));
+        }
+        store.save(mailbox("other", "user-2", 9));
+
+        PagedResult<Mailbox> first = store.findByUserId("user-1", 2, null);
+        PagedResult<Mailbox> second = store.findByUserId("user-1", 2, first.getNextCursor());
+        PagedResult<Mailbox> third = store.findByUserId("user-1", 2, second.getNextCursor());
+
+        assertThat(ids(first)).containsExactly("mb-4", "mb-3");
+        assertThat(ids(second)).containsExactly("mb-2", "mb-1");
+        assertThat(ids(third)).containsExactly("mb-0");
+        assertThat(third.getNextCursor()).isNull();
+    }
+
+    @Test
+    void pagesAnExpiryBucketInExpiryOrderUpToTheCutoff() {
+        for (int i = 0; i < 5; i++) {
+            store.save(mailbox("mb-" + i, "user-1", i * 10));
+        }
+        String bucket = Mailbox.expiryBucketOf(HOUR);
+
+        PagedResult<Mailbox> first = store.findByExpiryBucket(bucket, HOUR.plusSeconds(30), 2, null);
+        PagedResult<Mailbox> second = store.findByExpiryBucket(bucket, HOUR.plusSeconds(30), 2, first.getNextCursor());
+
+        assertThat(ids(first)).containsExactly("mb-0", "mb-1");
+        assertThat(ids(second)).containsExactly("mb-2", "mb-3");
+        // Like DynamoDB, a full page hands back a cursor even when nothing past it qualifies
+        PagedResult<Mailbox> third = store.findByExpiryBucket(bucket, HOUR.plusSeconds(30), 2, second.getNextCursor());
+        assertThat(third.getItems()).isEmpty();
+        assertThat(third.getNextCursor()).isNull();
+        assertThat(store.findByExpiryBucket("2030-01-01T11", HOUR.plusSeconds(7200), 10, null).getItems()).isEmpty();
+    }
+
+    @Test
+    void resavingMovesTheMailboxBetweenPartitions() {
+        store.save(mailbox("mb", "user-1", 0));
+        Mailbox extended = mailbox("mb", "user-1", 0);
+        extended.setExpiryTime(HOUR.plusSeconds(3600));
+        store.save(extended);
+
+        assertThat(store.findByExpiryBucket(Mailbox.expiryBucketOf(HOUR), HOUR.plusSeconds(3599), 10, null).getItems()).isEmpty();
+        assertThat(ids(store.findByExpiryBucket(Mailbox.expiryBucketOf(HOUR.plusSeconds(3600)), HOUR.plusSeconds(3600), 10, null)))
+                .containsExactly("mb");
+    }
+
+    @Test
+    void deletesOnlyOnceAndDropsTheIndexEntries() {
+        store.save(mailbox("mb", "user-1", 0));
+
+        assertThat(store.deleteIfExists("mb")).isTrue();
+        assertThat(store.deleteIfExists("mb")).isFalse();
+
+        assertThat(store.findById("mb")).isNull();
+        assertThat(store.findByAddress("mb@burnbox.test")).isNull();
+        assertThat(store.findByUserId("user-1", 10, null).getItems()).isEmpty();
+        assertThat(store.findByExpiryBucket(Mailbox.expiryBucketOf(HOUR), HOUR.plusSeconds(60), 10, null).getItems()).isEmpty();
+    }
+
+    @Test
+    void grantsOnePurgeClaimUntilItRunsOut() {
+        store.save(mailbox("mb", "user-1", 0));
+        Instant now = HOUR;
+
+        assertThat(store.claimForPurge("mb", now, now.plusSeconds(300))).isTrue();
+        assertThat(store.claimForPurge("mb", now.plusSeconds(10), now.plusSeconds(310))).isFalse();
+        assertThat(store.claimForPurge("mb", now.plusSeconds(301), now.plusSeconds(600))).isTrue();
+        assertThat(store.claimForPurge("missing", now, now.plusSeconds(300))).isFalse();
+    }
+
+    @Test
+    void sweepRemovesOnlyRowsPastTheirTtl() {
+        Mailbox stale = mailbox("stale", "user-1", 0);
+        stale.setTtl(Instant.now().getEpochSecond() - 1);
+        store.save(stale);
+        store.save(mailbox("live", "user-1", 1));
+
+        store.sweepExpired();
+
+        assertThat(store.findById("stale")).isNull();
+        assertThat(store.findById("live")).isNotNull();
+        assertThat(ids(store.findByUserId("user-1", 10, null))).containsExactly("live");
+    }
+
+    @Test
+    void keepsIndexEntriesWhenWritesAndDeletesShareAPartition() throws Exception {
+        // Each thread keeps emptying the shared partitions, so saves constantly race the removal of the last entry
+        String bucket = Mailbox.expiryBucketOf(HOUR);
+        AtomicInteger lost = new AtomicInteger();
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        List<Future<?>> running = new ArrayList<>();
+        try {
+            for (int t = 0; t < 4; t++) {
+                String id = "mb-" + t;
+                int second = t;
+                running.add(threads.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        store.save(mailbox(id, "user-1", second));
+                        if (!ids(store.findByUserId("user-1", 10, null)).contains(id)
+                                || !ids(store.findByExpiryBucket(bucket, HOUR.plusSeconds(59), 10, null)).contains(id)) {
+                            lost.incrementAndGet();
+                        }
+                        store.deleteIfExists(id);
+                    }
+                }));
+            }
+            for (Future<?> future : running) {
+                future.get();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertThat(lost).hasValue(0);
+    }
+}
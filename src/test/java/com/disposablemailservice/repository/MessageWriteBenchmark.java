@@ -0,0 +1,100 @@
+// Compares the write coalescer with one PutItem per message under concurrent ingestion.
+// Run with mvn test -Pbenchmark; prints throughput and latency percentiles for each path.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.Message;
+import com.disposablemailservice.support.LatencyRecorder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbTable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * DynamoDB is simulated by a client with the default pool of 50 connections and a 5 ms round trip,
+ * so the numbers show what batching does to connection pressure, not DynamoDB's own throughput.
+ * Each sample is one save from the caller's point of view, waiting included.
+ */
+@Tag("benchmark")
+class MessageWriteBenchmark {
+
+    private static final int WRITERS = 256;
+    private static final int CONNECTIONS = 50;
+    private static final long ROUND_TRIP_MICROS = 5_000;
+    private static final long WARMUP_SECONDS = 3;
+    private static final long MEASURE_SECONDS = 15;
+
+    @Test
+    void onePutPerMessage() throws Exception {
+        FakeDynamoDbClient dynamoDb = new FakeDynamoDbClient(CONNECTIONS, ROUND_TRIP_MICROS);
+        DynamoDbTable<Message> table = DynamoDbEnhancedClient.builder().dynamoDbClient(dynamoDb).build()
+                .table(TableSchemas.MESSAGE_TABLE, TableSchemas.MESSAGE);
+
+        run("putItem x " + WRITERS + " writers", table::putItem);
+    }
+
+    @Test
+    void coalescedBatches() throws Exception {
+        FakeDynamoDbClient dynamoDb = new FakeDynamoDbClient(CONNECTIONS, ROUND_TRIP_MICROS);
+        MessageWriteCoalescer coalescer = new MessageWriteCoalescer(
+                DynamoDbEnhancedClient.builder().dynamoDbClient(dynamoDb).build(),
+                new SimpleMeterRegistry(), 5, 10_000, 8, 8, 25, 30);
+        try {
+            run("coalescer x " + WRITERS + " writers", message -> coalescer.put(message).join());
+        } finally {
+            coalescer.shutdown();
+        }
+        System.out.printf("  batch calls %d, mean batch %.1f items%n", dynamoDb.batchCalls.get(),
+                dynamoDb.batchSizes.stream().mapToInt(Integer::intValue).average().orElse(0));
+    }
+
+    private static void run(String name, Consumer<Message> save) throws Exception {
+        ExecutorService writers = Executors.newFixedThreadPool(WRITERS);
+        try {
+            measure(writers, save, new LatencyRecorder(name + " (warmup)", 1 << 20), WARMUP_SECONDS);
+            LatencyRecorder recorder = new LatencyRecorder(name, 1 << 22);
+            measure(writers, save, recorder, MEASURE_SECONDS);
+            System.out.println(recorder.report());
+            assertThat(recorder.count()).isPositive();
+        } finally {
+            writers.shutdownNow();
+        }
+    }
+
+    private static void measure(ExecutorService writers, Consumer<Message> save, LatencyRecorder recorder,
+                                long seconds) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        recorder.start();
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++) {
+            String mailboxId = "mailbox-" + i;
+            running.add(writers.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    Message message = new Message();
+                    message.setMailboxId(mailboxId);
+                    message.setId(UUID.randomUUID().toString());
+                    message.setSubject("Your verification code");
+                    message.setBody("Your code is 123456");
+                    long start = System.nanoTime();
+                    save.accept(message);
+                    recorder.record(System.nanoTime() - start);
+                }
+            }));
+        }
+        for (Future<?> writer : running) {
+            writer.get();
+        }
+        recorder.stop();
+    }
+}
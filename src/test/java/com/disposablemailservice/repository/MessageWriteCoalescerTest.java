@@ -0,0 +1,126 @@
+// Tests for the message write coalescer against an in-process DynamoDB client.
+// Covers batching, per-item completion, retries of unprocessed items and the shutdown flush.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.Message;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.enhanced.dynamodb.DynamoDbEnhancedClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MessageWriteCoalescerTest {
+
+    private final FakeDynamoDbClient dynamoDb = new FakeDynamoDbClient();
+    private MessageWriteCoalescer coalescer;
+
+    private MessageWriteCoalescer coalescer(long lingerMillis, int maxAttempts) {
+        coalescer = new MessageWriteCoalescer(DynamoDbEnhancedClient.builder().dynamoDbClient(dynamoDb).build(),
+                new SimpleMeterRegistry(), lingerMillis, 1000, 4, maxAttempts, 1, 5);
+        return coalescer;
+    }
+
+    @AfterEach
+    void shutdown() throws InterruptedException {
+        if (coalescer != null) {
+            coalescer.shutdown();
+        }
+    }
+
+    private static Message message(String mailboxId, String id) {
+        Message message = new Message();
+        message.setMailboxId(mailboxId);
+        message.setId(id);
+        message.setSubject("subject " + id);
+        return message;
+    }
+
+    private static List<CompletableFuture<Void>> putAll(MessageWriteCoalescer coalescer, int count) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            futures.add(coalescer.put(message("mb-" + (i % 7), "m-" + i)));
+        }
+        return futures;
+    }
+
+    @Test
+    void batchesQueuedPutsUpToTwentyFive() {
+        List<CompletableFuture<Void>> futures = putAll(coalescer(50, 3), 100);
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+
+        assertThat(dynamoDb.items).hasSize(100);
+        assertThat(dynamoDb.putCalls).hasValue(0);
+        assertThat(dynamoDb.batchSizes).allSatisfy(size -> assertThat(size).isBetween(1, 25));
+        assertThat(dynamoDb.batchCalls.get()).isLessThan(100);
+    }
+
+    @Test
+    void sendsALonePutAfterTheLinger() throws Exception {
+        coalescer(5, 3).put(message("mb", "only")).get(5, TimeUnit.SECONDS);
+
+        assertThat(dynamoDb.batchSizes).containsExactly(1);
+    }
+
+    @Test
+    void retriesUnprocessedItemsUntilWritten() {
+        AtomicInteger refusals = new AtomicInteger();
+        dynamoDb.unprocessed = item -> item.get("id").s().equals("m-3") && refusals.incrementAndGet() <= 2;
+
+        List<CompletableFuture<Void>> futures = putAll(coalescer(20, 5), 10);
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        assertThat(refusals.get()).isGreaterThanOrEqualTo(3);
+        assertThat(dynamoDb.items).hasSize(10);
+    }
+
+    @Test
+    void failsOnlyTheItemThatStaysUnprocessed() {
+        dynamoDb.unprocessed = item -> item.get("id").s().equals("m-3");
+
+        List<CompletableFuture<Void>> futures = putAll(coalescer(20, 3), 10);
+
+        for (int i = 0; i < futures.size(); i++) {
+            if (i == 3) {
+                assertThatThrownBy(futures.get(i)::join)
+                        .isInstanceOf(CompletionException.class)
+                        .hasMessageContaining("unprocessed after 3 attempts");
+            } else {
+                futures.get(i).join();
+            }
+        }
+        assertThat(dynamoDb.items).hasSize(9);
+    }
+
+    @Test
+    void neverPutsOneKeyTwiceInABatch() {
+        MessageWriteCoalescer coalescer = coalescer(50, 3);
+        CompletableFuture<Void> first = coalescer.put(message("mb", "same"));
+        CompletableFuture<Void> second = coalescer.put(message("mb", "same"));
+
+        CompletableFuture.allOf(first, second).join();
+
+        assertThat(dynamoDb.batchSizes).containsExactly(1, 1);
+    }
+
+    @Test
+    void flushesQueuedPutsOnShutdownAndRefusesLaterOnes() throws InterruptedException {
+        MessageWriteCoalescer coalescer = coalescer(1000, 3);
+        List<CompletableFuture<Void>> futures = putAll(coalescer, 60);
+
+        coalescer.shutdown();
+
+        assertThat(futures).allSatisfy(future -> assertThat(future).isCompleted().isNotCompletedExceptionally());
+        assertThat(dynamoDb.items).hasSize(60);
+        assertThatThrownBy(coalescer.put(message("mb", "late"))::join).hasMessageContaining("shut down");
+    }
+}
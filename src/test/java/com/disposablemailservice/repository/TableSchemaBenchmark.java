@@ -0,0 +1,128 @@
+// Compares the hand-written message schema with the reflective bean schema it replaced.
+// Run with mvn test -Pbenchmark; prints per-item marshalling cost and the one-off cost of building each schema.
+package com.disposablemailservice.repository;
+
+import com.disposablemailservice.model.CompressedStringAttributeConverter;
+import com.disposablemailservice.model.Message;
+import com.disposablemailservice.support.LatencyRecorder;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.enhanced.dynamodb.TableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.StaticTableSchema;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbBean;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbConvertedBy;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbIgnore;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbPartitionKey;
+import software.amazon.awssdk.enhanced.dynamodb.mapper.annotations.DynamoDbSortKey;
+import software.amazon.awssdk.services.dynamodb.model.AttributeValue;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The bean schema is built from {@link BeanMessage}, which carries the annotations Message had
+ * before the static schemas, so both sides map the same attributes through the same converters.
+ * The build time is measured on first use in this JVM, which is what a cold start pays.
+ */
+@Tag("benchmark")
+class TableSchemaBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 200_000;
+    private static final int MEASURE_ITERATIONS = 1_000_000;
+
+    @Test
+    void marshallingCostPerItem() {
+        // Static first, so it also pays for loading the mapper classes both schemas share
+        long start = System.nanoTime();
+        StaticTableSchema<Message> staticSchema = TableSchemas.MESSAGE;
+        long staticBuild = System.nanoTime() - start;
+        start = System.nanoTime();
+        TableSchema<BeanMessage> beanSchema = TableSchema.fromBean(BeanMessage.class);
+        long beanBuild = System.nanoTime() - start;
+        System.out.printf("schema build: fromBean %.1f ms, static %.1f ms%n", beanBuild / 1e6, staticBuild / 1e6);
+
+        BeanMessage message = new BeanMessage();
+        message.setMailboxId("3f2b8c9e-5d41-4e0f-9a7c-1b2d3e4f5a6b");
+        message.setId("0000018e-2b7c-7a1f-8d3e-4c5b6a7d8e9f");
+        message.setSubject("Your verification code");
+        message.setFrom("no-reply@accounts.example.com");
+        message.setBody("Your verification code is 482913. It expires in 10 minutes.");
+        message.setPreview("Your verification code is 482913.");
+        message.setAttachments(List.of());
+        message.setSizeBytes(2048);
+        message.setReceivedAt(Instant.parse("2024-03-01T12:00:00Z"));
+
+        Map<String, AttributeValue> item = staticSchema.itemToMap(message, true);
+        assertThat(beanSchema.itemToMap(message, true)).isEqualTo(item);
+
+        // Both are warmed before either is measured, so neither is timed while the shared code is still cold
+        warmup(beanSchema, message, item);
+        warmup(staticSchema, message, item);
+        run("fromBean", beanSchema, message, item);
+        run("static", staticSchema, message, item);
+    }
+
+    private static <T extends Message> void warmup(TableSchema<T> schema, T message, Map<String, AttributeValue> item) {
+        measure(schema, message, item, new LatencyRecorder("warmup", WARMUP_ITERATIONS),
+                new LatencyRecorder("warmup", WARMUP_ITERATIONS), WARMUP_ITERATIONS);
+    }
+
+    private static <T extends Message> void run(String name, TableSchema<T> schema, T message,
+                                                 Map<String, AttributeValue> item) {
+        LatencyRecorder write = new LatencyRecorder(name + " itemToMap", MEASURE_ITERATIONS);
+        LatencyRecorder read = new LatencyRecorder(name + " mapToItem", MEASURE_ITERATIONS);
+        measure(schema, message, item, write, read, MEASURE_ITERATIONS);
+        System.out.println(write.report());
+        System.out.println(read.report());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Message> void measure(TableSchema<T> schema, T message, Map<String, AttributeValue> item,
+                                                    LatencyRecorder write, LatencyRecorder read, int iterations) {
+        write.start();
+        read.start();
+        long sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            sink += schema.itemToMap(message, true).size();
+            write.record(System.nanoTime() - start);
+            start = System.nanoTime();
+            sink += ((Message) schema.mapToItem(item)).getSizeBytes();
+            read.record(System.nanoTime() - start);
+        }
+        write.stop();
+        read.stop();
+        assertThat(sink).isPositive();
+    }
+
+    @DynamoDbBean
+    public static class BeanMessage extends Message {
+
+        @Override
+        @DynamoDbPartitionKey
+        public String getMailboxId() {
+            return super.getMailboxId();
+        }
+
+        @Override
+        @DynamoDbSortKey
+        public String getId() {
+            return super.getId();
+        }
+
+        @Override
+        @DynamoDbIgnore
+        public String getMessageId() {
+            return super.getMessageId();
+        }
+
+        @Override
+        @DynamoDbConvertedBy(CompressedStringAttributeConverter.class)
+        public String getBody() {
+            return super.getBody();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+// Tests for the two-tier delivery dedup: the local recent set, the shared ledger, claim release and set rotation.
+// The ledger is the in-memory one wrapped to count calls, so each case can show which tier answered.
+package com.disposablemailservice.service;
+
+import com.disposablemailservice.repository.DeliveryLedger;
+import com.disposablemailservice.repository.InMemoryDeliveryLedger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeliveryDeduplicatorTest {
+
+    private final CountingLedger ledger = new CountingLedger();
+
+    private DeliveryDeduplicator deduplicator(long localWindowSeconds, long leaseSeconds) {
+        return new DeliveryDeduplicator(ledger, new SimpleMeterRegistry(), localWindowSeconds, leaseSeconds, 48);
+    }
+
+    @Test
+    void absorbsARepeatOfACompletedDeliveryWithoutTheLedger() {
+        DeliveryDeduplicator deduplicator = deduplicator(600, 300);
+        assertThat(deduplicator.tryBegin("ses-1")).isTrue();
+        deduplicator.complete("ses-1");
+        int claimsBefore = ledger.claims.get();
+
+        assertThat(deduplicator.recentlyCompleted("ses-1")).isTrue();
+        assertThat(deduplicator.tryBegin("ses-1")).isFalse();
+
+        assertThat(ledger.claims).hasValue(claimsBefore);
+    }
+
+    @Test
+    void refusesADeliveryCompletedOnAnotherReplica() {
+        DeliveryDeduplicator first = deduplicator(600, 300);
+        DeliveryDeduplicator second = deduplicator(600, 300);
+        assertThat(first.tryBegin("ses-1")).isTrue();
+        first.complete("ses-1");
+
+        assertThat(second.recentlyCompleted("ses-1")).isFalse();
+        assertThat(second.tryBegin("ses-1")).isFalse();
+        assertThat(ledger.claims).hasValue(2);
+    }
+
+    @Test
+    void refusesADeliveryInProgressElsewhereUntilItsLeaseRunsOut() throws InterruptedException {
+        DeliveryDeduplicator holder = deduplicator(600, 1);
+        DeliveryDeduplicator other = deduplicator(600, 1);
+        assertThat(holder.tryBegin("ses-1")).isTrue();
+
+        assertThat(other.tryBegin("ses-1")).isFalse();
+        Thread.sleep(1100);
+
+        assertThat(other.tryBegin("ses-1")).isTrue();
+    }
+
+    @Test
+    void abandonReleasesTheClaimSoARetryCanProceed() {
+        DeliveryDeduplicator deduplicator = deduplicator(600, 300);
+        assertThat(deduplicator.tryBegin("ses-1")).isTrue();
+
+        deduplicator.abandon("ses-1");
+
+        assertThat(ledger.releases).hasValue(1);
+        assertThat(deduplicator.recentlyCompleted("ses-1")).isFalse();
+        assertThat(deduplicator.tryBegin("ses-1")).isTrue();
+    }
+
+    @Test
+    void abandonSwallowsLedgerFailures() {
+        DeliveryDeduplicator deduplicator = deduplicator(600, 300);
+        assertThat(deduplicator.tryBegin("ses-1")).isTrue();
+        ledger.failReleases = true;
+
+        deduplicator.abandon("ses-1");
+
+        assertThat(ledger.releases).hasValue(1);
+    }
+
+    @Test
+    void forgetsLocalEntriesAfterTwoRotations() throws InterruptedException {
+        // A two-second window rotates every second; an id survives one rotation and is gone after the second
+        DeliveryDeduplicator deduplicator = deduplicator(2, 300);
+        assertThat(deduplicator.tryBegin("ses-1")).isTrue();
+        deduplicator.complete("ses-1");
+
+        Thread.sleep(1100);
+        assertThat(deduplicator.recentlyCompleted("ses-1")).isTrue();
+        Thread.sleep(1100);
+        assertThat(deduplicator.recentlyCompleted("ses-1")).isFalse();
+
+        // The ledger still remembers it, at the cost of one conditional write
+        int claimsBefore = ledger.claims.get();
+        assertThat(deduplicator.tryBegin("ses-1")).isFalse();
+        assertThat(ledger.claims).hasValue(claimsBefore + 1);
+    }
+
+    private static final class CountingLedger implements DeliveryLedger {
+
+        private final InMemoryDeliveryLedger delegate = new InMemoryDeliveryLedger();
+        final AtomicInteger claims = new AtomicInteger();
+        final AtomicInteger completions = new AtomicInteger();
+        final AtomicInteger releases = new AtomicInteger();
+        volatile boolean failReleases;
+
+        @Override
+        public boolean tryClaim(String deliveryId, Instant leaseUntil, Instant expiresAt) {
+            claims.incrementAndGet();
+            return delegate.tryClaim(deliveryId, leaseUntil, expiresAt);
+        }
+
+        @Override
+        public void markCompleted(String deliveryId, Instant expiresAt) {
+            completions.incrementAndGet();
+            delegate.markCompleted(deliveryId, expiresAt);
+        }
+
+        @Override
+        public void release(String deliveryId) {
+            releases.incrementAndGet();
+            if (failReleases) {
+                throw new IllegalStateException("ledger unavailable");
+            }
+            delegate.release(deliveryId);
+        }
+    }
+}
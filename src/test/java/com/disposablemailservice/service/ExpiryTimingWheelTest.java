@@ -0,0 +1,134 @@
+// Tests for the hierarchical timing wheel behind mailbox expiry.
+// Time is passed in explicitly, so every case runs instantly and deterministically.
+package com.disposablemailservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExpiryTimingWheelTest {
+
+    private static final long TICK = 1000;
+    private static final long START = 1_700_000_000_000L;
+
+    private final ExpiryTimingWheel wheel = new ExpiryTimingWheel(TICK, START, 16);
+
+    @Test
+    void firesOnTheTickThatReachesTheDeadline() {
+        wheel.schedule("a", START + 5 * TICK);
+
+        assertThat(wheel.advance(START + 4 * TICK)).isEmpty();
+        assertThat(wheel.advance(START + 5 * TICK)).containsExactly("a");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void roundsDeadlinesBetweenTicksUp() {
+        wheel.schedule("a", START + 2 * TICK + 1);
+
+        assertThat(wheel.advance(START + 2 * TICK)).isEmpty();
+        assertThat(wheel.advance(START + 3 * TICK)).containsExactly("a");
+    }
+
+    @Test
+    void firesPastDeadlinesOnTheNextTick() {
+        wheel.schedule("late", START - 60 * TICK);
+
+        assertThat(wheel.advance(START + TICK)).containsExactly("late");
+    }
+
+    @Test
+    void cascadesDistantDeadlinesDownWithoutFiringEarly() {
+        // Beyond the first three levels (64^3 ticks), so the timer starts on level three and cascades down
+        long deadline = START + 300_000 * TICK;
+        wheel.schedule("far", deadline);
+
+        assertThat(wheel.advance(deadline - TICK)).isEmpty();
+        assertThat(wheel.advance(deadline)).containsExactly("far");
+    }
+
+    @Test
+    void cancelledTimersNeverFire() {
+        wheel.schedule("a", START + 3 * TICK);
+        wheel.schedule("b", START + 3 * TICK);
+
+        assertThat(wheel.cancel("a")).isTrue();
+        assertThat(wheel.cancel("a")).isFalse();
+        assertThat(wheel.advance(START + 10 * TICK)).containsExactly("b");
+    }
+
+    @Test
+    void reschedulingMovesTheSingleTimer() {
+        wheel.schedule("a", START + 3 * TICK);
+        wheel.schedule("a", START + 100 * TICK);
+
+        assertThat(wheel.size()).isEqualTo(1);
+        assertThat(wheel.advance(START + 99 * TICK)).isEmpty();
+        assertThat(wheel.advance(START + 100 * TICK)).containsExactly("a");
+    }
+
+    @Test
+    void firesEveryTimerOnceAcrossGrowthAndReuse() {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            String id = "m" + i;
+            wheel.schedule(id, START + (i % 4000 + 1) * TICK);
+            expected.add(id);
+        }
+        for (int i = 0; i < 5000; i += 2) {
+            wheel.cancel("m" + i);
+            expected.remove("m" + i);
+        }
+
+        List<String> fired = new ArrayList<>();
+        for (long now = START; now <= START + 5000 * TICK; now += 37 * TICK) {
+            fired.addAll(wheel.advance(now));
+        }
+        fired.addAll(wheel.advance(START + 5000 * TICK));
+
+        assertThat(fired).containsExactlyInAnyOrderElementsOf(expected);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void keepsIdsWithCollidingHashCodesApart() {
+        // "Aa" and "BB" share a hash code, as do all their concatenations, so they probe through one run
+        List<String> colliding = List.of("AaAa", "AaBB", "BBAa", "BBBB");
+        for (int i = 0; i < colliding.size(); i++) {
+            wheel.schedule(colliding.get(i), START + (i + 1) * TICK);
+        }
+
+        assertThat(wheel.cancel("AaBB")).isTrue();
+        wheel.schedule("BBBB", START + 10 * TICK);
+
+        assertThat(wheel.size()).isEqualTo(3);
+        assertThat(wheel.advance(START + 3 * TICK)).containsExactlyInAnyOrder("AaAa", "BBAa");
+        assertThat(wheel.cancel("AaBB")).isFalse();
+        assertThat(wheel.advance(START + 10 * TICK)).containsExactly("BBBB");
+    }
+
+    @Test
+    void findsEveryLiveIdAfterHeavyChurn() {
+        // Interleaved inserts and cancels exercise the index's backward-shift deletion across many probe runs
+        List<String> live = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            wheel.schedule("c" + i, START + 50 * TICK);
+            live.add("c" + i);
+            if (i % 3 == 2) {
+                String victim = "c" + (i - 1);
+                assertThat(wheel.cancel(victim)).isTrue();
+                live.remove(live.size() - 2);
+            }
+        }
+
+        assertThat(wheel.size()).isEqualTo(live.size());
+        for (String id : live) {
+            wheel.schedule(id, START + 60 * TICK);
+        }
+        assertThat(wheel.size()).isEqualTo(live.size());
+        assertThat(wheel.advance(START + 60 * TICK)).containsExactlyInAnyOrderElementsOf(live);
+    }
+}
@@ -0,0 +1,99 @@
+// Tests for the inbound rate limiter's token buckets: burst, refusal, refill and the fixed stripe count.
+// Rates are chosen so one token refills every 100 ms, which keeps the refill case short without being timing-sensitive.
+package com.disposablemailservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IngestionRateLimiterTest {
+
+    // One token per 100 ms
+    private static final long PER_HOUR = 36_000;
+
+    @Test
+    void admitsABurstThenRefusesUntilTokensRefill() throws InterruptedException {
+        IngestionRateLimiter.TokenBuckets buckets = new IngestionRateLimiter.TokenBuckets(64, PER_HOUR, 5);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(buckets.tryAcquire("flood@burnbox.test", 0)).as("token %d", i).isTrue();
+        }
+        assertThat(buckets.tryAcquire("flood@burnbox.test", 0)).isFalse();
+        assertThat(buckets.tryAcquire("flood@burnbox.test", 0)).isFalse();
+
+        Thread.sleep(250);
+
+        assertThat(buckets.tryAcquire("flood@burnbox.test", 0)).isTrue();
+        assertThat(buckets.tryAcquire("flood@burnbox.test", 0)).isTrue();
+        assertThat(buckets.tryAcquire("flood@burnbox.test", 0)).isFalse();
+    }
+
+    @Test
+    void refusalsDoNotDelayTheRefill() throws InterruptedException {
+        IngestionRateLimiter.TokenBuckets buckets = new IngestionRateLimiter.TokenBuckets(64, PER_HOUR, 1);
+        assertThat(buckets.tryAcquire("a@burnbox.test", 0)).isTrue();
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(buckets.tryAcquire("a@burnbox.test", 0)).isFalse();
+        }
+        Thread.sleep(150);
+
+        assertThat(buckets.tryAcquire("a@burnbox.test", 0)).isTrue();
+    }
+
+    @Test
+    void keepsMemoryFixedBySharingStripesAcrossKeys() {
+        // Four stripes with one token each: however many keys arrive, at most four are admitted
+        IngestionRateLimiter.TokenBuckets buckets = new IngestionRateLimiter.TokenBuckets(4, 1, 1);
+        int admitted = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (buckets.tryAcquire("user" + i + "@burnbox.test", 0)) {
+                admitted++;
+            }
+        }
+
+        assertThat(admitted).isBetween(1, 4);
+    }
+
+    @Test
+    void givesDistinctKeysTheirOwnBudgetWhenStripesAreAmple() {
+        IngestionRateLimiter.TokenBuckets buckets = new IngestionRateLimiter.TokenBuckets(1 << 16, 1, 1);
+        int admitted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (buckets.tryAcquire("user" + i + "@burnbox.test", 0)) {
+                admitted++;
+            }
+        }
+
+        // Only hash collisions can cost a key its token
+        assertThat(admitted).isGreaterThanOrEqualTo(95);
+    }
+
+    @Test
+    void keysRecipientsByNormalizedAddressAndSendersByDomain() {
+        IngestionRateLimiter limiter = new IngestionRateLimiter(new SimpleMeterRegistry(), 1024, 1, 1, 1, 1);
+
+        assertThat(limiter.admitRecipient("Someone@Burnbox.test")).isTrue();
+        assertThat(limiter.admitRecipient("someone@burnbox.test")).isFalse();
+
+        assertThat(limiter.admitSender("alice@bulk.example.com")).isTrue();
+        assertThat(limiter.admitSender("bob@BULK.example.com")).isFalse();
+    }
+
+    @Test
+    void admitsEverythingWhenALimitIsOff() {
+        IngestionRateLimiter limiter = new IngestionRateLimiter(new SimpleMeterRegistry(), 1024, 1, 1, 0, 1);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(limiter.admitSender("otp@amazonses.com")).isTrue();
+        }
+    }
+
+    @Test
+    void rejectsANonPositiveStripeCount() {
+        assertThatThrownBy(() -> new IngestionRateLimiter.TokenBuckets(0, PER_HOUR, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,117 @@
+// Tests for the segmented mailbox cache: copy semantics, expiry-aware admission and per-segment LRU eviction.
+// A single segment makes eviction order exact, so the LRU cases are deterministic.
+package com.disposablemailservice.service;
+
+import com.disposablemailservice.model.Mailbox;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MailboxCacheTest {
+
+    private static Mailbox mailbox(String id) {
+        Mailbox mailbox = new Mailbox();
+        mailbox.setId(id);
+        mailbox.setAddress(id + "@burnbox.test");
+        mailbox.setUserId("user-1");
+        mailbox.setExpiryTime(Instant.now().plus(Duration.ofHours(1)));
+        return mailbox;
+    }
+
+    @Test
+    void handsOutCopiesThatCannotChangeTheCachedMailbox() {
+        MailboxCache cache = new MailboxCache(new SimpleMeterRegistry(), 100, 30, 4);
+        Mailbox original = mailbox("a");
+        cache.put(original);
+
+        original.setMessageCount(5);
+        Mailbox first = cache.getIfPresent("a");
+        first.setMessageCount(9);
+        Mailbox second = cache.getIfPresent("a");
+
+        assertThat(first).isNotSameAs(second);
+        assertThat(second.getMessageCount()).isZero();
+        assertThat(second.getAddress()).isEqualTo("a@burnbox.test");
+    }
+
+    @Test
+    void loadsOnceAndServesLaterReadsFromTheCache() {
+        MailboxCache cache = new MailboxCache(new SimpleMeterRegistry(), 100, 30, 4);
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(cache.get("a", id -> {
+                loads.incrementAndGet();
+                return mailbox(id);
+            })).isNotNull();
+        }
+
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void neverCachesExpiredOrMissingMailboxes() {
+        MailboxCache cache = new MailboxCache(new SimpleMeterRegistry(), 100, 30, 4);
+        Mailbox expired = mailbox("old");
+        expired.setExpiryTime(Instant.now().minusSeconds(1));
+
+        cache.put(expired);
+        assertThat(cache.get("missing", id -> null)).isNull();
+
+        assertThat(cache.getIfPresent("old")).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedEntry() {
+        MailboxCache cache = new MailboxCache(new SimpleMeterRegistry(), 2, 30, 1);
+        cache.put(mailbox("a"));
+        cache.put(mailbox("b"));
+        cache.getIfPresent("a");
+
+        cache.put(mailbox("c"));
+
+        assertThat(cache.getIfPresent("a")).isNotNull();
+        assertThat(cache.getIfPresent("b")).isNull();
+        assertThat(cache.getIfPresent("c")).isNotNull();
+    }
+
+    @Test
+    void staysWithinItsBoundUnderConcurrentUse() throws Exception {
+        MailboxCache cache = new MailboxCache(new SimpleMeterRegistry(), 256, 30, 16);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int offset = t;
+                running.add(threads.submit(() -> {
+                    for (int i = 0; i < 20_000; i++) {
+                        String id = "mb-" + ((i * 7 + offset) % 1000);
+                        Mailbox mailbox = cache.get(id, MailboxCacheTest::mailbox);
+                        assertThat(mailbox.getId()).isEqualTo(id);
+                        if (i % 50 == 0) {
+                            cache.invalidate(id);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> thread : running) {
+                thread.get();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(256);
+    }
+}
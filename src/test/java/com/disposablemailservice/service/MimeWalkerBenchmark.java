@@ -0,0 +1,167 @@
+// Throughput and allocation per message for MIME body extraction on large multipart mail.
+// Run with mvn test -Pbenchmark; compares the walker with the getContent()-based collector it replaced.
+package com.disposablemailservice.service;
+
+import com.disposablemailservice.support.LatencyRecorder;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Multipart;
+import jakarta.mail.Part;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.util.SharedByteArrayInputStream;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Each sample parses the message over a shared in-memory stream, as ingestion does over the spool
+ * file, and extracts the body and the attachment parts; attachments are not read, since both paths
+ * stream them to the blob store afterwards. Allocation is the calling thread's allocated bytes
+ * divided by the number of messages, so it includes the parse both paths share.
+ */
+@Tag("benchmark")
+class MimeWalkerBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 200;
+    private static final int MEASURE_ITERATIONS = 1_000;
+    private static final Session SESSION = Session.getInstance(new Properties());
+
+    @FunctionalInterface
+    private interface Extractor {
+        Object extract(MimeMessage message) throws MessagingException, IOException;
+    }
+
+    @Test
+    void newsletterWithAttachments() throws Exception {
+        compare("newsletter 60 KB html + 2 attachments", newsletter(new Random(11), 60 * 1024, 2, 256 * 1024));
+    }
+
+    @Test
+    void plainTextWithOneLargeAttachment() throws Exception {
+        compare("plain text + 2 MB attachment", newsletter(new Random(12), 0, 1, 2 * 1024 * 1024));
+    }
+
+    private void compare(String name, byte[] raw) throws Exception {
+        Extractor walker = message -> {
+            MimeWalker.Content content = MimeWalker.walk(message);
+            return MimeWalker.preview(content, 256);
+        };
+        Extractor getContent = message -> {
+            List<Part> attachments = new ArrayList<>();
+            String[] text = new String[2];
+            collectParts(message, text, attachments);
+            return text[0] != null ? text[0] : text[1];
+        };
+        assertThat(walker.extract(parse(raw))).isNotNull();
+        assertThat(getContent.extract(parse(raw))).isNotNull();
+
+        run(raw, walker, new LatencyRecorder("warmup", WARMUP_ITERATIONS), WARMUP_ITERATIONS);
+        run(raw, getContent, new LatencyRecorder("warmup", WARMUP_ITERATIONS), WARMUP_ITERATIONS);
+        System.out.printf(Locale.ROOT, "%s (%d KB raw)%n", name, raw.length / 1024);
+        report(raw, walker, "  walker + preview");
+        report(raw, getContent, "  getContent()");
+    }
+
+    private static void report(byte[] raw, Extractor extractor, String name) throws Exception {
+        LatencyRecorder recorder = new LatencyRecorder(name, MEASURE_ITERATIONS);
+        long allocated = run(raw, extractor, recorder, MEASURE_ITERATIONS);
+        System.out.printf(Locale.ROOT, "%s   %8.1f KB allocated/msg%n", recorder.report(), allocated / 1024.0 / MEASURE_ITERATIONS);
+    }
+
+    private static long run(byte[] raw, Extractor extractor, LatencyRecorder recorder, int iterations) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        recorder.start();
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            extractor.extract(parse(raw));
+            recorder.record(System.nanoTime() - start);
+        }
+        recorder.stop();
+        return threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+    }
+
+    private static MimeMessage parse(byte[] raw) throws MessagingException {
+        return new MimeMessage(SESSION, new SharedByteArrayInputStream(raw));
+    }
+
+    // The collector EmailService used before the walker, kept here as the baseline
+    private static void collectParts(Part part, String[] text, List<Part> attachments) throws MessagingException, IOException {
+        if (part.isMimeType("multipart/*")) {
+            Multipart multipart = (Multipart) part.getContent();
+            for (int i = 0; i < multipart.getCount(); i++) {
+                collectParts(multipart.getBodyPart(i), text, attachments);
+            }
+            return;
+        }
+        boolean attachment = Part.ATTACHMENT.equalsIgnoreCase(part.getDisposition());
+        if (!attachment && text[0] == null && part.isMimeType("text/plain")) {
+            text[0] = part.getContent().toString();
+        } else if (!attachment && text[1] == null && part.isMimeType("text/html")) {
+            text[1] = part.getContent().toString();
+        } else if (!attachment && (part.isMimeType("text/plain") || part.isMimeType("text/html"))) {
+            return;
+        } else {
+            attachments.add(part);
+        }
+    }
+
+    private static byte[] newsletter(Random random, int htmlBytes, int attachments, int attachmentBytes) {
+        StringBuilder mail = new StringBuilder()
+                .append("From: News <news@shop.example.com>\r\nTo: someone@burnbox.test\r\n")
+                .append("Subject: Weekend sale\r\nMIME-Version: 1.0\r\n")
+                .append("Content-Type: multipart/mixed; boundary=\"mixed\"\r\n\r\n")
+                .append("--mixed\r\nContent-Type: multipart/alternative; boundary=\"alt\"\r\n\r\n")
+                .append("--alt\r\nContent-Type: text/plain; charset=utf-8\r\nContent-Transfer-Encoding: quoted-printable\r\n\r\n")
+                .append(words(random, 4096)).append("\r\n");
+        if (htmlBytes > 0) {
+            mail.append("--alt\r\nContent-Type: text/html; charset=utf-8\r\nContent-Transfer-Encoding: quoted-printable\r\n\r\n");
+            StringBuilder html = new StringBuilder("<html><body><style>p{margin:0}</style>");
+            while (html.length() < htmlBytes) {
+                html.append("<table width=3D\"600\"><tr><td><p>").append(words(random, 300)).append("</p></td></tr></table>\r\n");
+            }
+            mail.append(html).append("</body></html>\r\n");
+        }
+        mail.append("--alt--\r\n");
+        for (int i = 0; i < attachments; i++) {
+            byte[] content = new byte[attachmentBytes];
+            random.nextBytes(content);
+            mail.append("--mixed\r\nContent-Type: application/pdf; name=\"file").append(i).append(".pdf\"\r\n")
+                    .append("Content-Disposition: attachment; filename=\"file").append(i).append(".pdf\"\r\n")
+                    .append("Content-Transfer-Encoding: base64\r\n\r\n")
+                    .append(Base64.getMimeEncoder().encodeToString(content)).append("\r\n");
+        }
+        return mail.append("--mixed--\r\n").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String words(Random random, int chars) {
+        String[] vocabulary = {"sale", "weekend", "members", "exclusive", "new", "arrivals", "free", "shipping",
+                "orders", "over", "today", "only", "discount", "code", "shop", "now", "limited", "stock"};
+        StringBuilder text = new StringBuilder(chars + 16);
+        int line = 0;
+        while (text.length() < chars) {
+            String word = vocabulary[random.nextInt(vocabulary.length)];
+            text.append(word);
+            line += word.length() + 1;
+            // Quoted-printable lines stay under 76 characters
+            if (line > 60) {
+                text.append("\r\n");
+                line = 0;
+            } else {
+                text.append(' ');
+            }
+        }
+        return text.toString();
+    }
+}
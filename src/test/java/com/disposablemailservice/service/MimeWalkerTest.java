@@ -0,0 +1,155 @@
+// Tests for MIME body selection: which text leaves become the body and which are kept as attachments.
+// Messages are parsed from literal RFC 5322 text, so each case reads like the mail it models.
+package com.disposablemailservice.service;
+
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MimeWalkerTest {
+
+    @Test
+    void takesBothRenderingsOfAnAlternative() throws Exception {
+        MimeWalker.Content content = walk("""
+                Content-Type: multipart/alternative; boundary="b"
+
+                --b
+                Content-Type: text/plain; charset=utf-8
+
+                plain body
+                --b
+                Content-Type: text/html; charset=utf-8
+
+                <p>html body</p>
+                --b--
+                """);
+
+        assertThat(content.plain()).isEqualTo("plain body");
+        assertThat(content.html()).isEqualTo("<p>html body</p>");
+        assertThat(content.attachments()).isEmpty();
+    }
+
+    @Test
+    void keepsHtmlNestedInRelatedWithItsPlainAlternative() throws Exception {
+        MimeWalker.Content content = walk("""
+                Content-Type: multipart/alternative; boundary="outer"
+
+                --outer
+                Content-Type: text/plain
+
+                plain body
+                --outer
+                Content-Type: multipart/related; boundary="inner"
+
+                --inner
+                Content-Type: text/html
+
+                <img src="cid:logo">
+                --inner
+                Content-Type: image/png
+                Content-ID: <logo>
+
+                png
+                --inner--
+                --outer--
+                """);
+
+        assertThat(content.plain()).isEqualTo("plain body");
+        assertThat(content.html()).isEqualTo("<img src=\"cid:logo\">");
+        assertThat(content.attachments()).hasSize(1);
+        assertThat(content.attachments().get(0).isMimeType("image/png")).isTrue();
+    }
+
+    @Test
+    void keepsFurtherInlineTextAsAttachments() throws Exception {
+        MimeWalker.Content content = walk("""
+                Content-Type: multipart/mixed; boundary="m"
+
+                --m
+                Content-Type: multipart/alternative; boundary="a"
+
+                --a
+                Content-Type: text/plain
+
+                plain body
+                --a
+                Content-Type: text/html
+
+                <p>html body</p>
+                --a--
+                --m
+                Content-Type: text/plain
+
+                forwarded note
+                --m
+                Content-Type: text/html
+
+                <p>list footer</p>
+                --m--
+                """);
+
+        assertThat(content.body()).isEqualTo("plain body");
+        assertThat(content.attachments()).hasSize(2);
+        assertThat(content.attachments().get(0).isMimeType("text/plain")).isTrue();
+        assertThat(content.attachments().get(1).isMimeType("text/html")).isTrue();
+    }
+
+    @Test
+    void treatsTextMarkedAsAttachmentAsAnAttachment() throws Exception {
+        MimeWalker.Content content = walk("""
+                Content-Type: multipart/mixed; boundary="m"
+
+                --m
+                Content-Type: text/plain
+
+                body
+                --m
+                Content-Type: text/plain
+                Content-Disposition: attachment; filename="notes.txt"
+
+                notes
+                --m--
+                """);
+
+        assertThat(content.body()).isEqualTo("body");
+        assertThat(content.attachments()).hasSize(1);
+    }
+
+    @Test
+    void fallsBackToUtf8ForUnknownCharsets() throws Exception {
+        MimeWalker.Content content = walk("""
+                Content-Type: text/plain; charset=x-made-up
+
+                café
+                """);
+
+        // Outside a multipart, the body keeps its final line break
+        assertThat(content.plain()).isEqualTo("café\r\n");
+    }
+
+    @Test
+    void previewsHtmlWithoutMarkupScriptsOrEntities() throws Exception {
+        MimeWalker.Content content = walk("""
+                Content-Type: text/html
+
+                <html><head><style>p { color: red }</style><script>alert(1)</script></head>
+                <body><p>Your code:&nbsp;<b>123&amp;456</b></p></body></html>
+                """);
+
+        assertThat(MimeWalker.preview(content, 100)).isEqualTo("Your code: 123&456");
+        assertThat(MimeWalker.preview(content, 9)).isEqualTo("Your code");
+    }
+
+    private static MimeWalker.Content walk(String raw) throws Exception {
+        String crlf = raw.replace("\n", "\r\n");
+        MimeMessage message = new MimeMessage(Session.getInstance(new Properties()),
+                new ByteArrayInputStream(crlf.getBytes(StandardCharsets.UTF_8)));
+        return MimeWalker.walk(message);
+    }
+}
@@ -0,0 +1,99 @@
+// Load harness for the SMTP receiver: concurrent clients sending whole transactions over loopback.
+// Run with mvn test -Pbenchmark; prints throughput and latency percentiles per message size.
+package com.disposablemailservice.service;
+
+import com.disposablemailservice.support.LatencyRecorder;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Each sample is one transaction, MAIL FROM through the 250 after the end marker, on a connection
+ * that stays open, so it measures the selector loop, dot-unstuffing and spooling rather than the
+ * TCP handshake. Storage is stubbed out; the numbers are the receiver's own overhead.
+ */
+@Tag("benchmark")
+class SmtpLoadBenchmark {
+
+    private static final int CLIENTS = 64;
+    private static final long WARMUP_SECONDS = 5;
+    private static final long MEASURE_SECONDS = 20;
+
+    @TempDir
+    Path spoolDir;
+
+    @Test
+    void smallMessages() throws Exception {
+        run("smtp 1 KB x " + CLIENTS + " clients", 1024);
+    }
+
+    @Test
+    void largeMessages() throws Exception {
+        run("smtp 256 KB x " + CLIENTS + " clients", 256 * 1024);
+    }
+
+    private void run(String name, int bodyBytes) throws Exception {
+        TestSmtpReceiver receiver = TestSmtpReceiver.start(60, spoolDir);
+        receiver.retainMessages = false;
+        String message = message(bodyBytes);
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            measure(receiver, clients, message, new LatencyRecorder(name + " (warmup)", 1 << 20), WARMUP_SECONDS);
+            LatencyRecorder recorder = new LatencyRecorder(name, 1 << 22);
+            measure(receiver, clients, message, recorder, MEASURE_SECONDS);
+            System.out.println(recorder.report());
+            assertThat(recorder.count()).isPositive();
+        } finally {
+            clients.shutdownNow();
+            receiver.stop();
+        }
+    }
+
+    private static void measure(TestSmtpReceiver receiver, ExecutorService clients, String message,
+                                LatencyRecorder recorder, long seconds) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        recorder.start();
+        List<Future<?>> running = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            String recipient = "load" + i + TestSmtpReceiver.ACCEPTED_DOMAIN;
+            running.add(clients.submit(() -> {
+                try (SmtpTestClient client = new SmtpTestClient(receiver.port)) {
+                    SmtpTestClient.expect(client.reply(), "220");
+                    SmtpTestClient.expect(client.command("EHLO load.test"), "250");
+                    while (System.nanoTime() < deadline) {
+                        long start = System.nanoTime();
+                        client.beginTransaction(recipient);
+                        client.send(message);
+                        SmtpTestClient.expect(client.reply(), "250");
+                        recorder.record(System.nanoTime() - start);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> client : running) {
+            client.get();
+        }
+        recorder.stop();
+    }
+
+    // Lines start with a dot now and then so unstuffing is on the measured path
+    private static String message(int bodyBytes) {
+        StringBuilder message = new StringBuilder("From: load@example.org\r\nSubject: load\r\n\r\n");
+        String line = "The quick brown fox jumps over the lazy dog, again and again and again.\r\n";
+        for (int i = 0; message.length() < bodyBytes; i++) {
+            message.append(i % 10 == 0 ? ".." : "").append(line);
+        }
+        return message.append(".\r\n").toString();
+    }
+}
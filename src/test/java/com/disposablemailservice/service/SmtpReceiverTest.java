@@ -0,0 +1,132 @@
+// Protocol tests for the embedded SMTP receiver, driven over a loopback socket.
+// Covers DATA dot-unstuffing and the end marker, pipelining after DATA and the idle timeout.
+package com.disposablemailservice.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SmtpReceiverTest {
+
+    private static final String RECIPIENT = "inbox" + TestSmtpReceiver.ACCEPTED_DOMAIN;
+
+    @TempDir
+    Path spoolDir;
+
+    private TestSmtpReceiver receiver;
+
+    @AfterEach
+    void stop() throws InterruptedException {
+        if (receiver != null) {
+            receiver.stop();
+        }
+    }
+
+    @Test
+    void unstuffsLeadingDotsAndKeepsTheFinalLineBreak() throws IOException {
+        receiver = TestSmtpReceiver.start(60, spoolDir);
+        try (SmtpTestClient client = new SmtpTestClient(receiver.port)) {
+            client.beginMessage(RECIPIENT);
+            client.send("Subject: dots\r\n\r\n..leading\r\n...\r\nmid.line.\r\n\r\nlast\r\n.\r\n");
+            SmtpTestClient.expect(client.reply(), "250");
+        }
+
+        assertThat(new String(receiver.delivered.get(0), StandardCharsets.ISO_8859_1))
+                .isEqualTo("Subject: dots\r\n\r\n.leading\r\n..\r\nmid.line.\r\n\r\nlast\r\n");
+    }
+
+    @Test
+    void findsTheEndMarkerSplitAcrossReads() throws IOException, InterruptedException {
+        receiver = TestSmtpReceiver.start(60, spoolDir);
+        try (SmtpTestClient client = new SmtpTestClient(receiver.port)) {
+            client.socket.setTcpNoDelay(true);
+            client.beginMessage(RECIPIENT);
+            for (String part : new String[] {"body\r", "\n", ".", ".still body\r\n", ".", "\r", "\n"}) {
+                client.send(part);
+                Thread.sleep(20);
+            }
+            SmtpTestClient.expect(client.reply(), "250");
+        }
+
+        assertThat(new String(receiver.delivered.get(0), StandardCharsets.ISO_8859_1)).isEqualTo("body\r\n.still body\r\n");
+    }
+
+    @Test
+    void handlesCommandsPipelinedBehindTheEndMarker() throws IOException {
+        receiver = TestSmtpReceiver.start(60, spoolDir);
+        try (SmtpTestClient client = new SmtpTestClient(receiver.port)) {
+            client.beginMessage(RECIPIENT);
+            client.send("first\r\n.\r\nMAIL FROM:<sender@example.org>\r\nRCPT TO:<" + RECIPIENT + ">\r\nDATA\r\n");
+            SmtpTestClient.expect(client.reply(), "250");
+            SmtpTestClient.expect(client.reply(), "250");
+            SmtpTestClient.expect(client.reply(), "250");
+            SmtpTestClient.expect(client.reply(), "354");
+            client.send("second\r\n.\r\nQUIT\r\n");
+            SmtpTestClient.expect(client.reply(), "250");
+            SmtpTestClient.expect(client.reply(), "221");
+            assertThat(client.reply()).isNull();
+        }
+
+        assertThat(receiver.delivered).hasSize(2);
+    }
+
+    @Test
+    void refusesUnknownRecipients() throws IOException {
+        receiver = TestSmtpReceiver.start(60, spoolDir);
+        try (SmtpTestClient client = new SmtpTestClient(receiver.port)) {
+            SmtpTestClient.expect(client.reply(), "220");
+            SmtpTestClient.expect(client.command("EHLO client.test"), "250");
+            SmtpTestClient.expect(client.command("MAIL FROM:<sender@example.org>"), "250");
+            SmtpTestClient.expect(client.command("RCPT TO:<someone@elsewhere.test>"), "550");
+            SmtpTestClient.expect(client.command("DATA"), "554");
+        }
+    }
+
+    @Test
+    void sendsIdleClientsA421AndCloses() throws IOException {
+        receiver = TestSmtpReceiver.start(1, spoolDir);
+        try (SmtpTestClient client = new SmtpTestClient(receiver.port)) {
+            SmtpTestClient.expect(client.reply(), "220");
+            SmtpTestClient.expect(client.reply(), "421");
+            assertThat(client.reply()).isNull();
+        }
+    }
+
+    @Test
+    void closesClientsThatStopReadingTheirReplies() throws Exception {
+        receiver = TestSmtpReceiver.start(1, spoolDir);
+        try (Socket socket = new Socket()) {
+            // A small window makes the unread replies back up quickly
+            socket.setReceiveBufferSize(4096);
+            socket.connect(new InetSocketAddress("127.0.0.1", receiver.port));
+            byte[] noops = "NOOP\r\n".repeat(10_000).getBytes(StandardCharsets.US_ASCII);
+
+            // Pipelines NOOPs without ever reading; once we stop reading, only closing the socket ends the writes
+            CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+                try {
+                    OutputStream out = socket.getOutputStream();
+                    while (true) {
+                        out.write(noops);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+
+            assertThrows(ExecutionException.class, () -> writer.get(15, TimeUnit.SECONDS));
+        }
+    }
+}
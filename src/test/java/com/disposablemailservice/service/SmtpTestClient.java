@@ -0,0 +1,66 @@
+// Minimal blocking SMTP client for the receiver tests: sends raw lines and reads multi-line replies.
+package com.disposablemailservice.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+class SmtpTestClient implements AutoCloseable {
+
+    final Socket socket;
+    private final BufferedReader in;
+    private final OutputStream out;
+
+    SmtpTestClient(int port) throws IOException {
+        this.socket = new Socket("127.0.0.1", port);
+        socket.setSoTimeout(10_000);
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+        this.out = socket.getOutputStream();
+    }
+
+    void send(String raw) throws IOException {
+        out.write(raw.getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+
+    // Returns the last line of the reply, or null at end of stream
+    String reply() throws IOException {
+        String line;
+        do {
+            line = in.readLine();
+        } while (line != null && line.length() > 3 && line.charAt(3) == '-');
+        return line;
+    }
+
+    String command(String line) throws IOException {
+        send(line + "\r\n");
+        return reply();
+    }
+
+    // Greeting, EHLO, MAIL, RCPT and DATA; the caller sends the message and the end marker
+    void beginMessage(String recipient) throws IOException {
+        expect(reply(), "220");
+        expect(command("EHLO client.test"), "250");
+        beginTransaction(recipient);
+    }
+
+    void beginTransaction(String recipient) throws IOException {
+        expect(command("MAIL FROM:<sender@example.org>"), "250");
+        expect(command("RCPT TO:<" + recipient + ">"), "250");
+        expect(command("DATA"), "354");
+    }
+
+    static void expect(String reply, String code) {
+        if (reply == null || !reply.startsWith(code)) {
+            throw new AssertionError("Expected " + code + " but got " + reply);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
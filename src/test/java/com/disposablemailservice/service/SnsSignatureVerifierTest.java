@@ -0,0 +1,171 @@
+// Tests for SNS signature verification against a locally generated signing certificate.
+// keytool creates the key pair once per run, and the certificate source serves it in place of the SNS host.
+package com.disposablemailservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnsSignatureVerifierTest {
+
+    private static final String TOPIC = "arn:aws:sns:eu-west-1:123456789012:burnbox-inbound";
+    private static final String CERT_URL = "https://sns.eu-west-1.amazonaws.com/SimpleNotificationService-test.pem";
+    private static final String HOSTS = "sns\\.[a-z0-9-]+\\.amazonaws\\.com(\\.cn)?";
+    private static final char[] PASSWORD = "changeit".toCharArray();
+
+    private static PrivateKey privateKey;
+    private static byte[] certificatePem;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<URI> fetched = new ArrayList<>();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeAll
+    static void generateCertificate(@TempDir Path dir) throws Exception {
+        Path keystore = dir.resolve("sns.p12");
+        Process keytool = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "keytool").toString(),
+                "-genkeypair", "-alias", "sns", "-keyalg", "RSA", "-keysize", "2048", "-validity", "2",
+                "-dname", "CN=sns.amazonaws.com", "-storetype", "PKCS12",
+                "-keystore", keystore.toString(), "-storepass", new String(PASSWORD))
+                .redirectErrorStream(true)
+                .start();
+        String output = new String(keytool.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertThat(keytool.waitFor(60, TimeUnit.SECONDS)).isTrue();
+        assertThat(keytool.exitValue()).as(output).isZero();
+
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(keystore)) {
+            store.load(in, PASSWORD);
+        }
+        privateKey = (PrivateKey) store.getKey("sns", PASSWORD);
+        Certificate certificate = store.getCertificate("sns");
+        certificatePem = ("-----BEGIN CERTIFICATE-----\n"
+                + Base64.getMimeEncoder(64, "\n".getBytes(StandardCharsets.US_ASCII)).encodeToString(certificate.getEncoded())
+                + "\n-----END CERTIFICATE-----\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private SnsSignatureVerifier verifier(long maxCacheAgeHours) {
+        return new SnsSignatureVerifier(meterRegistry, true, TOPIC, HOSTS, maxCacheAgeHours, 64, uri -> {
+            fetched.add(uri);
+            return new ByteArrayInputStream(certificatePem);
+        });
+    }
+
+    private ObjectNode notification(String message) {
+        ObjectNode envelope = objectMapper.createObjectNode();
+        envelope.put("Type", "Notification");
+        envelope.put("MessageId", "6f1c9d1e-0000-4000-8000-000000000001");
+        envelope.put("TopicArn", TOPIC);
+        envelope.put("Subject", "Amazon SES Email Receipt Notification");
+        envelope.put("Message", message);
+        envelope.put("Timestamp", "2024-03-01T12:00:00.000Z");
+        envelope.put("SigningCertURL", CERT_URL);
+        return envelope;
+    }
+
+    private static ObjectNode sign(ObjectNode envelope, String version) throws Exception {
+        Signature signature = Signature.getInstance("1".equals(version) ? "SHA1withRSA" : "SHA256withRSA");
+        signature.initSign(privateKey);
+        signature.update(SnsSignatureVerifier.stringToSign(envelope).getBytes(StandardCharsets.UTF_8));
+        envelope.put("SignatureVersion", version);
+        envelope.put("Signature", Base64.getEncoder().encodeToString(signature.sign()));
+        return envelope;
+    }
+
+    @Test
+    void acceptsBothSignatureVersions() throws Exception {
+        SnsSignatureVerifier verifier = verifier(24);
+
+        verifier.verify(sign(notification("{\"mail\":{}}"), "1"));
+        verifier.verify(sign(notification("{\"mail\":{}}"), "2"));
+    }
+
+    @Test
+    void acceptsNotificationsWithoutSubject() throws Exception {
+        ObjectNode envelope = notification("{\"mail\":{}}");
+        envelope.remove("Subject");
+
+        verifier(24).verify(sign(envelope, "2"));
+    }
+
+    @Test
+    void rejectsTamperedMessages() throws Exception {
+        ObjectNode envelope = sign(notification("{\"mail\":{}}"), "2");
+        envelope.put("Message", "{\"mail\":{\"destination\":[\"victim@burnbox.test\"]}}");
+
+        assertThatThrownBy(() -> verifier(24).verify(envelope))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("signature");
+    }
+
+    @Test
+    void fetchesEachCertificateOnceWhileCached() throws Exception {
+        SnsSignatureVerifier verifier = verifier(24);
+
+        for (int i = 0; i < 5; i++) {
+            verifier.verify(sign(notification("message " + i), "2"));
+        }
+
+        assertThat(fetched).containsExactly(URI.create(CERT_URL));
+    }
+
+    @Test
+    void refetchesExpiredCertificates() throws Exception {
+        SnsSignatureVerifier verifier = verifier(0);
+
+        verifier.verify(sign(notification("first"), "2"));
+        verifier.verify(sign(notification("second"), "2"));
+
+        assertThat(fetched).hasSize(2);
+    }
+
+    @Test
+    void refusesCertificatesOutsideTheAllowList() throws Exception {
+        SnsSignatureVerifier verifier = verifier(24);
+        for (String url : List.of("https://attacker.example.com/cert.pem",
+                "http://sns.eu-west-1.amazonaws.com/SimpleNotificationService-test.pem",
+                "https://sns.eu-west-1.amazonaws.com.attacker.example.com/cert.pem",
+                "https://sns.eu-west-1.amazonaws.com/cert.txt")) {
+            ObjectNode envelope = notification("{\"mail\":{}}");
+            envelope.put("SigningCertURL", url);
+
+            assertThatThrownBy(() -> verifier.verify(sign(envelope, "2")))
+                    .as(url)
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("SigningCertURL");
+        }
+        assertThat(fetched).isEmpty();
+    }
+
+    @Test
+    void rejectsForeignTopicsBeforeFetchingAnything() throws Exception {
+        ObjectNode envelope = notification("{\"mail\":{}}");
+        envelope.put("TopicArn", "arn:aws:sns:eu-west-1:999999999999:someone-else");
+
+        assertThatThrownBy(() -> verifier(24).verify(sign(envelope, "2")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("topic");
+        assertThat(fetched).isEmpty();
+    }
+}
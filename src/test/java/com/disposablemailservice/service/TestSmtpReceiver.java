@@ -0,0 +1,73 @@
+// SmtpReceiver with the mailbox lookup and storage replaced, for driving the protocol over a real socket.
+// Addresses in the accepted domain resolve to a mailbox; delivered spool files are kept in memory.
+package com.disposablemailservice.service;
+
+import com.disposablemailservice.model.Mailbox;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+class TestSmtpReceiver extends SmtpReceiver {
+
+    static final String ACCEPTED_DOMAIN = "@burnbox.test";
+
+    final int port;
+    final List<byte[]> delivered = new CopyOnWriteArrayList<>();
+    final AtomicLong deliveredCount = new AtomicLong();
+    // Load tests turn this off so the heap does not grow with every message
+    volatile boolean retainMessages = true;
+
+    private TestSmtpReceiver(int port, long idleTimeoutSeconds, Path spoolDir) {
+        super(null, null, new IngestionRateLimiter(new SimpleMeterRegistry(), 16, 0, 0, 0, 0), new SimpleMeterRegistry(),
+                "127.0.0.1", port, "mx.burnbox.test", 1000, 4096, 1 << 20, 10, idleTimeoutSeconds, 4, 1000,
+                spoolDir.toString());
+        this.port = port;
+    }
+
+    static TestSmtpReceiver start(long idleTimeoutSeconds, Path spoolDir) throws IOException {
+        TestSmtpReceiver receiver = new TestSmtpReceiver(freePort(), idleTimeoutSeconds, spoolDir);
+        receiver.start();
+        return receiver;
+    }
+
+    @Override
+    void resolveRecipient(SmtpSession session, String address) {
+        Mailbox mailbox = null;
+        if (address.endsWith(ACCEPTED_DOMAIN)) {
+            mailbox = new Mailbox();
+            mailbox.setId(address);
+            mailbox.setAddress(address);
+        }
+        Mailbox resolved = mailbox;
+        post(() -> session.recipientResolved(resolved, false));
+    }
+
+    @Override
+    void deliver(SmtpSession session, Path spool, Collection<Mailbox> mailboxes) {
+        try {
+            if (retainMessages) {
+                delivered.add(Files.readAllBytes(spool));
+            }
+            deliveredCount.incrementAndGet();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteQuietly(spool);
+        }
+        post(() -> session.deliveryFinished(SmtpSession.Outcome.STORED));
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+// Collects per-operation latencies for the benchmark tests and prints throughput and percentiles.
+// Plain nanoTime samples sorted at the end; good enough to compare two code paths on one machine.
+package com.disposablemailservice.support;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class LatencyRecorder {
+
+    private final String name;
+    private final long[] samples;
+    private final AtomicInteger count = new AtomicInteger();
+    private long startedAt;
+    private long stoppedAt;
+
+    public LatencyRecorder(String name, int capacity) {
+        this.name = name;
+        this.samples = new long[capacity];
+    }
+
+    public void start() {
+        count.set(0);
+        startedAt = System.nanoTime();
+    }
+
+    // Samples beyond the capacity are counted for throughput but not kept
+    public void record(long nanos) {
+        int index = count.getAndIncrement();
+        if (index < samples.length) {
+            samples[index] = nanos;
+        }
+    }
+
+    public void stop() {
+        stoppedAt = System.nanoTime();
+    }
+
+    public int count() {
+        return count.get();
+    }
+
+    public double throughputPerSecond() {
+        return count.get() / ((stoppedAt - startedAt) / 1e9);
+    }
+
+    public long percentileNanos(double percentile) {
+        long[] sorted = Arrays.copyOf(samples, Math.min(count.get(), samples.length));
+        if (sorted.length == 0) {
+            return 0;
+        }
+        Arrays.sort(sorted);
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile / 100 * sorted.length) - 1)];
+    }
+
+    public String report() {
+        return String.format(Locale.ROOT, "%-40s %10d ops %12.1f ops/s   p50 %9.1f us   p99 %9.1f us   max %9.1f us",
+                name, count(), throughputPerSecond(),
+                micros(percentileNanos(50)), micros(percentileNanos(99)), micros(percentileNanos(100)));
+    }
+
+    private static double micros(long nanos) {
+        return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+    }
+}